@@ -0,0 +1,63 @@
+package com.siseg.pagamento.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executores da aplicação. Com spring.threads.virtual.enabled=true o Tomcat já
+ * atende as requisições (e portanto as chamadas bloqueantes ao Asaas e ao
+ * serviço de pedidos) em threads virtuais; os executores daqui seguem o mesmo
+ * modo, com o mesmo limite de threads e a mesma fila limitada do modo
+ * tradicional: fila cheia rejeita a tarefa ({@code TaskRejectedException}).
+ * As tarefas levam o contexto de quem as submeteu (observação e trace), então
+ * o processamento assíncrono de um webhook ou do QR Code aparece no trace da
+ * requisição que o originou.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private final boolean threadsVirtuais;
+
+    public ExecutorConfig(@Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais) {
+        this.threadsVirtuais = threadsVirtuais;
+    }
+
+    @Bean
+    public TaskExecutor qrCodeExecutor(@Value("${pagamento.pix.qrcode.threads:4}") int threads,
+                                       @Value("${pagamento.pix.qrcode.fila:500}") int fila) {
+        return criarExecutor("pix-qrcode-", threads, fila);
+    }
+
+    @Bean
+    public TaskExecutor webhookExecutor(@Value("${asaas.webhook.inbox.threads:4}") int threads,
+                                        @Value("${asaas.webhook.inbox.fila:1000}") int fila) {
+        return criarExecutor("webhook-", threads, fila);
+    }
+
+    @Bean
+    public TaskExecutor reembolsoExecutor(@Value("${pagamento.reembolso.lote.threads:4}") int threads,
+                                          @Value("${pagamento.reembolso.lote.fila:1000}") int fila) {
+        return criarExecutor("reembolso-", threads, fila);
+    }
+
+    private TaskExecutor criarExecutor(String prefixo, int threads, int fila) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // Fila limitada também com threads virtuais: cheia, rejeita em vez de bloquear quem submete
+        executor.setQueueCapacity(fila);
+        if (threadsVirtuais) {
+            executor.setThreadFactory(Thread.ofVirtual().name(prefixo, 0).factory());
+        } else {
+            executor.setThreadNamePrefix(prefixo);
+        }
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
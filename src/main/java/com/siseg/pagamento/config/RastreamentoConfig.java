@@ -0,0 +1,84 @@
+package com.siseg.pagamento.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Rastreamento distribuído (Micrometer Tracing com OpenTelemetry). O Spring
+ * Boot já observa as requisições recebidas (um span por endpoint), as tarefas
+ * {@code @Scheduled} e os WebClients; o {@link com.siseg.pagamento.service.AsaasService}
+ * cria um span por operação no Asaas. Aqui entram os repositórios Spring Data:
+ * cada chamada vira a observação pagamento.repositorio (span
+ * "pagamento-repository.find-by-pedido-id", por exemplo).
+ *
+ * <p>Os spans são exportados por OTLP quando management.otlp.tracing.endpoint
+ * está configurado; a amostragem é management.tracing.sampling.probability.
+ */
+@Configuration
+public class RastreamentoConfig {
+
+    @Bean
+    public static BeanPostProcessor observacaoRepositorios(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Mesmo caminho dos advisors do Spring: o interceptor entra no proxy que o Spring Data já criou
+                if (bean instanceof Repository<?, ?> && bean instanceof Advised advised && !advised.isFrozen()) {
+                    Arrays.stream(advised.getProxiedInterfaces())
+                            .filter(interfaceRepositorio -> Repository.class.isAssignableFrom(interfaceRepositorio)
+                                    && interfaceRepositorio != Repository.class)
+                            .findFirst()
+                            .ifPresent(interfaceRepositorio -> advised.addAdvice(0,
+                                    new ObservacaoRepositorio(interfaceRepositorio.getSimpleName(), observationRegistry)));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static final class ObservacaoRepositorio implements MethodInterceptor {
+
+        private final String repositorio;
+        private final ObjectProvider<ObservationRegistry> observationRegistryProvider;
+        private volatile ObservationRegistry observationRegistry;
+
+        private ObservacaoRepositorio(String repositorio, ObjectProvider<ObservationRegistry> observationRegistryProvider) {
+            this.repositorio = repositorio;
+            this.observationRegistryProvider = observationRegistryProvider;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method metodo = invocation.getMethod();
+            if (metodo.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            return Observation.createNotStarted("pagamento.repositorio", registro())
+                    .contextualName(repositorio + "." + metodo.getName())
+                    .lowCardinalityKeyValue("repositorio", repositorio)
+                    .lowCardinalityKeyValue("metodo", metodo.getName())
+                    .observeChecked(invocation::proceed);
+        }
+
+        private ObservationRegistry registro() {
+            // Resolvido na primeira chamada: o post-processor é criado antes do registro
+            ObservationRegistry registro = observationRegistry;
+            if (registro == null) {
+                registro = observationRegistryProvider.getIfAvailable(() -> ObservationRegistry.NOOP);
+                observationRegistry = registro;
+            }
+            return registro;
+        }
+    }
+}
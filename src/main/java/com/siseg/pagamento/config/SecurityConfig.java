@@ -22,6 +22,9 @@ public class SecurityConfig {
     @Value("${jwt.public.key}")
     private RSAPublicKey publicKey;
 
+    @Value("${management.server.port:-1}")
+    private int portaGerenciamento;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -29,6 +32,10 @@ public class SecurityConfig {
             .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api-docs/**", "/swagger-ui.html", "/swagger-ui/**").permitAll()
+                .requestMatchers("/actuator/health/**").permitAll()
+                // Métricas só sem token na porta de gerenciamento, que não é exposta publicamente
+                .requestMatchers(request -> request.getLocalPort() == portaGerenciamento
+                        && "/actuator/prometheus".equals(request.getRequestURI())).permitAll()
                 .requestMatchers(HttpMethod.POST, "/api/pagamentos/webhook").permitAll()
                 .anyRequest().authenticated()
             )
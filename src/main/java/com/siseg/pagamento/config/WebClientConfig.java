@@ -0,0 +1,115 @@
+package com.siseg.pagamento.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * WebClients dos serviços externos, cada um com seu próprio pool de conexões
+ * do Reactor Netty. As propriedades ficam sob {@code <prefixo>.http.*}
+ * (asaas.http.max-conexoes, pedido.service.http.timeout-resposta-ms, ...).
+ * Os pools publicam métricas (conexões ativas, ociosas, pendentes e tempo de
+ * aquisição) no registro global do Micrometer com o nome do pool. Com o
+ * ObservationRegistry cada requisição vira um span filho da observação
+ * corrente e leva o contexto do trace nos cabeçalhos (traceparent).
+ */
+@Configuration
+public class WebClientConfig {
+
+    private final Environment environment;
+
+    public WebClientConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider asaasConnectionProvider() {
+        return criarConnectionProvider("asaas", "asaas");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider pedidoServiceConnectionProvider() {
+        return criarConnectionProvider("pedido-service", "pedido.service");
+    }
+
+    @Bean
+    public WebClient asaasWebClient(ConnectionProvider asaasConnectionProvider,
+                                    ObservationRegistry observationRegistry,
+                                    @Value("${asaas.baseUrl}") String asaasBaseUrl,
+                                    @Value("${asaas.apiKey}") String asaasApiKey) {
+        return WebClient.builder()
+                .baseUrl(asaasBaseUrl)
+                .observationRegistry(observationRegistry)
+                .clientConnector(criarConector(asaasConnectionProvider, "asaas", asaasBaseUrl))
+                .defaultHeader("access_token", asaasApiKey)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.USER_AGENT, "SIGEG-Pagamento-Service/1.0")
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
+                .build();
+    }
+
+    @Bean
+    public WebClient pedidoServiceWebClient(ConnectionProvider pedidoServiceConnectionProvider,
+                                            ObservationRegistry observationRegistry,
+                                            @Value("${pedido.service.url}") String pedidoServiceUrl) {
+        return WebClient.builder()
+                .baseUrl(pedidoServiceUrl)
+                .observationRegistry(observationRegistry)
+                .clientConnector(criarConector(pedidoServiceConnectionProvider, "pedido.service", pedidoServiceUrl))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+
+    private ConnectionProvider criarConnectionProvider(String nome, String prefixo) {
+        return ConnectionProvider.builder(nome)
+                .maxConnections(propriedade(prefixo, "max-conexoes", 200))
+                .pendingAcquireMaxCount(propriedade(prefixo, "max-pendentes", 1000))
+                .pendingAcquireTimeout(Duration.ofMillis(propriedade(prefixo, "timeout-aquisicao-ms", 2000)))
+                .maxIdleTime(Duration.ofSeconds(propriedade(prefixo, "max-ocioso-s", 30)))
+                .maxLifeTime(Duration.ofMinutes(propriedade(prefixo, "max-vida-min", 5)))
+                .evictInBackground(Duration.ofSeconds(propriedade(prefixo, "intervalo-remocao-s", 30)))
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    private ReactorClientHttpConnector criarConector(ConnectionProvider connectionProvider, String prefixo, String baseUrl) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, propriedade(prefixo, "timeout-conexao-ms", 3000))
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                // Vale só enquanto a requisição está em curso; handlers de timeout fixos no canal fechariam as conexões ociosas do pool
+                .responseTimeout(Duration.ofMillis(propriedade(prefixo, "timeout-resposta-ms", 15000)))
+                .metrics(true, WebClientConfig::normalizarUri);
+
+        // HTTP/2 é negociado via ALPN, só em TLS; o SslContext único por cliente permite reaproveitar sessões TLS
+        if (baseUrl.startsWith("https") && environment.getProperty(prefixo + ".http.http2", Boolean.class, true)) {
+            httpClient = httpClient.secure().protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    static String normalizarUri(String uri) {
+        // Remove query string e IDs do Asaas (pay_..., cus_...) para não explodir a cardinalidade das métricas
+        int query = uri.indexOf('?');
+        String caminho = query >= 0 ? uri.substring(0, query) : uri;
+        return caminho.replaceAll("/[a-z]+_[A-Za-z0-9]+", "/{id}").replaceAll("/[0-9]+", "/{id}");
+    }
+
+    private int propriedade(String prefixo, String nome, int padrao) {
+        return environment.getProperty(prefixo + ".http." + nome, Integer.class, padrao);
+    }
+}
@@ -1,14 +1,30 @@
 package com.siseg.pagamento.controller;
 
 import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.model.PixQrCodeImagem;
 import com.siseg.pagamento.service.AsaasWebhookService;
+import com.siseg.pagamento.service.IdempotenciaService;
+import com.siseg.pagamento.service.PagamentoLoteService;
 import com.siseg.pagamento.service.PagamentoService;
+import com.siseg.pagamento.service.PixQrCodeService;
+import com.siseg.pagamento.service.Prazo;
+import com.siseg.pagamento.service.ReembolsoLoteService;
+import com.siseg.pagamento.service.WebhookInboxService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/pagamentos")
@@ -17,23 +33,56 @@ public class PagamentoController {
     
     private final PagamentoService pagamentoService;
     private final AsaasWebhookService asaasWebhookService;
+    private final PixQrCodeService pixQrCodeService;
+    private final WebhookInboxService webhookInboxService;
+    private final IdempotenciaService idempotenciaService;
+    private final PagamentoLoteService pagamentoLoteService;
+    private final ReembolsoLoteService reembolsoLoteService;
+    private final Duration prazoCriacao;
     
-    public PagamentoController(PagamentoService pagamentoService, AsaasWebhookService asaasWebhookService) {
+    public PagamentoController(PagamentoService pagamentoService, 
+                               AsaasWebhookService asaasWebhookService,
+                               PixQrCodeService pixQrCodeService,
+                               WebhookInboxService webhookInboxService,
+                               IdempotenciaService idempotenciaService,
+                               PagamentoLoteService pagamentoLoteService,
+                               ReembolsoLoteService reembolsoLoteService,
+                               @Value("${pagamento.criacao.prazo-ms:15000}") long prazoCriacaoMs) {
         this.pagamentoService = pagamentoService;
         this.asaasWebhookService = asaasWebhookService;
+        this.pixQrCodeService = pixQrCodeService;
+        this.webhookInboxService = webhookInboxService;
+        this.idempotenciaService = idempotenciaService;
+        this.pagamentoLoteService = pagamentoLoteService;
+        this.reembolsoLoteService = reembolsoLoteService;
+        this.prazoCriacao = Duration.ofMillis(prazoCriacaoMs);
     }
     
     @PostMapping
-    @Operation(summary = "Criar pagamento para pedido")
+    @Operation(summary = "Criar pagamento para pedido (aceita Idempotency-Key para repetições seguras e X-Request-Timeout-Ms com o tempo que o chamador ainda espera)")
     public ResponseEntity<PagamentoResponseDTO> criarPagamento(
             @RequestBody @Valid CriarPagamentoCompletoRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "X-Request-Timeout-Ms", required = false) Long timeoutMs,
             HttpServletRequest httpRequest) {
         String remoteIp = getClientIpAddress(httpRequest);
-        PagamentoResponseDTO response = pagamentoService.criarPagamento(
-                request.getPagamento(), 
-                request.getCliente(), 
-                remoteIp
-        );
+        Prazo prazo = prazoDaRequisicao(timeoutMs);
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(criarPagamento(request, remoteIp, prazo));
+        }
+        
+        PagamentoResponseDTO response = idempotenciaService.executar(idempotencyKey, "POST /api/pagamentos", request,
+                PagamentoResponseDTO.class, () -> criarPagamento(request, remoteIp, prazo));
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/lote")
+    @Operation(summary = "Criar pagamentos de vários pedidos (um resultado por item; falhas não interrompem o lote)")
+    public ResponseEntity<CriarPagamentosLoteResponseDTO> criarPagamentosLote(
+            @RequestBody @Valid CriarPagamentosLoteRequestDTO request,
+            HttpServletRequest httpRequest) {
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(
+                request.getPagamentos(), getClientIpAddress(httpRequest));
         return ResponseEntity.ok(response);
     }
     
@@ -44,6 +93,45 @@ public class PagamentoController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/pedidos/status")
+    @Operation(summary = "Status dos pagamentos de vários pedidos (pedidos sem pagamento ficam fora da lista)")
+    public ResponseEntity<List<StatusPagamentoPedidoDTO>> buscarStatusPorPedidos(
+            @RequestBody @Valid ConsultarStatusPedidosRequestDTO request) {
+        return ResponseEntity.ok(pagamentoService.buscarStatusPorPedidos(request.getPedidoIds()));
+    }
+    
+    @GetMapping("/pedidos/{pedidoId}/pix")
+    @Operation(summary = "Buscar QR Code PIX do pedido (202 enquanto não estiver pronto)")
+    public ResponseEntity<PixQrCodeResponseDTO> buscarQrCodePix(@PathVariable Long pedidoId) {
+        PixQrCodeResponseDTO response = pagamentoService.buscarQrCodePix(pedidoId);
+        HttpStatus status = response.isPronto() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(response);
+    }
+    
+    @GetMapping("/pedidos/{pedidoId}/qrcode")
+    @Operation(summary = "Imagem PNG do QR Code PIX do pedido")
+    public ResponseEntity<byte[]> buscarImagemQrCodePix(@PathVariable Long pedidoId, WebRequest webRequest) {
+        // O QR Code de um pagamento não muda: o ETag evita reenviar a imagem, e só ele é lido para o 304
+        String etag = "\"" + pixQrCodeService.buscarEtagImagem(pedidoId) + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate();
+        
+        // Compara com o If-None-Match como a especificação pede (ETags fracos e listas)
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        PixQrCodeImagem imagem = pixQrCodeService.buscarImagem(pedidoId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .contentLength(imagem.getImagem().length)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(imagem.getImagem());
+    }
+    
     @PostMapping("/webhook")
     @Operation(summary = "Webhook do Asaas para confirmação de pagamento")
     public ResponseEntity<String> webhookAsaas(
@@ -55,8 +143,9 @@ public class PagamentoController {
             return ResponseEntity.badRequest().body("Assinatura inválida");
         }
         
-        asaasWebhookService.processarWebhook(webhook);
-        return ResponseEntity.ok("Webhook processado com sucesso");
+        // Com o inbox habilitado só grava o evento; o processamento é assíncrono
+        webhookInboxService.receber(webhook);
+        return ResponseEntity.ok("Webhook recebido com sucesso");
     }
     
     @PostMapping("/pedidos/{pedidoId}/reembolso")
@@ -68,6 +157,39 @@ public class PagamentoController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/reembolsos/lote")
+    @Operation(summary = "Estornar pagamentos de vários pedidos em segundo plano (devolve o id do lote)")
+    public ResponseEntity<ReembolsoLoteResponseDTO> criarReembolsoLote(@RequestBody @Valid ReembolsoLoteRequestDTO request) {
+        ReembolsoLoteResponseDTO response = reembolsoLoteService.criar(request.getPedidoIds(), request.getMotivo());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @GetMapping("/reembolsos/lote/{loteId}")
+    @Operation(summary = "Progresso de um reembolso em lote")
+    public ResponseEntity<ReembolsoLoteResponseDTO> buscarReembolsoLote(@PathVariable Long loteId) {
+        return ResponseEntity.ok(reembolsoLoteService.buscar(loteId));
+    }
+    
+    private PagamentoResponseDTO criarPagamento(CriarPagamentoCompletoRequestDTO request, String remoteIp, Prazo prazo) {
+        return pagamentoService.criarPagamento(
+                request.getPagamento(), 
+                request.getCliente(), 
+                remoteIp,
+                prazo
+        );
+    }
+    
+    /**
+     * O cabeçalho só encurta o prazo configurado: quem chama não estende o
+     * tempo que o serviço aceita gastar numa criação.
+     */
+    private Prazo prazoDaRequisicao(Long timeoutMs) {
+        if (timeoutMs == null || timeoutMs >= prazoCriacao.toMillis()) {
+            return Prazo.em(prazoCriacao);
+        }
+        return Prazo.em(Duration.ofMillis(Math.max(0, timeoutMs)));
+    }
+    
     private String getClientIpAddress(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
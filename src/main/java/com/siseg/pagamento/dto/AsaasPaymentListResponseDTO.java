@@ -0,0 +1,12 @@
+package com.siseg.pagamento.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class AsaasPaymentListResponseDTO {
+    private Integer totalCount;
+    private List<AsaasPaymentResponseDTO> data = new ArrayList<>();
+}
@@ -4,6 +4,7 @@ import lombok.Data;
 
 @Data
 public class AsaasWebhookDTO {
+    private String id;
     private String event;
     private PaymentData payment;
     
@@ -0,0 +1,16 @@
+package com.siseg.pagamento.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ConsultarStatusPedidosRequestDTO {
+    @NotEmpty(message = "Informe ao menos um pedido")
+    @Size(max = 500, message = "A consulta aceita no máximo 500 pedidos")
+    private List<@NotNull(message = "ID do pedido é obrigatório") Long> pedidoIds = new ArrayList<>();
+}
@@ -0,0 +1,17 @@
+package com.siseg.pagamento.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CriarPagamentosLoteRequestDTO {
+    @NotEmpty(message = "O lote deve ter ao menos um pagamento")
+    @Size(max = 200, message = "O lote aceita no máximo 200 pagamentos")
+    @Valid
+    private List<CriarPagamentoCompletoRequestDTO> pagamentos = new ArrayList<>();
+}
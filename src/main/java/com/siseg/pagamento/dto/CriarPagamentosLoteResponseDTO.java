@@ -0,0 +1,23 @@
+package com.siseg.pagamento.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resposta da criação em lote: um resultado por pagamento, na mesma ordem do
+ * pedido.
+ */
+@Data
+public class CriarPagamentosLoteResponseDTO {
+    private List<ResultadoDTO> resultados = new ArrayList<>();
+
+    @Data
+    public static class ResultadoDTO {
+        private Long pedidoId;
+        private boolean sucesso;
+        private PagamentoResponseDTO pagamento;
+        private String erro;
+    }
+}
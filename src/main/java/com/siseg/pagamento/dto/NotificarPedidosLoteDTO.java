@@ -0,0 +1,11 @@
+package com.siseg.pagamento.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class NotificarPedidosLoteDTO {
+    private List<NotificarPedidoDTO> notificacoes = new ArrayList<>();
+}
@@ -0,0 +1,22 @@
+package com.siseg.pagamento.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resposta do envio em lote: um resultado por notificação, na mesma ordem do
+ * pedido.
+ */
+@Data
+public class NotificarPedidosLoteResponseDTO {
+    private List<ResultadoDTO> resultados = new ArrayList<>();
+
+    @Data
+    public static class ResultadoDTO {
+        private Long pedidoId;
+        private boolean sucesso;
+        private String erro;
+    }
+}
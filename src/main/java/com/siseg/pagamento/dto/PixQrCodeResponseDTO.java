@@ -0,0 +1,11 @@
+package com.siseg.pagamento.dto;
+
+import lombok.Data;
+
+@Data
+public class PixQrCodeResponseDTO {
+    private Long pedidoId;
+    private boolean pronto;
+    private String qrCode;
+    private String qrCodeImageUrl;
+}
@@ -0,0 +1,21 @@
+package com.siseg.pagamento.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ReembolsoLoteRequestDTO {
+    @NotEmpty(message = "Informe ao menos um pedido")
+    @Size(max = 1000, message = "O lote aceita no máximo 1000 pedidos")
+    private List<@NotNull(message = "ID do pedido é obrigatório") Long> pedidoIds = new ArrayList<>();
+
+    @NotBlank(message = "Motivo do reembolso é obrigatório")
+    @Size(max = 500, message = "Motivo deve ter no máximo 500 caracteres")
+    private String motivo;
+}
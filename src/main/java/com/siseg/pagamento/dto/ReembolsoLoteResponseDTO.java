@@ -0,0 +1,36 @@
+package com.siseg.pagamento.dto;
+
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLoteItem;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Situação de um reembolso em lote: contagens por status e o progresso de
+ * cada pedido.
+ */
+@Data
+public class ReembolsoLoteResponseDTO {
+    private Long id;
+    private StatusReembolsoLote status;
+    private String motivo;
+    private int total;
+    private int pendentes;
+    private int reembolsados;
+    private int jaReembolsados;
+    private int falhas;
+    private Instant criadoEm;
+    private Instant concluidoEm;
+    private List<ItemDTO> itens = new ArrayList<>();
+
+    @Data
+    public static class ItemDTO {
+        private Long pedidoId;
+        private StatusReembolsoLoteItem status;
+        private int tentativas;
+        private String erro;
+    }
+}
@@ -0,0 +1,25 @@
+package com.siseg.pagamento.dto;
+
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Projeção enxuta do pagamento para a consulta de status em lote: só as
+ * colunas que o painel usa, sem QR Code nem dados de reembolso.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusPagamentoPedidoDTO {
+    private Long pedidoId;
+    private MetodoPagamento metodo;
+    private StatusPagamento status;
+    private BigDecimal valor;
+    private Instant atualizadoEm;
+}
@@ -0,0 +1,4 @@
+package com.siseg.pagamento.event;
+
+public record PagamentoAlteradoEvent(Long pedidoId) {
+}
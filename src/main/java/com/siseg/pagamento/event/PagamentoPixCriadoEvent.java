@@ -0,0 +1,4 @@
+package com.siseg.pagamento.event;
+
+public record PagamentoPixCriadoEvent(Long pagamentoId, String asaasPaymentId) {
+}
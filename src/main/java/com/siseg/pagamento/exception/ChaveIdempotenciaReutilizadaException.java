@@ -0,0 +1,7 @@
+package com.siseg.pagamento.exception;
+
+public class ChaveIdempotenciaReutilizadaException extends RuntimeException {
+    public ChaveIdempotenciaReutilizadaException(String message) {
+        super(message);
+    }
+}
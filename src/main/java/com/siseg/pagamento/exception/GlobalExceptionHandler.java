@@ -39,6 +39,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(err);
     }
 
+    @ExceptionHandler(PrazoEsgotadoException.class)
+    public ResponseEntity<ErrorResponse> handlePrazoEsgotado(PrazoEsgotadoException ex, HttpServletRequest req) {
+        ErrorResponse err = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                "Gateway Timeout",
+                ex.getMessage(),
+                req.getRequestURI(),
+                null
+        );
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(err);
+    }
+
     @ExceptionHandler(PagamentoJaReembolsadoException.class)
     public ResponseEntity<ErrorResponse> handlePagamentoJaReembolsado(PagamentoJaReembolsadoException ex, HttpServletRequest req) {
         ErrorResponse err = new ErrorResponse(
@@ -52,6 +65,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(err);
     }
 
+    @ExceptionHandler(RequisicaoEmAndamentoException.class)
+    public ResponseEntity<ErrorResponse> handleRequisicaoEmAndamento(RequisicaoEmAndamentoException ex, HttpServletRequest req) {
+        ErrorResponse err = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                req.getRequestURI(),
+                null
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(err);
+    }
+
+    @ExceptionHandler(ChaveIdempotenciaReutilizadaException.class)
+    public ResponseEntity<ErrorResponse> handleChaveIdempotenciaReutilizada(ChaveIdempotenciaReutilizadaException ex, HttpServletRequest req) {
+        ErrorResponse err = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                "Unprocessable Entity",
+                ex.getMessage(),
+                req.getRequestURI(),
+                null
+        );
+        return ResponseEntity.unprocessableEntity().body(err);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException ex, HttpServletRequest req) {
         ErrorResponse err = new ErrorResponse(
@@ -0,0 +1,7 @@
+package com.siseg.pagamento.exception;
+
+public class PrazoEsgotadoException extends RuntimeException {
+    public PrazoEsgotadoException(String message) {
+        super(message);
+    }
+}
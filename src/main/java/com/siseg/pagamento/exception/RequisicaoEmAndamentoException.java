@@ -0,0 +1,7 @@
+package com.siseg.pagamento.exception;
+
+public class RequisicaoEmAndamentoException extends RuntimeException {
+    public RequisicaoEmAndamentoException(String message) {
+        super(message);
+    }
+}
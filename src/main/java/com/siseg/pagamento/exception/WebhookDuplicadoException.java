@@ -0,0 +1,7 @@
+package com.siseg.pagamento.exception;
+
+public class WebhookDuplicadoException extends RuntimeException {
+    public WebhookDuplicadoException(String message) {
+        super(message);
+    }
+}
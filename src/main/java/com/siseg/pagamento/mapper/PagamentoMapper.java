@@ -1,6 +1,7 @@
 package com.siseg.pagamento.mapper;
 
 import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.model.Pagamento;
 import com.siseg.pagamento.model.enumerations.MetodoPagamento;
 import org.springframework.stereotype.Component;
 
@@ -98,6 +99,27 @@ public class PagamentoMapper {
         request.setCpfCnpj(cpfCnpj);
         return request;
     }
+    
+    /**
+     * Cópia campo a campo, sem reflexão. qrCodeImageUrl não vem da entidade e
+     * fica a cargo de quem monta a resposta.
+     */
+    public PagamentoResponseDTO toPagamentoResponse(Pagamento pagamento) {
+        PagamentoResponseDTO response = new PagamentoResponseDTO();
+        response.setId(pagamento.getId());
+        response.setPedidoId(pagamento.getPedidoId());
+        response.setMetodo(pagamento.getMetodo());
+        response.setStatus(pagamento.getStatus());
+        response.setValor(pagamento.getValor());
+        response.setTroco(pagamento.getTroco());
+        response.setQrCode(pagamento.getQrCode());
+        response.setValorReembolsado(pagamento.getValorReembolsado());
+        response.setDataReembolso(pagamento.getDataReembolso());
+        response.setAsaasRefundId(pagamento.getAsaasRefundId());
+        response.setCriadoEm(pagamento.getCriadoEm());
+        response.setAtualizadoEm(pagamento.getAtualizadoEm());
+        return response;
+    }
 }
 
 
@@ -0,0 +1,29 @@
+package com.siseg.pagamento.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "asaas_clientes")
+@Getter
+@Setter
+@NoArgsConstructor
+public class AsaasCliente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // E-mail ou CPF/CNPJ normalizado (ver AsaasClienteCache.gerarChave)
+    @Column(nullable = false, unique = true)
+    private String chave;
+
+    @Column(name = "asaas_customer_id", nullable = false)
+    private String asaasCustomerId;
+
+    @Column(nullable = false)
+    private Instant criadoEm = Instant.now();
+}
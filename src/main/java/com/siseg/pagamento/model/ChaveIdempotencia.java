@@ -0,0 +1,36 @@
+package com.siseg.pagamento.model;
+
+import com.siseg.pagamento.model.enumerations.StatusChaveIdempotencia;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "chaves_idempotencia")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ChaveIdempotencia {
+    @Id
+    private String chave;
+
+    // SHA-256 da operação e do corpo da requisição
+    @Column(nullable = false, length = 64)
+    private String impressaoDigital;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatusChaveIdempotencia status;
+
+    // JSON da resposta devolvida na primeira execução
+    @Lob
+    private String resposta;
+
+    @Column(nullable = false, updatable = false)
+    private Instant criadoEm = Instant.now();
+
+    private Instant concluidoEm;
+}
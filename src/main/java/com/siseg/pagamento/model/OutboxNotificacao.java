@@ -0,0 +1,56 @@
+package com.siseg.pagamento.model;
+
+import com.siseg.pagamento.model.enumerations.StatusOutbox;
+import com.siseg.pagamento.model.enumerations.TipoNotificacao;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "outbox_notificacoes")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxNotificacao {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+
+    private String asaasPaymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TipoNotificacao tipo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatusOutbox status = StatusOutbox.PENDENTE;
+
+    @Column(nullable = false)
+    private int tentativas;
+
+    @Column(nullable = false)
+    private Instant proximaTentativaEm = Instant.now();
+
+    @Column(length = 500)
+    private String ultimoErro;
+
+    @Column(nullable = false, updatable = false)
+    private Instant criadoEm = Instant.now();
+
+    private Instant enviadoEm;
+
+    public static OutboxNotificacao pagamentoConfirmado(Long pedidoId, String asaasPaymentId) {
+        OutboxNotificacao notificacao = new OutboxNotificacao();
+        notificacao.setPedidoId(pedidoId);
+        notificacao.setAsaasPaymentId(asaasPaymentId);
+        notificacao.setTipo(TipoNotificacao.PAGAMENTO_CONFIRMADO);
+        return notificacao;
+    }
+}
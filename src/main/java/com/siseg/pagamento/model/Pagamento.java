@@ -39,9 +39,6 @@ public class Pagamento {
 
     // Campos específicos do PIX
     private String qrCode;
-    
-    @Column(columnDefinition = "LONGTEXT")
-    private String qrCodeImageUrl;
     private String asaasPaymentId;
     private String asaasCustomerId;
 
@@ -53,6 +50,10 @@ public class Pagamento {
     
     private String asaasRefundId;
 
+    // Trace da requisição que criou o pagamento
+    @Column(updatable = false, length = 32)
+    private String traceId;
+
     @Column(nullable = false, updatable = false)
     private Instant criadoEm = Instant.now();
 
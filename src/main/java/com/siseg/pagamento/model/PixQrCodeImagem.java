@@ -0,0 +1,30 @@
+package com.siseg.pagamento.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "pix_qrcode_imagens")
+@Getter
+@Setter
+@NoArgsConstructor
+public class PixQrCodeImagem {
+    @Id
+    @Column(name = "pagamento_id")
+    private Long pagamentoId;
+
+    // PNG já decodificado do base64 devolvido pelo Asaas
+    @Lob
+    @Column(nullable = false)
+    private byte[] imagem;
+
+    @Column(nullable = false, length = 64)
+    private String etag;
+
+    @Column(nullable = false, updatable = false)
+    private Instant criadoEm = Instant.now();
+}
@@ -0,0 +1,35 @@
+package com.siseg.pagamento.model;
+
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "reembolsos_lote")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReembolsoLote {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 500)
+    private String motivo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatusReembolsoLote status = StatusReembolsoLote.EM_ANDAMENTO;
+
+    @Column(nullable = false)
+    private int total;
+
+    @Column(nullable = false, updatable = false)
+    private Instant criadoEm = Instant.now();
+
+    private Instant concluidoEm;
+}
@@ -0,0 +1,43 @@
+package com.siseg.pagamento.model;
+
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLoteItem;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "reembolsos_lote_itens")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReembolsoLoteItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "lote_id", nullable = false, updatable = false)
+    private Long loteId;
+
+    @Column(name = "pedido_id", nullable = false, updatable = false)
+    private Long pedidoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatusReembolsoLoteItem status = StatusReembolsoLoteItem.PENDENTE;
+
+    @Column(nullable = false)
+    private int tentativas;
+
+    @Column(nullable = false)
+    private Instant proximaTentativaEm = Instant.now();
+
+    @Column(length = 500)
+    private String ultimoErro;
+
+    private Instant iniciadoEm;
+
+    private Instant concluidoEm;
+}
@@ -0,0 +1,49 @@
+package com.siseg.pagamento.model;
+
+import com.siseg.pagamento.model.enumerations.StatusWebhookEvento;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "webhook_eventos")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WebhookEvento {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String evento;
+
+    private String asaasPaymentId;
+
+    // JSON do webhook como recebido; nunca é alterado depois da gravação
+    @Lob
+    @Column(nullable = false, updatable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatusWebhookEvento status = StatusWebhookEvento.RECEBIDO;
+
+    @Column(nullable = false)
+    private int tentativas;
+
+    @Column(nullable = false)
+    private Instant proximaTentativaEm = Instant.now();
+
+    @Column(length = 500)
+    private String ultimoErro;
+
+    @Column(nullable = false, updatable = false)
+    private Instant recebidoEm = Instant.now();
+
+    private Instant iniciadoEm;
+
+    private Instant processadoEm;
+}
@@ -0,0 +1,24 @@
+package com.siseg.pagamento.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "webhook_eventos_processados")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WebhookEventoProcessado {
+    @Id
+    private String chave;
+
+    @Column(nullable = false, updatable = false)
+    private Instant criadoEm = Instant.now();
+}
@@ -0,0 +1,6 @@
+package com.siseg.pagamento.model.enumerations;
+
+public enum StatusChaveIdempotencia {
+    PROCESSANDO,
+    CONCLUIDA
+}
@@ -0,0 +1,8 @@
+package com.siseg.pagamento.model.enumerations;
+
+public enum StatusOutbox {
+    PENDENTE,
+    ENVIADA,
+    // Esgotou as tentativas; só volta a ser enviada com intervenção manual
+    FALHA
+}
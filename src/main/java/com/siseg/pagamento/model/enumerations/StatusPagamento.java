@@ -1,6 +1,8 @@
 package com.siseg.pagamento.model.enumerations;
 
 public enum StatusPagamento {
+    // Registrado localmente, aguardando a resposta do gateway
+    PROCESSING,
     PENDING,
     AUTHORIZED,
     PAID,
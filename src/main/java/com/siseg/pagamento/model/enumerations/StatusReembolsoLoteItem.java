@@ -0,0 +1,10 @@
+package com.siseg.pagamento.model.enumerations;
+
+public enum StatusReembolsoLoteItem {
+    PENDENTE,
+    PROCESSANDO,
+    REEMBOLSADO,
+    // Pagamento já estava reembolsado antes do lote
+    JA_REEMBOLSADO,
+    FALHOU
+}
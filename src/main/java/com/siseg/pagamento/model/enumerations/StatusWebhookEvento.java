@@ -0,0 +1,9 @@
+package com.siseg.pagamento.model.enumerations;
+
+public enum StatusWebhookEvento {
+    RECEBIDO,
+    PROCESSANDO,
+    PROCESSADO,
+    // Dead letter: esgotou as tentativas e aguarda análise manual
+    DESCARTADO
+}
@@ -0,0 +1,5 @@
+package com.siseg.pagamento.model.enumerations;
+
+public enum TipoNotificacao {
+    PAGAMENTO_CONFIRMADO
+}
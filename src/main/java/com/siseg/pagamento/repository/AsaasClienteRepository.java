@@ -0,0 +1,10 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.AsaasCliente;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface AsaasClienteRepository extends JpaRepository<AsaasCliente, Long> {
+    Optional<AsaasCliente> findByChave(String chave);
+}
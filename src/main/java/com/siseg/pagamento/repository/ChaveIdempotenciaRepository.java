@@ -0,0 +1,47 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.ChaveIdempotencia;
+import com.siseg.pagamento.model.enumerations.StatusChaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface ChaveIdempotenciaRepository extends JpaRepository<ChaveIdempotencia, String> {
+
+    /**
+     * INSERT puro para a PK decidir quem executa: com chave atribuída o save()
+     * faria merge e duas requisições simultâneas achariam que reservaram.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO chaves_idempotencia (chave, impressao_digital, status, criado_em) " +
+                   "VALUES (:chave, :impressaoDigital, :status, :criadoEm)", nativeQuery = true)
+    int reservar(@Param("chave") String chave,
+                 @Param("impressaoDigital") String impressaoDigital,
+                 @Param("status") String status,
+                 @Param("criadoEm") Instant criadoEm);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChaveIdempotencia c SET c.status = :concluida, c.resposta = :resposta, c.concluidoEm = :agora " +
+           "WHERE c.chave = :chave AND c.status = :processando")
+    int concluir(@Param("chave") String chave,
+                 @Param("processando") StatusChaveIdempotencia processando,
+                 @Param("concluida") StatusChaveIdempotencia concluida,
+                 @Param("resposta") String resposta,
+                 @Param("agora") Instant agora);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChaveIdempotencia c WHERE c.chave = :chave AND c.status = :status")
+    int liberar(@Param("chave") String chave, @Param("status") StatusChaveIdempotencia status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChaveIdempotencia c WHERE c.status = :status AND c.criadoEm < :limite")
+    int removerAntesDe(@Param("status") StatusChaveIdempotencia status, @Param("limite") Instant limite);
+}
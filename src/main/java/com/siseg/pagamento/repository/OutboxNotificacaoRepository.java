@@ -0,0 +1,52 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.OutboxNotificacao;
+import com.siseg.pagamento.model.enumerations.StatusOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxNotificacaoRepository extends JpaRepository<OutboxNotificacao, Long> {
+
+    /**
+     * Próximas notificações prontas para envio, só a mais antiga pendente de
+     * cada pedido: as seguintes esperam até ela sair de PENDENTE, preservando
+     * a ordem por pedido mesmo durante o backoff.
+     */
+    @Query("SELECT o FROM OutboxNotificacao o WHERE o.status = :status AND o.proximaTentativaEm <= :agora " +
+           "AND NOT EXISTS (SELECT 1 FROM OutboxNotificacao a WHERE a.pedidoId = o.pedidoId " +
+           "AND a.status = :status AND a.id < o.id) ORDER BY o.id")
+    List<OutboxNotificacao> buscarProntasParaEnvio(@Param("status") StatusOutbox status,
+                                                  @Param("agora") Instant agora,
+                                                  Pageable pageable);
+
+    /**
+     * Reserva a notificação para um relay adiando a próxima tentativa até
+     * arrendadaAte. Devolve 0 se outra instância já a pegou; se o relay cair
+     * com ela reservada, a notificação volta a ficar pronta quando o prazo vence.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxNotificacao o SET o.proximaTentativaEm = :arrendadaAte " +
+           "WHERE o.id = :id AND o.status = :status AND o.proximaTentativaEm <= :agora")
+    int reservar(@Param("id") Long id,
+                 @Param("status") StatusOutbox status,
+                 @Param("agora") Instant agora,
+                 @Param("arrendadaAte") Instant arrendadaAte);
+
+    long countByStatus(StatusOutbox status);
+
+    Optional<OutboxNotificacao> findFirstByStatusOrderByIdAsc(StatusOutbox status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxNotificacao o WHERE o.status = :status AND o.enviadoEm < :limite")
+    int removerEnviadasAntesDe(@Param("status") StatusOutbox status, @Param("limite") Instant limite);
+}
@@ -0,0 +1,128 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Escritas em lote na tabela pagamentos. Com id IDENTITY o Hibernate não
+ * agrupa INSERTs, então aqui cada operação vai ao banco num único
+ * executeBatch via JDBC. Instants são gravados em UTC, como o Hibernate faz.
+ */
+@Repository
+public class PagamentoLoteRepository {
+
+    private static final String INSERIR =
+            "INSERT INTO pagamentos (pedido_id, metodo, status, valor, troco, trace_id, criado_em) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String CONCLUIR_CRIACAO =
+            "UPDATE pagamentos SET status = ?, asaas_payment_id = ?, asaas_customer_id = ?, atualizado_em = ? " +
+            "WHERE id = ? AND status = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PagamentoLoteRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insere os pagamentos e preenche o id de cada um. Se um deles violar a
+     * unicidade do pedido, nenhum é gravado.
+     */
+    @Transactional
+    public void inserir(List<Pagamento> pagamentos) {
+        if (pagamentos.isEmpty()) {
+            return;
+        }
+
+        KeyHolder chaves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERIR, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Pagamento pagamento = pagamentos.get(i);
+                        ps.setLong(1, pagamento.getPedidoId());
+                        ps.setString(2, pagamento.getMetodo().name());
+                        ps.setString(3, pagamento.getStatus().name());
+                        ps.setBigDecimal(4, pagamento.getValor());
+                        if (pagamento.getTroco() != null) {
+                            ps.setBigDecimal(5, pagamento.getTroco());
+                        } else {
+                            ps.setNull(5, Types.DECIMAL);
+                        }
+                        ps.setString(6, pagamento.getTraceId());
+                        setInstant(ps, 7, pagamento.getCriadoEm());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return pagamentos.size();
+                    }
+                }, chaves);
+
+        List<Map<String, Object>> ids = chaves.getKeyList();
+        if (ids.size() != pagamentos.size()) {
+            throw new IllegalStateException("Banco devolveu " + ids.size() + " ids para " + pagamentos.size() + " pagamentos");
+        }
+        for (int i = 0; i < pagamentos.size(); i++) {
+            // O nome da coluna da chave gerada varia com o driver
+            pagamentos.get(i).setId(((Number) ids.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    /**
+     * Versão em lote de {@link PagamentoRepository#concluirCriacao}. Devolve,
+     * para cada pagamento, se o registro ainda estava em {@code statusAtual}.
+     */
+    @Transactional
+    public boolean[] concluirCriacao(List<Pagamento> pagamentos, StatusPagamento statusAtual) {
+        int[] atualizados = jdbcTemplate.batchUpdate(CONCLUIR_CRIACAO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Pagamento pagamento = pagamentos.get(i);
+                ps.setString(1, pagamento.getStatus().name());
+                ps.setString(2, pagamento.getAsaasPaymentId());
+                ps.setString(3, pagamento.getAsaasCustomerId());
+                setInstant(ps, 4, pagamento.getAtualizadoEm());
+                ps.setLong(5, pagamento.getId());
+                ps.setString(6, statusAtual.name());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return pagamentos.size();
+            }
+        });
+
+        boolean[] concluidos = new boolean[atualizados.length];
+        for (int i = 0; i < atualizados.length; i++) {
+            // Drivers que reescrevem o lote devolvem SUCCESS_NO_INFO em vez da contagem
+            concluidos[i] = atualizados[i] > 0 || atualizados[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return concluidos;
+    }
+
+    private static void setInstant(PreparedStatement ps, int indice, Instant instante) throws SQLException {
+        if (instante == null) {
+            ps.setNull(indice, Types.TIMESTAMP);
+            return;
+        }
+        ps.setTimestamp(indice, Timestamp.from(instante), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC)));
+    }
+}
@@ -1,9 +1,17 @@
 package com.siseg.pagamento.repository;
 
+import com.siseg.pagamento.dto.StatusPagamentoPedidoDTO;
 import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
 import com.siseg.pagamento.model.enumerations.StatusPagamento;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +19,40 @@ public interface PagamentoRepository extends JpaRepository<Pagamento, Long> {
     Optional<Pagamento> findByPedidoId(Long pedidoId);
     List<Pagamento> findByStatus(StatusPagamento status);
     Optional<Pagamento> findByAsaasPaymentId(String asaasPaymentId);
-}
+    List<Pagamento> findByStatusAndCriadoEmBefore(StatusPagamento status, Instant criadoEm);
+    List<Pagamento> findByMetodoAndStatusInAndAsaasPaymentIdIsNotNull(MetodoPagamento metodo, Collection<StatusPagamento> status);
+
+    @Query("SELECT new com.siseg.pagamento.dto.StatusPagamentoPedidoDTO(p.pedidoId, p.metodo, p.status, p.valor, p.atualizadoEm) " +
+           "FROM Pagamento p WHERE p.pedidoId IN :pedidoIds ORDER BY p.pedidoId")
+    List<StatusPagamentoPedidoDTO> buscarStatusPorPedidos(@Param("pedidoIds") Collection<Long> pedidoIds);
+
+    @Query("SELECT p.pedidoId FROM Pagamento p WHERE p.pedidoId IN :pedidoIds")
+    List<Long> buscarPedidosComPagamento(@Param("pedidoIds") Collection<Long> pedidoIds);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Pagamento p SET p.qrCode = :qrCode WHERE p.id = :id")
+    int atualizarQrCode(@Param("id") Long id, @Param("qrCode") String qrCode);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Pagamento p SET p.status = :status, p.asaasPaymentId = :asaasPaymentId, " +
+           "p.asaasCustomerId = :asaasCustomerId, p.atualizadoEm = :atualizadoEm " +
+           "WHERE p.id = :id AND p.status = :statusAtual")
+    int concluirCriacao(@Param("id") Long id,
+                        @Param("statusAtual") StatusPagamento statusAtual,
+                        @Param("status") StatusPagamento status,
+                        @Param("asaasPaymentId") String asaasPaymentId,
+                        @Param("asaasCustomerId") String asaasCustomerId,
+                        @Param("atualizadoEm") Instant atualizadoEm);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Pagamento p WHERE p.id = :id AND p.status = :status")
+    int removerSeStatus(@Param("id") Long id, @Param("status") StatusPagamento status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Pagamento p WHERE p.id IN :ids AND p.status = :status")
+    int removerTodosSeStatus(@Param("ids") Collection<Long> ids, @Param("status") StatusPagamento status);
+}
@@ -0,0 +1,16 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.PixQrCodeImagem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface PixQrCodeImagemRepository extends JpaRepository<PixQrCodeImagem, Long> {
+    @Query("SELECT i.etag FROM PixQrCodeImagem i, Pagamento p WHERE p.id = i.pagamentoId AND p.pedidoId = :pedidoId")
+    Optional<String> findEtagByPedidoId(@Param("pedidoId") Long pedidoId);
+
+    @Query("SELECT i FROM PixQrCodeImagem i, Pagamento p WHERE p.id = i.pagamentoId AND p.pedidoId = :pedidoId")
+    Optional<PixQrCodeImagem> findByPedidoId(@Param("pedidoId") Long pedidoId);
+}
@@ -0,0 +1,71 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.ReembolsoLoteItem;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLoteItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReembolsoLoteItemRepository extends JpaRepository<ReembolsoLoteItem, Long> {
+
+    List<ReembolsoLoteItem> findByLoteIdOrderById(Long loteId);
+
+    @Query("SELECT i.id FROM ReembolsoLoteItem i WHERE i.status = :status AND i.proximaTentativaEm <= :agora ORDER BY i.id")
+    List<Long> buscarIdsProntos(@Param("status") StatusReembolsoLoteItem status,
+                                @Param("agora") Instant agora,
+                                Pageable pageable);
+
+    @Query("SELECT COUNT(i) FROM ReembolsoLoteItem i WHERE i.loteId = :loteId AND i.status IN :status")
+    long contarPorStatus(@Param("loteId") Long loteId, @Param("status") Collection<StatusReembolsoLoteItem> status);
+
+    /**
+     * Reserva o item para um worker. Devolve 0 se outro worker já o pegou.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReembolsoLoteItem i SET i.status = :processando, i.iniciadoEm = :agora " +
+           "WHERE i.id = :id AND i.status = :pendente")
+    int reservar(@Param("id") Long id,
+                 @Param("pendente") StatusReembolsoLoteItem pendente,
+                 @Param("processando") StatusReembolsoLoteItem processando,
+                 @Param("agora") Instant agora);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReembolsoLoteItem i SET i.status = :status, i.concluidoEm = :agora, i.ultimoErro = :ultimoErro WHERE i.id = :id")
+    int concluir(@Param("id") Long id,
+                 @Param("status") StatusReembolsoLoteItem status,
+                 @Param("ultimoErro") String ultimoErro,
+                 @Param("agora") Instant agora);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReembolsoLoteItem i SET i.status = :status, i.tentativas = :tentativas, " +
+           "i.proximaTentativaEm = :proximaTentativaEm, i.ultimoErro = :ultimoErro WHERE i.id = :id")
+    int registrarFalha(@Param("id") Long id,
+                       @Param("status") StatusReembolsoLoteItem status,
+                       @Param("tentativas") int tentativas,
+                       @Param("proximaTentativaEm") Instant proximaTentativaEm,
+                       @Param("ultimoErro") String ultimoErro);
+
+    /**
+     * Devolve para a fila itens presos em PROCESSANDO (instância reiniciada
+     * no meio do reembolso). Conta como tentativa: o estorno pode ter chegado
+     * ao Asaas.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReembolsoLoteItem i SET i.status = :pendente, i.tentativas = i.tentativas + 1, i.ultimoErro = :ultimoErro " +
+           "WHERE i.status = :processando AND i.iniciadoEm < :limite")
+    int liberarTravados(@Param("processando") StatusReembolsoLoteItem processando,
+                        @Param("pendente") StatusReembolsoLoteItem pendente,
+                        @Param("limite") Instant limite,
+                        @Param("ultimoErro") String ultimoErro);
+}
@@ -0,0 +1,23 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.ReembolsoLote;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface ReembolsoLoteRepository extends JpaRepository<ReembolsoLote, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReembolsoLote l SET l.status = :concluido, l.concluidoEm = :agora " +
+           "WHERE l.id = :id AND l.status = :emAndamento")
+    int concluir(@Param("id") Long id,
+                 @Param("emAndamento") StatusReembolsoLote emAndamento,
+                 @Param("concluido") StatusReembolsoLote concluido,
+                 @Param("agora") Instant agora);
+}
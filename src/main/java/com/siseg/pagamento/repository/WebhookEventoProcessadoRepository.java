@@ -0,0 +1,27 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.WebhookEventoProcessado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface WebhookEventoProcessadoRepository extends JpaRepository<WebhookEventoProcessado, String> {
+
+    /**
+     * INSERT puro: com chave atribuída o save() faria merge e sobrescreveria
+     * uma chave existente em vez de falhar na PK.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO webhook_eventos_processados (chave, criado_em) VALUES (:chave, :criadoEm)", nativeQuery = true)
+    int inserir(@Param("chave") String chave, @Param("criadoEm") Instant criadoEm);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM WebhookEventoProcessado w WHERE w.criadoEm < :limite")
+    int removerAntesDe(@Param("limite") Instant limite);
+}
@@ -0,0 +1,59 @@
+package com.siseg.pagamento.repository;
+
+import com.siseg.pagamento.model.WebhookEvento;
+import com.siseg.pagamento.model.enumerations.StatusWebhookEvento;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface WebhookEventoRepository extends JpaRepository<WebhookEvento, Long> {
+
+    @Query("SELECT e.id FROM WebhookEvento e WHERE e.status = :status AND e.proximaTentativaEm <= :agora ORDER BY e.id")
+    List<Long> buscarIdsProntos(@Param("status") StatusWebhookEvento status,
+                                @Param("agora") Instant agora,
+                                Pageable pageable);
+
+    /**
+     * Reserva o evento para um worker. Devolve 0 se outro worker já o pegou.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvento e SET e.status = :processando, e.iniciadoEm = :agora " +
+           "WHERE e.id = :id AND e.status = :recebido")
+    int reservar(@Param("id") Long id,
+                 @Param("recebido") StatusWebhookEvento recebido,
+                 @Param("processando") StatusWebhookEvento processando,
+                 @Param("agora") Instant agora);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvento e SET e.status = :status, e.processadoEm = :agora, e.ultimoErro = NULL WHERE e.id = :id")
+    int marcarProcessado(@Param("id") Long id, @Param("status") StatusWebhookEvento status, @Param("agora") Instant agora);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvento e SET e.status = :status, e.tentativas = :tentativas, " +
+           "e.proximaTentativaEm = :proximaTentativaEm, e.ultimoErro = :ultimoErro WHERE e.id = :id")
+    int registrarFalha(@Param("id") Long id,
+                       @Param("status") StatusWebhookEvento status,
+                       @Param("tentativas") int tentativas,
+                       @Param("proximaTentativaEm") Instant proximaTentativaEm,
+                       @Param("ultimoErro") String ultimoErro);
+
+    /**
+     * Devolve para a fila eventos presos em PROCESSANDO (worker morto no meio
+     * do processamento).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvento e SET e.status = :recebido WHERE e.status = :processando AND e.iniciadoEm < :limite")
+    int liberarTravados(@Param("processando") StatusWebhookEvento processando,
+                        @Param("recebido") StatusWebhookEvento recebido,
+                        @Param("limite") Instant limite);
+}
@@ -0,0 +1,185 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.ClienteInfoDTO;
+import com.siseg.pagamento.model.AsaasCliente;
+import com.siseg.pagamento.repository.AsaasClienteRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cache de IDs de clientes do Asaas em dois níveis: LRU em memória com TTL
+ * e a tabela asaas_clientes, que sobrevive a reinícios e é compartilhada
+ * entre instâncias.
+ *
+ * <p>Métricas: pagamento.clientes.cache.consultas por resultado (memoria,
+ * banco, falha) e pagamento.clientes.cache.tamanho (entradas em memória).
+ */
+@Component
+public class AsaasClienteCache {
+
+    private static final Logger logger = Logger.getLogger(AsaasClienteCache.class.getName());
+
+    private final AsaasClienteRepository asaasClienteRepository;
+    private final int maxEntradas;
+    private final Duration ttlMemoria;
+    private final Duration validadePersistida;
+    private final Map<String, Entrada> memoria;
+
+    private final AtomicLong acertosMemoria = new AtomicLong();
+    private final AtomicLong acertosBanco = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    public AsaasClienteCache(AsaasClienteRepository asaasClienteRepository,
+                             @Value("${asaas.clientes.cache.max-entradas:10000}") int maxEntradas,
+                             @Value("${asaas.clientes.cache.ttl-minutos:60}") long ttlMinutos,
+                             @Value("${asaas.clientes.cache.validade-dias:30}") long validadeDias) {
+        this.asaasClienteRepository = asaasClienteRepository;
+        this.maxEntradas = maxEntradas;
+        this.ttlMemoria = Duration.ofMinutes(ttlMinutos);
+        this.validadePersistida = Duration.ofDays(validadeDias);
+        this.memoria = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                return size() > AsaasClienteCache.this.maxEntradas;
+            }
+        };
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        FunctionCounter.builder("pagamento.clientes.cache.consultas", acertosMemoria, AtomicLong::get).tag("resultado", "memoria").register(registry);
+        FunctionCounter.builder("pagamento.clientes.cache.consultas", acertosBanco, AtomicLong::get).tag("resultado", "banco").register(registry);
+        FunctionCounter.builder("pagamento.clientes.cache.consultas", falhas, AtomicLong::get).tag("resultado", "falha").register(registry);
+        Gauge.builder("pagamento.clientes.cache.tamanho", this, AsaasClienteCache::getTamanhoMemoria)
+                .description("Clientes do Asaas no cache em memória")
+                .register(registry);
+    }
+
+    public String buscar(ClienteInfoDTO cliente) {
+        String chave = gerarChave(cliente);
+        if (chave == null) {
+            return null;
+        }
+
+        String emMemoria = buscarEmMemoria(chave);
+        if (emMemoria != null) {
+            acertosMemoria.incrementAndGet();
+            return emMemoria;
+        }
+
+        String persistido = buscarNoBanco(chave);
+        if (persistido != null) {
+            acertosBanco.incrementAndGet();
+            guardarEmMemoria(chave, persistido);
+            return persistido;
+        }
+
+        falhas.incrementAndGet();
+        return null;
+    }
+
+    public void registrar(ClienteInfoDTO cliente, String asaasCustomerId) {
+        String chave = gerarChave(cliente);
+        if (chave == null || asaasCustomerId == null) {
+            return;
+        }
+
+        guardarEmMemoria(chave, asaasCustomerId);
+        persistir(chave, asaasCustomerId);
+    }
+
+    public long getAcertosMemoria() {
+        return acertosMemoria.get();
+    }
+
+    public long getAcertosBanco() {
+        return acertosBanco.get();
+    }
+
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    public int getTamanhoMemoria() {
+        synchronized (memoria) {
+            return memoria.size();
+        }
+    }
+
+    static String gerarChave(ClienteInfoDTO cliente) {
+        if (cliente == null) {
+            return null;
+        }
+        if (cliente.getEmail() != null && !cliente.getEmail().isBlank()) {
+            return "email:" + cliente.getEmail().trim().toLowerCase(Locale.ROOT);
+        }
+        if (cliente.getCpfCnpj() != null) {
+            String cpfCnpj = cliente.getCpfCnpj().replaceAll("[^0-9]", "");
+            if (!cpfCnpj.isEmpty()) {
+                return "cpf:" + cpfCnpj;
+            }
+        }
+        return null;
+    }
+
+    private String buscarEmMemoria(String chave) {
+        synchronized (memoria) {
+            Entrada entrada = memoria.get(chave);
+            if (entrada == null) {
+                return null;
+            }
+            if (entrada.expiraEm().isBefore(Instant.now())) {
+                memoria.remove(chave);
+                return null;
+            }
+            return entrada.asaasCustomerId();
+        }
+    }
+
+    private void guardarEmMemoria(String chave, String asaasCustomerId) {
+        synchronized (memoria) {
+            memoria.put(chave, new Entrada(asaasCustomerId, Instant.now().plus(ttlMemoria)));
+        }
+    }
+
+    private String buscarNoBanco(String chave) {
+        try {
+            return asaasClienteRepository.findByChave(chave)
+                    .filter(c -> c.getCriadoEm().plus(validadePersistida).isAfter(Instant.now()))
+                    .map(AsaasCliente::getAsaasCustomerId)
+                    .orElse(null);
+        } catch (Exception e) {
+            logger.warning("Erro ao consultar cache persistente de clientes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void persistir(String chave, String asaasCustomerId) {
+        try {
+            AsaasCliente asaasCliente = asaasClienteRepository.findByChave(chave).orElseGet(AsaasCliente::new);
+            asaasCliente.setChave(chave);
+            asaasCliente.setAsaasCustomerId(asaasCustomerId);
+            asaasCliente.setCriadoEm(Instant.now());
+            asaasClienteRepository.save(asaasCliente);
+        } catch (DataIntegrityViolationException e) {
+            // Outra instância registrou o mesmo cliente ao mesmo tempo
+            logger.fine("Cliente já registrado no cache persistente: " + chave);
+        } catch (Exception e) {
+            logger.warning("Erro ao gravar cache persistente de clientes: " + e.getMessage());
+        }
+    }
+
+    private record Entrada(String asaasCustomerId, Instant expiraEm) {
+    }
+}
@@ -4,151 +4,230 @@ import com.siseg.pagamento.dto.*;
 import com.siseg.pagamento.exception.PaymentGatewayException;
 import com.siseg.pagamento.mapper.PagamentoMapper;
 import com.siseg.pagamento.model.enumerations.MetodoPagamento;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import com.siseg.pagamento.service.ProtecaoAsaas.Operacao;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
+/**
+ * Cliente do gateway Asaas. Cada operação existe em duas formas: a variante
+ * {@code ...Reativo} devolve um {@link Mono} e não bloqueia, permitindo compor
+ * chamadas sem ocupar uma thread por requisição em andamento; a variante
+ * bloqueante apenas aguarda o resultado da reativa. Toda chamada à API passa
+ * pelo disjuntor e pelo bulkhead da operação em {@link ProtecaoAsaas}; as
+ * leituras idempotentes têm ainda retentativas e hedge
+ * ({@link PoliticaLeituraAsaas}).
+ *
+ * <p>Cada operação é uma observação asaas.operacao (span "asaas
+ * &lt;operação&gt;"), pai das requisições HTTP feitas por ela, inclusive
+ * retentativas e hedge.
+ */
 @Service
 public class AsaasService {
     
     private static final Logger logger = Logger.getLogger(AsaasService.class.getName());
+    private static final String MENSAGEM_ERRO_CONEXAO = "Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.";
     
     private final WebClient webClient;
     private final PagamentoMapper pagamentoMapper;
+    private final AsaasClienteCache asaasClienteCache;
+    private final ProtecaoAsaas protecao;
+    private final PoliticaLeituraAsaas politicaLeitura;
+    private final ObservationRegistry observationRegistry;
+    private final ChamadasCompartilhadas<String, AsaasPaymentResponseDTO> buscasPagamento = new ChamadasCompartilhadas<>();
     
-    public AsaasService(@Value("${asaas.baseUrl}") String asaasBaseUrl, 
-                       @Value("${asaas.apiKey}") String asaasApiKey,
-                       PagamentoMapper pagamentoMapper) {
+    public AsaasService(@Qualifier("asaasWebClient") WebClient webClient,
+                       PagamentoMapper pagamentoMapper,
+                       AsaasClienteCache asaasClienteCache,
+                       ProtecaoAsaas protecao,
+                       PoliticaLeituraAsaas politicaLeitura,
+                       ObservationRegistry observationRegistry) {
+        this.webClient = webClient;
         this.pagamentoMapper = pagamentoMapper;
-        this.webClient = WebClient.builder()
-                .baseUrl(asaasBaseUrl)
-                .defaultHeader("access_token", asaasApiKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.USER_AGENT, "SIGEG-Pagamento-Service/1.0")
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
-                .build();
+        this.asaasClienteCache = asaasClienteCache;
+        this.protecao = protecao;
+        this.politicaLeitura = politicaLeitura;
+        this.observationRegistry = observationRegistry;
     }
     
     public String buscarOuCriarCliente(ClienteInfoDTO cliente) {
-        try {
-            String customerId = buscarClientePorEmail(cliente.getEmail());
-            if (customerId != null) {
-                return customerId;
-            }
-            return criarCliente(cliente);
-        } catch (WebClientException e) {
-            logger.severe("Erro de conexão ao buscar/criar cliente no Asaas: " + e.getMessage());
-            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
-        } catch (Exception e) {
-            logger.severe("Erro ao buscar/criar cliente no Asaas: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao processar cliente: " + e.getMessage());
-        }
+        return buscarOuCriarClienteReativo(cliente).block();
     }
     
     public AsaasPaymentResponseDTO criarPagamentoPix(Long pedidoId, BigDecimal valor, String asaasCustomerId) {
-        AsaasPaymentRequestDTO request = criarRequestPagamento(pedidoId, valor, null, asaasCustomerId, null, null, null, null);
-        return chamarApi("/payments", request);
+        return criarPagamentoPixReativo(pedidoId, valor, asaasCustomerId).block();
     }
     
     public AsaasPaymentResponseDTO criarPagamentoCartao(Long pedidoId, BigDecimal valor, String asaasCustomerId, 
                                                        CartaoCreditoRequestDTO cartaoDTO, ClienteInfoDTO cliente, String remoteIp) {
-        AsaasPaymentRequestDTO request = criarRequestPagamento(pedidoId, valor, MetodoPagamento.CREDIT_CARD, asaasCustomerId, cartaoDTO, cliente, obterCpfCnpjCliente(cliente), remoteIp);
-        return chamarApi("/payments", request);
+        return criarPagamentoCartaoReativo(pedidoId, valor, asaasCustomerId, cartaoDTO, cliente, remoteIp).block();
     }
     
     public AsaasQrCodeResponseDTO buscarQrCodePix(String asaasPaymentId) {
-        try {
-            return webClient.get()
-                    .uri("/payments/{id}/pixQrCode", asaasPaymentId)
-                    .retrieve()
-                    .bodyToMono(AsaasQrCodeResponseDTO.class)
-                    .block();
-        } catch (WebClientException e) {
-            logger.severe("Erro de conexão ao obter QR Code PIX: " + e.getMessage());
-            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
-        } catch (Exception e) {
-            logger.severe("Erro ao obter QR Code PIX: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao obter QR Code PIX: " + e.getMessage());
-        }
+        return buscarQrCodePixReativo(asaasPaymentId).block();
     }
     
     public AsaasPaymentResponseDTO buscarPagamento(String asaasPaymentId) {
-        try {
-            return webClient.get()
-                    .uri("/payments/{id}", asaasPaymentId)
-                    .retrieve()
-                    .bodyToMono(AsaasPaymentResponseDTO.class)
-                    .block();
-        } catch (WebClientResponseException e) {
-            logger.severe("Erro do Asaas ao buscar pagamento (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
-            throw new PaymentGatewayException("Erro ao buscar pagamento no Asaas: " + e.getResponseBodyAsString(), e);
-        } catch (WebClientException e) {
-            logger.severe("Erro de conexão ao buscar pagamento: " + e.getMessage());
-            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
-        } catch (Exception e) {
-            logger.severe("Erro ao buscar pagamento: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao buscar pagamento: " + e.getMessage());
-        }
+        return buscarPagamentoReativo(asaasPaymentId).block();
+    }
+    
+    public AsaasPaymentResponseDTO buscarPagamentoPorPedido(Long pedidoId) {
+        return buscarPagamentoPorPedidoReativo(pedidoId).block();
     }
     
     public AsaasRefundResponseDTO estornarPagamento(String asaasPaymentId, String description) {
-        try {
-            return webClient.post()
-                    .uri("/payments/{id}/refund", asaasPaymentId)
-                    .bodyValue(createRefundRequest(description))
-                    .retrieve()
-                    .bodyToMono(AsaasRefundResponseDTO.class)
-                    .block();
-        } catch (WebClientResponseException e) {
-            logger.severe("Erro do Asaas ao estornar pagamento (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
-            throw new PaymentGatewayException("Erro ao estornar pagamento: " + e.getResponseBodyAsString(), e);
-        } catch (WebClientException e) {
-            logger.severe("Erro de conexão ao estornar pagamento no Asaas: " + e.getMessage());
-            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
-        } catch (Exception e) {
-            logger.severe("Erro ao estornar pagamento: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao estornar pagamento: " + e.getMessage());
-        }
+        return estornarPagamentoReativo(asaasPaymentId, description).block();
     }
     
     public void confirmarPagamentoSandbox(String asaasPaymentId) {
-        try {
-            webClient.post()
-                    .uri("/sandbox/payment/{id}/confirm", asaasPaymentId)
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
-            logger.info("Pagamento confirmado no sandbox: " + asaasPaymentId);
-        } catch (WebClientResponseException e) {
-            logger.severe("Erro do Asaas ao confirmar pagamento no sandbox (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
-            throw new PaymentGatewayException("Erro ao confirmar pagamento no sandbox: " + e.getResponseBodyAsString(), e);
-        } catch (WebClientException e) {
-            logger.severe("Erro de conexão ao confirmar pagamento no sandbox: " + e.getMessage());
-            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
-        } catch (Exception e) {
-            logger.severe("Erro ao confirmar pagamento no sandbox: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao confirmar pagamento no sandbox: " + e.getMessage());
-        }
+        confirmarPagamentoSandboxReativo(asaasPaymentId).block();
     }
     
-    private String buscarClientePorEmail(String email) {
-        AsaasCustomerResponseDTO existingCustomer = buscarCliente(email);
-        if (temClienteValido(existingCustomer)) {
-            return existingCustomer.getId();
-        }
-        return null;
+    public Mono<String> buscarOuCriarClienteReativo(ClienteInfoDTO cliente) {
+        // O cache consulta o banco, por isso sai do event loop do WebClient
+        return Mono.fromCallable(() -> asaasClienteCache.buscar(cliente))
+                .subscribeOn(Schedulers.boundedElastic())
+                .switchIfEmpty(Mono.defer(() -> protecao.proteger(Operacao.CLIENTE, buscarOuCriarClienteNaApi(cliente))))
+                .transform(chamada -> tratarErros(chamada, "buscar/criar cliente no Asaas", null, "Erro ao processar cliente"))
+                .transform(chamada -> observar(Operacao.CLIENTE, chamada));
+    }
+    
+    public Mono<AsaasPaymentResponseDTO> criarPagamentoPixReativo(Long pedidoId, BigDecimal valor, String asaasCustomerId) {
+        AsaasPaymentRequestDTO request = criarRequestPagamento(pedidoId, valor, null, asaasCustomerId, null, null, null, null);
+        return protecao.proteger(Operacao.COBRANCA_PIX, chamarApi("/payments", request))
+                .transform(chamada -> observar(Operacao.COBRANCA_PIX, chamada));
     }
     
-    private AsaasCustomerResponseDTO buscarCliente(String email) {
+    public Mono<AsaasPaymentResponseDTO> criarPagamentoCartaoReativo(Long pedidoId, BigDecimal valor, String asaasCustomerId,
+                                                                    CartaoCreditoRequestDTO cartaoDTO, ClienteInfoDTO cliente, String remoteIp) {
+        AsaasPaymentRequestDTO request = criarRequestPagamento(pedidoId, valor, MetodoPagamento.CREDIT_CARD, asaasCustomerId, cartaoDTO, cliente, obterCpfCnpjCliente(cliente), remoteIp);
+        return protecao.proteger(Operacao.COBRANCA_CARTAO, chamarApi("/payments", request))
+                .transform(chamada -> observar(Operacao.COBRANCA_CARTAO, chamada));
+    }
+    
+    public Mono<AsaasQrCodeResponseDTO> buscarQrCodePixReativo(String asaasPaymentId) {
+        return webClient.get()
+                .uri("/payments/{id}/pixQrCode", asaasPaymentId)
+                .retrieve()
+                .bodyToMono(AsaasQrCodeResponseDTO.class)
+                .transform(chamada -> tratarErros(chamada, "obter QR Code PIX", null, "Erro ao obter QR Code PIX"))
+                .transform(chamada -> protecao.proteger(Operacao.QR_CODE_PIX, chamada))
+                .transform(chamada -> politicaLeitura.ler(Operacao.QR_CODE_PIX, chamada))
+                .transform(chamada -> observar(Operacao.QR_CODE_PIX, chamada));
+    }
+    
+    /**
+     * Consultas simultâneas à mesma cobrança compartilham uma única chamada
+     * ao Asaas.
+     */
+    public Mono<AsaasPaymentResponseDTO> buscarPagamentoReativo(String asaasPaymentId) {
+        return buscasPagamento.executarReativo(asaasPaymentId, () -> webClient.get()
+                .uri("/payments/{id}", asaasPaymentId)
+                .retrieve()
+                .bodyToMono(AsaasPaymentResponseDTO.class)
+                .transform(chamada -> tratarErros(chamada, "buscar pagamento", "Erro ao buscar pagamento no Asaas", "Erro ao buscar pagamento"))
+                .transform(chamada -> protecao.proteger(Operacao.BUSCAR_PAGAMENTO, chamada))
+                .transform(chamada -> politicaLeitura.ler(Operacao.BUSCAR_PAGAMENTO, chamada))
+                .transform(chamada -> observar(Operacao.BUSCAR_PAGAMENTO, chamada)));
+    }
+    
+    /**
+     * Busca a cobrança criada para o pedido pelo externalReference. Vazio se o
+     * Asaas não tiver cobrança para o pedido.
+     */
+    public Mono<AsaasPaymentResponseDTO> buscarPagamentoPorPedidoReativo(Long pedidoId) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/payments")
+                        .queryParam("externalReference", pedidoId)
+                        .build())
+                .retrieve()
+                .bodyToMono(AsaasPaymentListResponseDTO.class)
+                .flatMap(lista -> Mono.justOrEmpty(lista.getData().stream()
+                        .filter(pagamento -> pagamento.getId() != null)
+                        .findFirst()))
+                .transform(chamada -> tratarErros(chamada, "buscar pagamento do pedido"))
+                .transform(chamada -> protecao.proteger(Operacao.BUSCAR_PAGAMENTO_PEDIDO, chamada))
+                .transform(chamada -> politicaLeitura.ler(Operacao.BUSCAR_PAGAMENTO_PEDIDO, chamada))
+                .transform(chamada -> observar(Operacao.BUSCAR_PAGAMENTO_PEDIDO, chamada));
+    }
+    
+    public Mono<AsaasRefundResponseDTO> estornarPagamentoReativo(String asaasPaymentId, String description) {
+        return webClient.post()
+                .uri("/payments/{id}/refund", asaasPaymentId)
+                .bodyValue(createRefundRequest(description))
+                .retrieve()
+                .bodyToMono(AsaasRefundResponseDTO.class)
+                .transform(chamada -> tratarErros(chamada, "estornar pagamento"))
+                .transform(chamada -> protecao.proteger(Operacao.ESTORNO, chamada))
+                .transform(chamada -> observar(Operacao.ESTORNO, chamada));
+    }
+    
+    public Mono<Void> confirmarPagamentoSandboxReativo(String asaasPaymentId) {
+        return webClient.post()
+                .uri("/sandbox/payment/{id}/confirm", asaasPaymentId)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .doOnSuccess(ignored -> logger.info("Pagamento confirmado no sandbox: " + asaasPaymentId))
+                .transform(chamada -> tratarErros(chamada, "confirmar pagamento no sandbox"))
+                .transform(chamada -> protecao.proteger(Operacao.CONFIRMAR_SANDBOX, chamada))
+                .transform(chamada -> observar(Operacao.CONFIRMAR_SANDBOX, chamada));
+    }
+    
+    /**
+     * A observação vira a corrente no contexto Reactor, de onde o WebClient
+     * tira o pai das requisições, e na thread durante a inscrição, quando a
+     * primeira requisição costuma partir. O pai dela é a observação do
+     * contexto ou, na falta, a da thread que se inscreve (chamadas
+     * bloqueantes).
+     */
+    private <T> Mono<T> observar(Operacao operacao, Mono<T> chamada) {
+        return Mono.deferContextual(contexto -> {
+            Observation observacao = Observation.createNotStarted("asaas.operacao", observationRegistry)
+                    .contextualName("asaas " + operacao.getNome())
+                    .lowCardinalityKeyValue("operacao", operacao.getNome())
+                    .parentObservation(contexto.getOrDefault(ObservationThreadLocalAccessor.KEY,
+                            observationRegistry.getCurrentObservation()))
+                    .start();
+            Mono<T> observada = chamada
+                    .doOnError(observacao::error)
+                    .doOnTerminate(observacao::stop)
+                    .doOnCancel(observacao::stop)
+                    .contextWrite(contextoFilho -> contextoFilho.put(ObservationThreadLocalAccessor.KEY, observacao));
+            // Inscrição com a observação aberta na thread: o tracing prefere o span da thread ao do contexto
+            return Mono.<T>from(assinante -> {
+                try (Observation.Scope ignorado = observacao.openScope()) {
+                    observada.subscribe(assinante);
+                }
+            });
+        });
+    }
+    
+    private Mono<String> buscarOuCriarClienteNaApi(ClienteInfoDTO cliente) {
+        return buscarCliente(cliente.getEmail())
+                .filter(this::temClienteValido)
+                .switchIfEmpty(Mono.defer(() -> criarClienteNaApi(criarRequestCliente(cliente))
+                        .filter(this::temClienteValido)
+                        .switchIfEmpty(Mono.error(() -> new PaymentGatewayException("Falha ao criar cliente no Asaas - resposta nula")))))
+                .map(AsaasCustomerResponseDTO::getId)
+                .flatMap(customerId -> Mono.fromRunnable(() -> asaasClienteCache.registrar(cliente, customerId))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(customerId));
+    }
+    
+    private Mono<AsaasCustomerResponseDTO> buscarCliente(String email) {
         return webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/customers")
@@ -156,36 +235,23 @@ public class AsaasService {
                         .build())
                 .retrieve()
                 .bodyToMono(AsaasCustomerResponseDTO.class)
-                .block();
+                .transform(politicaLeitura::comRetentativas);
     }
     
     private boolean temClienteValido(AsaasCustomerResponseDTO customer) {
         return customer != null && customer.getId() != null;
     }
     
-    private String criarCliente(ClienteInfoDTO cliente) {
-        AsaasCustomerRequestDTO customerRequest = criarRequestCliente(cliente);
-        AsaasCustomerResponseDTO newCustomer = criarClienteNaApi(customerRequest);
-        
-        if (!temClienteValido(newCustomer)) {
-            throw new PaymentGatewayException("Falha ao criar cliente no Asaas - resposta nula");
-        }
-        
-        return newCustomer.getId();
-    }
-    
-    private AsaasCustomerResponseDTO criarClienteNaApi(AsaasCustomerRequestDTO customerRequest) {
-        try {
-            return webClient.post()
-                    .uri("/customers")
-                    .bodyValue(customerRequest)
-                    .retrieve()
-                    .bodyToMono(AsaasCustomerResponseDTO.class)
-                    .block();
-        } catch (WebClientResponseException e) {
-            logger.severe("Erro do Asaas ao criar cliente (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
-            throw new PaymentGatewayException("Erro ao criar cliente no Asaas: " + e.getResponseBodyAsString(), e);
-        }
+    private Mono<AsaasCustomerResponseDTO> criarClienteNaApi(AsaasCustomerRequestDTO customerRequest) {
+        return webClient.post()
+                .uri("/customers")
+                .bodyValue(customerRequest)
+                .retrieve()
+                .bodyToMono(AsaasCustomerResponseDTO.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    logger.severe("Erro do Asaas ao criar cliente (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
+                    return new PaymentGatewayException("Erro ao criar cliente no Asaas: " + e.getResponseBodyAsString(), e);
+                });
     }
     
     private AsaasCustomerRequestDTO criarRequestCliente(ClienteInfoDTO cliente) {
@@ -202,18 +268,41 @@ public class AsaasService {
         return pagamentoMapper.toAsaasPaymentRequest(pedidoId, valor, metodo, asaasCustomerId, cartaoDTO, cliente, cpfCnpj, remoteIp);
     }
     
-    private AsaasPaymentResponseDTO chamarApi(String endpoint, AsaasPaymentRequestDTO request) {
-        try {
-            return webClient.post()
-                    .uri(endpoint)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(AsaasPaymentResponseDTO.class)
-                    .block();
-        } catch (WebClientResponseException e) {
-            logger.severe("Erro do Asaas (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
-            throw e;
+    private Mono<AsaasPaymentResponseDTO> chamarApi(String endpoint, AsaasPaymentRequestDTO request) {
+        // Erros HTTP da criação seguem sem tradução: o PagamentoService devolve o corpo do Asaas ao cliente
+        return webClient.post()
+                .uri(endpoint)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(AsaasPaymentResponseDTO.class)
+                .doOnError(WebClientResponseException.class, e ->
+                        logger.severe("Erro do Asaas (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString()));
+    }
+    
+    private <T> Mono<T> tratarErros(Mono<T> chamada, String operacao) {
+        return tratarErros(chamada, operacao, "Erro ao " + operacao, "Erro ao " + operacao);
+    }
+    
+    /**
+     * Traduz os erros da chamada em {@link PaymentGatewayException}. Sem
+     * {@code mensagemErroHttp}, respostas de erro do Asaas são tratadas como
+     * falha de conexão.
+     */
+    private <T> Mono<T> tratarErros(Mono<T> chamada, String operacao, String mensagemErroHttp, String mensagemErro) {
+        return chamada.onErrorMap(e -> !(e instanceof PaymentGatewayException), e -> traduzirErro(e, operacao, mensagemErroHttp, mensagemErro));
+    }
+    
+    private PaymentGatewayException traduzirErro(Throwable e, String operacao, String mensagemErroHttp, String mensagemErro) {
+        if (mensagemErroHttp != null && e instanceof WebClientResponseException responseException) {
+            logger.severe("Erro do Asaas ao " + operacao + " (HTTP " + responseException.getStatusCode() + "): " + responseException.getResponseBodyAsString());
+            return new PaymentGatewayException(mensagemErroHttp + ": " + responseException.getResponseBodyAsString(), e);
+        }
+        if (e instanceof WebClientException) {
+            logger.severe("Erro de conexão ao " + operacao + ": " + e.getMessage());
+            return new PaymentGatewayException(MENSAGEM_ERRO_CONEXAO, e);
         }
+        logger.severe("Erro ao " + operacao + ": " + e.getMessage());
+        return new PaymentGatewayException(mensagemErro + ": " + e.getMessage(), e);
     }
     
     private String obterCpfCnpjCliente(ClienteInfoDTO cliente) {
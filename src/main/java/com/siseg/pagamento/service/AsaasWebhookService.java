@@ -1,11 +1,19 @@
 package com.siseg.pagamento.service;
 
 import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.event.PagamentoAlteradoEvent;
 import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.model.OutboxNotificacao;
 import com.siseg.pagamento.model.Pagamento;
 import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
 import com.siseg.pagamento.repository.PagamentoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,12 +28,25 @@ public class AsaasWebhookService {
     private String webhookSecret;
     
     private final PagamentoRepository pagamentoRepository;
-    private final PedidoServiceClient pedidoServiceClient;
+    private final OutboxNotificacaoRepository outboxNotificacaoRepository;
+    private final WebhookIdempotencia webhookIdempotencia;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObservationRegistry observationRegistry;
+    private final Counter pagamentosDesconhecidos;
     
     public AsaasWebhookService(PagamentoRepository pagamentoRepository, 
-                               PedidoServiceClient pedidoServiceClient) {
+                               OutboxNotificacaoRepository outboxNotificacaoRepository,
+                               WebhookIdempotencia webhookIdempotencia,
+                               ApplicationEventPublisher eventPublisher,
+                               ObservationRegistry observationRegistry) {
         this.pagamentoRepository = pagamentoRepository;
-        this.pedidoServiceClient = pedidoServiceClient;
+        this.outboxNotificacaoRepository = outboxNotificacaoRepository;
+        this.webhookIdempotencia = webhookIdempotencia;
+        this.eventPublisher = eventPublisher;
+        this.observationRegistry = observationRegistry;
+        this.pagamentosDesconhecidos = Counter.builder("pagamento.webhook.pagamento-desconhecido")
+                .description("Webhooks cujo id de pagamento não existe na base, contando cada tentativa")
+                .register(Metrics.globalRegistry);
     }
     
     public boolean validarAccessToken(String accessToken) {
@@ -42,13 +63,18 @@ public class AsaasWebhookService {
             return;
         }
         
+        // Primeira escrita da transação: uma redelivery concorrente espera por este registro e falha na PK
+        webhookIdempotencia.registrar(WebhookIdempotencia.gerarChave(webhook));
+        
         String asaasPaymentId = webhook.getPayment().getId();
         Pagamento pagamento = buscarPagamentoPorAsaasId(asaasPaymentId);
+        correlacionarComCriacao(pagamento);
         
         String evento = webhook.getEvent();
         processarEvento(evento, pagamento, asaasPaymentId);
         
         pagamentoRepository.save(pagamento);
+        eventPublisher.publishEvent(new PagamentoAlteradoEvent(pagamento.getPedidoId()));
     }
     
     private boolean isEventoPagamentoValido(AsaasWebhookDTO webhook) {
@@ -61,9 +87,24 @@ public class AsaasWebhookService {
                "PAYMENT_REFUSED".equals(evento);
     }
     
+    /** Marca a observação do webhook com o pedido e o trace em que o pagamento foi criado. */
+    private void correlacionarComCriacao(Pagamento pagamento) {
+        Observation observacao = observationRegistry.getCurrentObservation();
+        if (observacao == null) {
+            return;
+        }
+        observacao.highCardinalityKeyValue("pagamento.pedido_id", String.valueOf(pagamento.getPedidoId()));
+        if (pagamento.getTraceId() != null) {
+            observacao.highCardinalityKeyValue("pagamento.trace_id_origem", pagamento.getTraceId());
+        }
+    }
+    
     private Pagamento buscarPagamentoPorAsaasId(String asaasPaymentId) {
         return pagamentoRepository.findByAsaasPaymentId(asaasPaymentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Pagamento não encontrado: " + asaasPaymentId));
+                .orElseThrow(() -> {
+                    pagamentosDesconhecidos.increment();
+                    return new ResourceNotFoundException("Pagamento não encontrado: " + asaasPaymentId);
+                });
     }
     
     private void processarEvento(String evento, Pagamento pagamento, String asaasPaymentId) {
@@ -79,8 +120,8 @@ public class AsaasWebhookService {
         pagamento.setAtualizadoEm(java.time.Instant.now());
         logger.info("Pagamento confirmado via webhook: " + asaasPaymentId + " - Pedido: " + pagamento.getPedidoId());
         
-        // Notificar monólito sobre pagamento confirmado
-        pedidoServiceClient.notificarPagamentoConfirmado(pagamento.getPedidoId(), asaasPaymentId);
+        // Notificação ao monólito gravada na mesma transação; o OutboxRelayService entrega depois
+        outboxNotificacaoRepository.save(OutboxNotificacao.pagamentoConfirmado(pagamento.getPedidoId(), asaasPaymentId));
     }
     
     private void processarPagamentoRecusado(Pagamento pagamento, String asaasPaymentId) {
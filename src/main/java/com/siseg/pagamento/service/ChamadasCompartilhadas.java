@@ -0,0 +1,91 @@
+package com.siseg.pagamento.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Junta chamadas concorrentes para a mesma chave (single-flight): enquanto
+ * uma chamada está em andamento, quem pede a mesma chave recebe o resultado
+ * dela, inclusive o erro, em vez de disparar outra. Nada é guardado depois
+ * que a chamada termina.
+ */
+final class ChamadasCompartilhadas<K, V> {
+
+    private final Map<K, CompletableFuture<V>> emAndamento = new ConcurrentHashMap<>();
+    private final AtomicLong compartilhadas = new AtomicLong();
+
+    V executar(K chave, Supplier<V> chamada) {
+        CompletableFuture<V> nova = new CompletableFuture<>();
+        CompletableFuture<V> existente = emAndamento.putIfAbsent(chave, nova);
+        if (existente != null) {
+            compartilhadas.incrementAndGet();
+            return aguardar(existente);
+        }
+
+        try {
+            V resultado = chamada.get();
+            emAndamento.remove(chave, nova);
+            nova.complete(resultado);
+            return resultado;
+        } catch (Throwable e) {
+            emAndamento.remove(chave, nova);
+            nova.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Versão reativa. A chamada segue até o fim mesmo que quem a iniciou
+     * cancele, porque o resultado pode estar sendo aguardado por outros.
+     */
+    Mono<V> executarReativo(K chave, Supplier<Mono<V>> chamada) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> nova = new CompletableFuture<>();
+            CompletableFuture<V> existente = emAndamento.putIfAbsent(chave, nova);
+            if (existente != null) {
+                compartilhadas.incrementAndGet();
+                return Mono.fromFuture(existente, true);
+            }
+
+            // Sai do mapa antes de completar: quem recebe o resultado já pode iniciar outra chamada
+            chamada.get().subscribe(
+                    resultado -> {
+                        emAndamento.remove(chave, nova);
+                        nova.complete(resultado);
+                    },
+                    erro -> {
+                        emAndamento.remove(chave, nova);
+                        nova.completeExceptionally(erro);
+                    },
+                    () -> {
+                        emAndamento.remove(chave, nova);
+                        nova.complete(null);
+                    });
+            return Mono.fromFuture(nova, true);
+        });
+    }
+
+    long getCompartilhadas() {
+        return compartilhadas.get();
+    }
+
+    private V aguardar(CompletableFuture<V> chamada) {
+        try {
+            return chamada.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException erro) {
+                throw erro;
+            }
+            if (e.getCause() instanceof Error erro) {
+                throw erro;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.siseg.pagamento.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker de uma operação. Fechado, guarda o resultado das últimas
+ * chamadas numa janela circular e abre quando a fração de falhas atinge o
+ * limite, desde que a janela tenha o mínimo de chamadas. Aberto, recusa tudo
+ * até passar o tempo de abertura; depois fica meio aberto e deixa passar
+ * algumas chamadas de teste: se todas dão certo fecha, se uma falha abre de
+ * novo.
+ */
+final class Disjuntor {
+
+    private static final Logger logger = Logger.getLogger(Disjuntor.class.getName());
+
+    /** Em ordem de gravidade: o ordinal é o valor publicado na métrica. */
+    enum Estado { FECHADO, MEIO_ABERTO, ABERTO }
+
+    private final String nome;
+    private final boolean[] janela;
+    private final int minimoChamadas;
+    private final double limiteFalhas;
+    private final long tempoAbertoNanos;
+    private final int chamadasTeste;
+    private final AtomicLong rejeicoes = new AtomicLong();
+
+    private Estado estado = Estado.FECHADO;
+    private int posicao;
+    private int chamadas;
+    private int falhas;
+    private long abertoAte;
+    private int testesLiberados;
+    private int testesConcluidos;
+
+    Disjuntor(String nome, int tamanhoJanela, int minimoChamadas, double taxaFalhaPercentual,
+              Duration tempoAberto, int chamadasTeste) {
+        this.nome = nome;
+        this.janela = new boolean[Math.max(1, tamanhoJanela)];
+        this.minimoChamadas = Math.max(1, Math.min(minimoChamadas, janela.length));
+        this.limiteFalhas = taxaFalhaPercentual / 100.0;
+        this.tempoAbertoNanos = tempoAberto.toNanos();
+        this.chamadasTeste = Math.max(1, chamadasTeste);
+    }
+
+    /**
+     * Reserva a passagem de uma chamada. Quem recebe true deve informar o
+     * resultado com {@link #registrarSucesso}, {@link #registrarFalha} ou
+     * {@link #descartar}.
+     */
+    synchronized boolean permitir() {
+        if (estado == Estado.ABERTO) {
+            if (System.nanoTime() - abertoAte < 0) {
+                rejeicoes.incrementAndGet();
+                return false;
+            }
+            mudarEstado(Estado.MEIO_ABERTO);
+            testesLiberados = 0;
+            testesConcluidos = 0;
+        }
+        if (estado == Estado.MEIO_ABERTO) {
+            if (testesLiberados >= chamadasTeste) {
+                rejeicoes.incrementAndGet();
+                return false;
+            }
+            testesLiberados++;
+        }
+        return true;
+    }
+
+    synchronized void registrarSucesso() {
+        if (estado == Estado.MEIO_ABERTO) {
+            if (++testesConcluidos >= chamadasTeste) {
+                fechar();
+            }
+        } else if (estado == Estado.FECHADO) {
+            registrar(false);
+        }
+    }
+
+    synchronized void registrarFalha() {
+        if (estado == Estado.MEIO_ABERTO) {
+            abrir();
+        } else if (estado == Estado.FECHADO) {
+            registrar(true);
+            if (chamadas >= minimoChamadas && falhas >= limiteFalhas * chamadas) {
+                abrir();
+            }
+        }
+    }
+
+    /** Chamada liberada que terminou sem resultado (cancelada ou recusada adiante). */
+    synchronized void descartar() {
+        if (estado == Estado.MEIO_ABERTO && testesLiberados > testesConcluidos) {
+            testesLiberados--;
+        }
+    }
+
+    synchronized Estado getEstado() {
+        return estado;
+    }
+
+    long getRejeicoes() {
+        return rejeicoes.get();
+    }
+
+    private void registrar(boolean falha) {
+        if (chamadas == janela.length) {
+            if (janela[posicao]) {
+                falhas--;
+            }
+        } else {
+            chamadas++;
+        }
+        janela[posicao] = falha;
+        if (falha) {
+            falhas++;
+        }
+        posicao = (posicao + 1) % janela.length;
+    }
+
+    private void abrir() {
+        if (estado == Estado.MEIO_ABERTO) {
+            logger.warning("Circuito " + nome + " aberto de novo: chamada de teste falhou");
+        } else {
+            logger.warning("Circuito " + nome + " aberto: " + falhas + " falhas nas últimas " + chamadas + " chamadas");
+        }
+        abertoAte = System.nanoTime() + tempoAbertoNanos;
+        estado = Estado.ABERTO;
+    }
+
+    private void fechar() {
+        chamadas = 0;
+        falhas = 0;
+        posicao = 0;
+        mudarEstado(Estado.FECHADO);
+    }
+
+    private void mudarEstado(Estado novo) {
+        logger.info("Circuito " + nome + ": " + estado + " -> " + novo);
+        estado = novo;
+    }
+}
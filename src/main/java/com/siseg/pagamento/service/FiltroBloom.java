@@ -0,0 +1,82 @@
+package com.siseg.pagamento.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom thread-safe para strings. Responde "certamente ausente" ou
+ * "talvez presente"; o tamanho e o número de funções de hash são calculados a
+ * partir da capacidade e da taxa de falsos positivos desejadas.
+ */
+final class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+    private final long capacidade;
+    private final AtomicLong inseridos = new AtomicLong();
+
+    FiltroBloom(long capacidade, double taxaFalsoPositivo) {
+        double ln2 = Math.log(2);
+        long bitsNecessarios = (long) Math.ceil(-capacidade * Math.log(taxaFalsoPositivo) / (ln2 * ln2));
+        this.numBits = (int) Math.max(64, Math.min(bitsNecessarios, Integer.MAX_VALUE - 64));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacidade * ln2));
+        this.capacidade = capacidade;
+        this.bits = new AtomicLongArray((numBits + 63) / 64);
+    }
+
+    void adicionar(String valor) {
+        long h1 = fnv1a(valor);
+        long h2 = misturar(h1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (int) Math.floorMod(h1 + i * h2, (long) numBits);
+            long mascara = 1L << (bit & 63);
+            int palavra = bit >>> 6;
+            long atual;
+            do {
+                atual = bits.get(palavra);
+            } while ((atual & mascara) == 0 && !bits.compareAndSet(palavra, atual, atual | mascara));
+        }
+        inseridos.incrementAndGet();
+    }
+
+    boolean talvezContenha(String valor) {
+        long h1 = fnv1a(valor);
+        long h2 = misturar(h1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (int) Math.floorMod(h1 + i * h2, (long) numBits);
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passou da capacidade: a taxa de falsos positivos já é maior que a
+     * configurada.
+     */
+    boolean saturado() {
+        return inseridos.get() >= capacidade;
+    }
+
+    private static long fnv1a(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long misturar(long h) {
+        // Finalizador do MurmurHash3 para derivar o segundo hash
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
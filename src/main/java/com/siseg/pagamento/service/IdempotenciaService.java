@@ -0,0 +1,179 @@
+package com.siseg.pagamento.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siseg.pagamento.exception.ChaveIdempotenciaReutilizadaException;
+import com.siseg.pagamento.exception.RequisicaoEmAndamentoException;
+import com.siseg.pagamento.model.ChaveIdempotencia;
+import com.siseg.pagamento.model.enumerations.StatusChaveIdempotencia;
+import com.siseg.pagamento.repository.ChaveIdempotenciaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Idempotency-Key das operações de escrita. A primeira requisição reserva a
+ * chave em chaves_idempotencia junto com a impressão digital do corpo, executa
+ * e grava a resposta; repetições com o mesmo corpo recebem essa resposta sem
+ * executar de novo. Enquanto a primeira está em andamento, as repetições
+ * aguardam: na mesma instância em memória, entre instâncias consultando a
+ * tabela até pagamento.idempotencia.espera-max-ms. Só respostas de sucesso são
+ * guardadas; se a execução falha a chave é liberada e a próxima tentativa
+ * executa normalmente. Por isso a operação precisa tolerar ser executada de
+ * novo depois de uma falha de resultado incerto: a criação de pagamento
+ * devolve o pagamento que o pedido já tiver.
+ */
+@Service
+public class IdempotenciaService {
+
+    private static final Logger logger = Logger.getLogger(IdempotenciaService.class.getName());
+    private static final int TAMANHO_MAX_CHAVE = 255;
+    private static final long PAUSA_INICIAL_MS = 50;
+    private static final long PAUSA_MAXIMA_MS = 500;
+
+    private final ChaveIdempotenciaRepository chaveIdempotenciaRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration esperaMaxima;
+    private final Duration retencao;
+    private final Duration timeoutProcessamento;
+    private final ChamadasCompartilhadas<String, Object> emAndamento = new ChamadasCompartilhadas<>();
+
+    public IdempotenciaService(ChaveIdempotenciaRepository chaveIdempotenciaRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${pagamento.idempotencia.espera-max-ms:30000}") long esperaMaximaMs,
+                               @Value("${pagamento.idempotencia.retencao-horas:24}") long retencaoHoras,
+                               @Value("${pagamento.idempotencia.timeout-processamento-min:5}") long timeoutProcessamentoMin) {
+        this.chaveIdempotenciaRepository = chaveIdempotenciaRepository;
+        this.objectMapper = objectMapper;
+        this.esperaMaxima = Duration.ofMillis(esperaMaximaMs);
+        this.retencao = Duration.ofHours(retencaoHoras);
+        this.timeoutProcessamento = Duration.ofMinutes(timeoutProcessamentoMin);
+    }
+
+    /**
+     * Executa a operação uma única vez por chave. Lança
+     * {@link ChaveIdempotenciaReutilizadaException} se a chave já foi usada
+     * com outro corpo e {@link RequisicaoEmAndamentoException} se a execução
+     * original não terminou dentro da espera máxima.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T executar(String chave, String operacao, Object requisicao, Class<T> tipoResposta, Supplier<T> execucao) {
+        validarChave(chave);
+        String impressaoDigital = calcularImpressaoDigital(operacao, requisicao);
+        return (T) emAndamento.executar(chave + "|" + impressaoDigital,
+                () -> executarUmaVez(chave, impressaoDigital, tipoResposta, execucao));
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.idempotencia.intervalo-limpeza-ms:600000}")
+    public void removerExpiradas() {
+        Instant agora = Instant.now();
+        int concluidas = chaveIdempotenciaRepository.removerAntesDe(StatusChaveIdempotencia.CONCLUIDA, agora.minus(retencao));
+        // Reservas de instâncias que caíram no meio da execução
+        int abandonadas = chaveIdempotenciaRepository.removerAntesDe(StatusChaveIdempotencia.PROCESSANDO, agora.minus(timeoutProcessamento));
+        if (concluidas + abandonadas > 0) {
+            logger.info("Chaves de idempotência removidas: " + concluidas + " concluídas, " + abandonadas + " abandonadas");
+        }
+    }
+
+    private <T> T executarUmaVez(String chave, String impressaoDigital, Class<T> tipoResposta, Supplier<T> execucao) {
+        Instant limite = Instant.now().plus(esperaMaxima);
+        long pausa = PAUSA_INICIAL_MS;
+        while (true) {
+            Optional<ChaveIdempotencia> existente = chaveIdempotenciaRepository.findById(chave);
+            if (existente.isEmpty()) {
+                if (reservar(chave, impressaoDigital)) {
+                    break;
+                }
+                continue;
+            }
+
+            ChaveIdempotencia registro = existente.get();
+            if (!registro.getImpressaoDigital().equals(impressaoDigital)) {
+                throw new ChaveIdempotenciaReutilizadaException("Idempotency-Key já usada com outra requisição: " + chave);
+            }
+            if (registro.getStatus() == StatusChaveIdempotencia.CONCLUIDA) {
+                return desserializar(registro.getResposta(), tipoResposta);
+            }
+            if (Instant.now().isAfter(limite)) {
+                throw new RequisicaoEmAndamentoException("Requisição com a Idempotency-Key " + chave + " ainda em processamento");
+            }
+            aguardar(pausa, chave);
+            pausa = Math.min(pausa * 2, PAUSA_MAXIMA_MS);
+        }
+
+        T resposta;
+        try {
+            resposta = execucao.get();
+        } catch (RuntimeException e) {
+            chaveIdempotenciaRepository.liberar(chave, StatusChaveIdempotencia.PROCESSANDO);
+            throw e;
+        }
+
+        try {
+            chaveIdempotenciaRepository.concluir(chave, StatusChaveIdempotencia.PROCESSANDO, StatusChaveIdempotencia.CONCLUIDA,
+                    objectMapper.writeValueAsString(resposta), Instant.now());
+        } catch (Exception e) {
+            // A operação já foi feita: a resposta volta mesmo sem ficar guardada
+            logger.severe("Erro ao gravar resposta da Idempotency-Key " + chave + ": " + e.getMessage());
+        }
+        return resposta;
+    }
+
+    private boolean reservar(String chave, String impressaoDigital) {
+        try {
+            chaveIdempotenciaRepository.reservar(chave, impressaoDigital, StatusChaveIdempotencia.PROCESSANDO.name(), Instant.now());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Outra instância reservou entre a consulta e o INSERT
+            return false;
+        }
+    }
+
+    private void validarChave(String chave) {
+        if (chave == null || chave.isBlank() || chave.length() > TAMANHO_MAX_CHAVE) {
+            throw new IllegalArgumentException("Idempotency-Key deve ter entre 1 e " + TAMANHO_MAX_CHAVE + " caracteres");
+        }
+    }
+
+    String calcularImpressaoDigital(String operacao, Object requisicao) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operacao.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(requisicao));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Requisição inválida: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> T desserializar(String resposta, Class<T> tipoResposta) {
+        try {
+            return objectMapper.readValue(resposta, tipoResposta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Resposta guardada ilegível: " + e.getMessage(), e);
+        }
+    }
+
+    private void aguardar(long millis, String chave) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequisicaoEmAndamentoException("Requisição com a Idempotency-Key " + chave + " ainda em processamento");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.siseg.pagamento.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Espaça chamadas para no máximo N por segundo entre todas as threads, sem
+ * rajadas: cada chamada reserva o próximo horário livre e dorme até ele.
+ * Taxa zero ou negativa desliga o limite.
+ */
+final class LimitadorTaxa {
+
+    private final long intervaloNanos;
+    private long proximaLiberacao = System.nanoTime();
+
+    LimitadorTaxa(double chamadasPorSegundo) {
+        this.intervaloNanos = chamadasPorSegundo > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / chamadasPorSegundo) : 0;
+    }
+
+    void aguardar() throws InterruptedException {
+        if (intervaloNanos == 0) {
+            return;
+        }
+        long espera;
+        synchronized (this) {
+            long agora = System.nanoTime();
+            long liberacao = Math.max(agora, proximaLiberacao);
+            proximaLiberacao = liberacao + intervaloNanos;
+            espera = liberacao - agora;
+        }
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.NotificarPedidoDTO;
+import com.siseg.pagamento.dto.NotificarPedidosLoteResponseDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Agrupa as confirmações de pagamento enviadas ao serviço de pedidos. Cada
+ * {@link #notificar} entra numa fila; a fila é esvaziada em lotes de até
+ * tamanho-max itens ou a cada janela-ms, e cada lote vira uma única chamada a
+ * POST /api/pedidos/pagamentos-confirmados. O Mono devolvido completa com o
+ * resultado do próprio item.
+ *
+ * <p>Se o serviço de pedidos não tiver o endpoint de lote (404, 405 ou 501),
+ * os itens seguem em chamadas individuais e o lote só volta a ser tentado
+ * depois de pedido.service.notificacao.lote.indisponivel-min.
+ */
+@Component
+public class NotificadorPagamentosConfirmados {
+
+    private static final Logger logger = Logger.getLogger(NotificadorPagamentosConfirmados.class.getName());
+    private static final Set<HttpStatus> LOTE_NAO_SUPORTADO =
+            Set.of(HttpStatus.NOT_FOUND, HttpStatus.METHOD_NOT_ALLOWED, HttpStatus.NOT_IMPLEMENTED);
+
+    private final PedidoServiceClient pedidoServiceClient;
+    private final int concorrenciaIndividual;
+    private final Duration tempoIndisponivel;
+    private final Sinks.Many<Pendente> fila = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable consumidor;
+    private volatile Instant loteIndisponivelAte = Instant.MIN;
+
+    public NotificadorPagamentosConfirmados(PedidoServiceClient pedidoServiceClient,
+                                            @Value("${pedido.service.notificacao.lote.tamanho-max:50}") int tamanhoMaximo,
+                                            @Value("${pedido.service.notificacao.lote.janela-ms:50}") long janelaMs,
+                                            @Value("${pedido.service.notificacao.lote.concorrencia:4}") int concorrenciaLotes,
+                                            @Value("${pedido.service.notificacao.concorrencia-individual:8}") int concorrenciaIndividual,
+                                            @Value("${pedido.service.notificacao.lote.indisponivel-min:5}") long indisponivelMinutos) {
+        this.pedidoServiceClient = pedidoServiceClient;
+        this.concorrenciaIndividual = concorrenciaIndividual;
+        this.tempoIndisponivel = Duration.ofMinutes(indisponivelMinutos);
+        this.consumidor = fila.asFlux()
+                .bufferTimeout(tamanhoMaximo, Duration.ofMillis(janelaMs))
+                // Um erro do lote, mesmo lançado antes de haver Mono, não pode encerrar o consumidor da fila
+                .flatMap(lote -> Mono.defer(() -> enviarLote(lote))
+                        .onErrorResume(e -> tratarFalhaDoLote(lote, e)), concorrenciaLotes)
+                .subscribe();
+    }
+
+    public Mono<Void> notificar(NotificarPedidoDTO notificacao) {
+        return Mono.defer(() -> {
+            Sinks.One<Void> resultado = Sinks.one();
+            // Vários produtores podem emitir ao mesmo tempo; o busy looping serializa as emissões
+            fila.emitNext(new Pendente(notificacao, resultado), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return resultado.asMono();
+        });
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        consumidor.dispose();
+    }
+
+    private Mono<Void> enviarLote(List<Pendente> lote) {
+        if (lote.size() == 1 || Instant.now().isBefore(loteIndisponivelAte)) {
+            return enviarIndividualmente(lote);
+        }
+
+        List<NotificarPedidoDTO> notificacoes = lote.stream().map(Pendente::notificacao).toList();
+        return pedidoServiceClient.enviarPagamentosConfirmadosEmLoteReativo(notificacoes)
+                // Um 200/204 sem corpo não diz nada sobre os itens; tratado como falha do lote para não deixá-los pendurados
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Serviço de pedidos respondeu ao lote sem corpo")))
+                .doOnNext(resposta -> distribuirResultados(lote, resposta))
+                .then()
+                .onErrorResume(e -> tratarFalhaDoLote(lote, e));
+    }
+
+    private void distribuirResultados(List<Pendente> lote, NotificarPedidosLoteResponseDTO resposta) {
+        List<NotificarPedidosLoteResponseDTO.ResultadoDTO> resultados = resposta.getResultados();
+        for (int i = 0; i < lote.size(); i++) {
+            Pendente pendente = lote.get(i);
+            if (resultados == null || i >= resultados.size()) {
+                pendente.resultado().tryEmitError(new IllegalStateException("Serviço de pedidos não devolveu resultado para o pedido "
+                        + pendente.notificacao().getPedidoId()));
+            } else if (resultados.get(i).isSucesso()) {
+                pendente.resultado().tryEmitEmpty();
+            } else {
+                pendente.resultado().tryEmitError(new IllegalStateException("Serviço de pedidos recusou a notificação do pedido "
+                        + pendente.notificacao().getPedidoId() + ": " + resultados.get(i).getErro()));
+            }
+        }
+    }
+
+    private Mono<Void> tratarFalhaDoLote(List<Pendente> lote, Throwable e) {
+        if (e instanceof WebClientResponseException resposta
+                && LOTE_NAO_SUPORTADO.contains(HttpStatus.resolve(resposta.getStatusCode().value()))) {
+            loteIndisponivelAte = Instant.now().plus(tempoIndisponivel);
+            logger.warning("Endpoint de lote do serviço de pedidos indisponível (HTTP " + resposta.getStatusCode()
+                    + "), usando chamadas individuais até " + loteIndisponivelAte);
+            return enviarIndividualmente(lote);
+        }
+
+        logger.warning("Falha ao enviar lote de " + lote.size() + " notificações ao serviço de pedidos: " + e.getMessage());
+        lote.forEach(pendente -> pendente.resultado().tryEmitError(e));
+        return Mono.empty();
+    }
+
+    private Mono<Void> enviarIndividualmente(List<Pendente> lote) {
+        return Flux.fromIterable(lote)
+                .flatMap(pendente -> pedidoServiceClient.enviarPagamentoConfirmadoReativo(pendente.notificacao())
+                        .doOnSuccess(ignored -> pendente.resultado().tryEmitEmpty())
+                        .onErrorResume(e -> {
+                            pendente.resultado().tryEmitError(e);
+                            return Mono.empty();
+                        }), concorrenciaIndividual)
+                .then();
+    }
+
+    private record Pendente(NotificarPedidoDTO notificacao, Sinks.One<Void> resultado) {
+    }
+}
@@ -0,0 +1,201 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.NotificarPedidoDTO;
+import com.siseg.pagamento.model.OutboxNotificacao;
+import com.siseg.pagamento.model.enumerations.StatusOutbox;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Entrega as notificações da outbox ao serviço de pedidos. Cada ciclo lê um
+ * lote de notificações prontas (uma por pedido, a mais antiga), reserva cada
+ * uma com um UPDATE condicional, para que duas instâncias não enviem a mesma
+ * notificação, entrega as reservadas pelo
+ * {@link NotificadorPagamentosConfirmados}, que as agrupa em chamadas de lote,
+ * e grava o resultado do lote de uma vez. Falhas voltam para a fila
+ * com backoff exponencial até esgotar as tentativas; uma entrega sem resposta
+ * em pagamento.outbox.timeout-envio-ms conta como falha. A entrega é
+ * at-least-once: o serviço de pedidos precisa tolerar notificações repetidas.
+ *
+ * <p>Métricas: pagamento.outbox.profundidade (pendentes),
+ * pagamento.outbox.atraso (idade da pendente mais antiga, em segundos),
+ * pagamento.outbox.entrega (tempo entre gravação e entrega) e os contadores
+ * pagamento.outbox.enviadas / pagamento.outbox.falhas.
+ */
+@Service
+public class OutboxRelayService {
+
+    private static final Logger logger = Logger.getLogger(OutboxRelayService.class.getName());
+    private static final int TAMANHO_MAX_ERRO = 500;
+
+    private final OutboxNotificacaoRepository outboxNotificacaoRepository;
+    private final NotificadorPagamentosConfirmados notificador;
+    private final int tamanhoLote;
+    private final int maxTentativas;
+    private final Duration backoffInicial;
+    private final Duration backoffMaximo;
+    private final Duration retencaoEnviadas;
+    private final Duration timeoutEnvio;
+
+    private final AtomicLong profundidade = new AtomicLong();
+    private final AtomicLong atrasoSegundos = new AtomicLong();
+    private final Timer tempoEntrega;
+    private final Counter enviadas;
+    private final Counter falhas;
+
+    public OutboxRelayService(OutboxNotificacaoRepository outboxNotificacaoRepository,
+                              NotificadorPagamentosConfirmados notificador,
+                              @Value("${pagamento.outbox.tamanho-lote:100}") int tamanhoLote,
+                              @Value("${pagamento.outbox.max-tentativas:10}") int maxTentativas,
+                              @Value("${pagamento.outbox.backoff-inicial-ms:1000}") long backoffInicialMs,
+                              @Value("${pagamento.outbox.backoff-maximo-ms:300000}") long backoffMaximoMs,
+                              @Value("${pagamento.outbox.retencao-horas:24}") long retencaoHoras,
+                              @Value("${pagamento.outbox.timeout-envio-ms:30000}") long timeoutEnvioMs) {
+        this.outboxNotificacaoRepository = outboxNotificacaoRepository;
+        this.notificador = notificador;
+        this.tamanhoLote = tamanhoLote;
+        this.maxTentativas = maxTentativas;
+        this.backoffInicial = Duration.ofMillis(backoffInicialMs);
+        this.backoffMaximo = Duration.ofMillis(backoffMaximoMs);
+        this.retencaoEnviadas = Duration.ofHours(retencaoHoras);
+        this.timeoutEnvio = Duration.ofMillis(timeoutEnvioMs);
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        Gauge.builder("pagamento.outbox.profundidade", profundidade, AtomicLong::get)
+                .description("Notificações pendentes na outbox")
+                .register(registry);
+        Gauge.builder("pagamento.outbox.atraso", atrasoSegundos, AtomicLong::get)
+                .description("Idade da notificação pendente mais antiga")
+                .baseUnit("seconds")
+                .register(registry);
+        this.tempoEntrega = Timer.builder("pagamento.outbox.entrega")
+                .description("Tempo entre a gravação na outbox e a entrega ao serviço de pedidos")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.enviadas = Counter.builder("pagamento.outbox.enviadas").register(registry);
+        this.falhas = Counter.builder("pagamento.outbox.falhas").register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.outbox.intervalo-ms:1000}")
+    public void drenar() {
+        int processadas;
+        do {
+            processadas = processarLote();
+        } while (processadas == tamanhoLote);
+        atualizarMetricas();
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.outbox.intervalo-limpeza-ms:3600000}")
+    public void removerEnviadasAntigas() {
+        int removidas = outboxNotificacaoRepository.removerEnviadasAntesDe(StatusOutbox.ENVIADA, Instant.now().minus(retencaoEnviadas));
+        if (removidas > 0) {
+            logger.info("Notificações enviadas removidas da outbox: " + removidas);
+        }
+    }
+
+    int processarLote() {
+        Instant inicio = Instant.now();
+        List<OutboxNotificacao> prontas = outboxNotificacaoRepository.buscarProntasParaEnvio(
+                StatusOutbox.PENDENTE, inicio, PageRequest.of(0, tamanhoLote));
+        // A reserva vale por duas vezes o timeout de envio: o ciclo termina bem antes de ela vencer
+        Instant arrendadaAte = inicio.plus(timeoutEnvio.multipliedBy(2));
+        List<OutboxNotificacao> lote = prontas.stream()
+                .filter(notificacao -> outboxNotificacaoRepository.reservar(notificacao.getId(), StatusOutbox.PENDENTE,
+                        inicio, arrendadaAte) > 0)
+                .toList();
+        if (lote.isEmpty()) {
+            return prontas.size();
+        }
+
+        List<Resultado> resultados = Flux.fromIterable(lote)
+                .flatMap(this::enviar)
+                .collectList()
+                .block();
+
+        Instant agora = Instant.now();
+        for (Resultado resultado : resultados) {
+            if (resultado.erro() == null) {
+                marcarEnviada(resultado.notificacao(), agora);
+            } else {
+                agendarNovaTentativa(resultado.notificacao(), resultado.erro(), agora);
+            }
+        }
+        outboxNotificacaoRepository.saveAll(lote);
+        return prontas.size();
+    }
+
+    private Mono<Resultado> enviar(OutboxNotificacao notificacao) {
+        NotificarPedidoDTO dto = new NotificarPedidoDTO();
+        dto.setPedidoId(notificacao.getPedidoId());
+        dto.setStatusPagamento(StatusPagamento.PAID);
+        dto.setAsaasPaymentId(notificacao.getAsaasPaymentId());
+        return notificador.notificar(dto)
+                .timeout(timeoutEnvio)
+                .then(Mono.fromCallable(() -> new Resultado(notificacao, null)))
+                .onErrorResume(e -> Mono.just(new Resultado(notificacao, e)));
+    }
+
+    private void marcarEnviada(OutboxNotificacao notificacao, Instant agora) {
+        notificacao.setStatus(StatusOutbox.ENVIADA);
+        notificacao.setEnviadoEm(agora);
+        notificacao.setUltimoErro(null);
+        enviadas.increment();
+        tempoEntrega.record(Duration.between(notificacao.getCriadoEm(), agora));
+    }
+
+    private void agendarNovaTentativa(OutboxNotificacao notificacao, Throwable erro, Instant agora) {
+        int tentativas = notificacao.getTentativas() + 1;
+        notificacao.setTentativas(tentativas);
+        notificacao.setUltimoErro(resumirErro(erro));
+        falhas.increment();
+
+        if (tentativas >= maxTentativas) {
+            notificacao.setStatus(StatusOutbox.FALHA);
+            logger.severe("Notificação " + notificacao.getId() + " do pedido " + notificacao.getPedidoId()
+                    + " descartada após " + tentativas + " tentativas: " + notificacao.getUltimoErro());
+            return;
+        }
+
+        notificacao.setProximaTentativaEm(agora.plus(calcularBackoff(tentativas)));
+        logger.warning("Falha ao notificar pedido " + notificacao.getPedidoId() + " (tentativa " + tentativas + "/"
+                + maxTentativas + "), nova tentativa em " + notificacao.getProximaTentativaEm() + ": " + notificacao.getUltimoErro());
+    }
+
+    Duration calcularBackoff(int tentativas) {
+        long fator = 1L << Math.min(tentativas - 1, 20);
+        Duration backoff = backoffInicial.multipliedBy(fator);
+        return backoff.compareTo(backoffMaximo) > 0 ? backoffMaximo : backoff;
+    }
+
+    private void atualizarMetricas() {
+        profundidade.set(outboxNotificacaoRepository.countByStatus(StatusOutbox.PENDENTE));
+        atrasoSegundos.set(outboxNotificacaoRepository.findFirstByStatusOrderByIdAsc(StatusOutbox.PENDENTE)
+                .map(maisAntiga -> Duration.between(maisAntiga.getCriadoEm(), Instant.now()).toSeconds())
+                .orElse(0L));
+    }
+
+    private String resumirErro(Throwable erro) {
+        String mensagem = erro.getClass().getSimpleName() + ": " + erro.getMessage();
+        return mensagem.length() > TAMANHO_MAX_ERRO ? mensagem.substring(0, TAMANHO_MAX_ERRO) : mensagem;
+    }
+
+    private record Resultado(OutboxNotificacao notificacao, Throwable erro) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.event.PagamentoAlteradoEvent;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache em memória das respostas de consulta de pagamento por pedido, LRU
+ * limitado com TTL por entrada. Pagamentos em status final ficam
+ * pagamento.cache.ttl-final-min (padrão 10 min); os em aberto só
+ * pagamento.cache.ttl-s (padrão 5 s). PROCESSING e PIX ainda sem QR Code não
+ * entram no cache.
+ *
+ * <p>As escritas publicam {@link PagamentoAlteradoEvent} e a entrada é
+ * removida após o commit. Uma leitura iniciada antes da invalidação não grava
+ * o resultado, para não devolver ao cache o estado anterior ao commit. Outras
+ * instâncias não recebem a invalidação: nelas a entrada vale até o TTL.
+ *
+ * <p>Falhas simultâneas para o mesmo pedido compartilham uma única leitura
+ * no banco.
+ *
+ * <p>O DTO devolvido é compartilhado entre as requisições e não deve ser
+ * alterado.
+ */
+@Component
+public class PagamentoCache {
+
+    private final int maxEntradas;
+    private final Duration ttl;
+    private final Duration ttlFinal;
+    private final Map<Long, Entrada> entradas;
+    private final AtomicLong geracao = new AtomicLong();
+    private final ChamadasCompartilhadas<Long, PagamentoResponseDTO> carregamentos = new ChamadasCompartilhadas<>();
+
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong remocoesCapacidade = new AtomicLong();
+    private final AtomicLong remocoesExpiracao = new AtomicLong();
+    private final AtomicLong invalidacoes = new AtomicLong();
+
+    public PagamentoCache(@Value("${pagamento.cache.max-entradas:10000}") int maxEntradas,
+                          @Value("${pagamento.cache.ttl-s:5}") long ttlSegundos,
+                          @Value("${pagamento.cache.ttl-final-min:10}") long ttlFinalMinutos) {
+        this.maxEntradas = maxEntradas;
+        this.ttl = Duration.ofSeconds(ttlSegundos);
+        this.ttlFinal = Duration.ofMinutes(ttlFinalMinutos);
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada> eldest) {
+                if (size() > PagamentoCache.this.maxEntradas) {
+                    remocoesCapacidade.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        FunctionCounter.builder("pagamento.cache.consultas", acertos, AtomicLong::get).tag("resultado", "acerto").register(registry);
+        FunctionCounter.builder("pagamento.cache.consultas", falhas, AtomicLong::get).tag("resultado", "falha").register(registry);
+        FunctionCounter.builder("pagamento.cache.carregamentos-compartilhados", carregamentos, ChamadasCompartilhadas::getCompartilhadas)
+                .description("Consultas que aguardaram a leitura já em andamento para o mesmo pedido")
+                .register(registry);
+        FunctionCounter.builder("pagamento.cache.remocoes", remocoesCapacidade, AtomicLong::get).tag("motivo", "capacidade").register(registry);
+        FunctionCounter.builder("pagamento.cache.remocoes", remocoesExpiracao, AtomicLong::get).tag("motivo", "expiracao").register(registry);
+        FunctionCounter.builder("pagamento.cache.remocoes", invalidacoes, AtomicLong::get).tag("motivo", "invalidacao").register(registry);
+        Gauge.builder("pagamento.cache.tamanho", this, PagamentoCache::getTamanho)
+                .description("Entradas no cache de pagamentos")
+                .register(registry);
+        Gauge.builder("pagamento.cache.taxa-acerto", this, PagamentoCache::getTaxaAcerto)
+                .description("Fração das consultas por pedido respondidas pelo cache")
+                .register(registry);
+    }
+
+    public PagamentoResponseDTO buscar(Long pedidoId, Function<Long, PagamentoResponseDTO> carregar) {
+        PagamentoResponseDTO emCache = buscarEmMemoria(pedidoId);
+        if (emCache != null) {
+            acertos.incrementAndGet();
+            return emCache;
+        }
+
+        falhas.incrementAndGet();
+        long geracaoInicial = geracao.get();
+        PagamentoResponseDTO carregado = carregamentos.executar(pedidoId, () -> carregar.apply(pedidoId));
+        if (cacheavel(carregado)) {
+            guardar(pedidoId, carregado, geracaoInicial);
+        }
+        return carregado;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAlterarPagamento(PagamentoAlteradoEvent evento) {
+        invalidar(evento.pedidoId());
+    }
+
+    public void invalidar(Long pedidoId) {
+        synchronized (entradas) {
+            geracao.incrementAndGet();
+            if (entradas.remove(pedidoId) != null) {
+                invalidacoes.incrementAndGet();
+            }
+        }
+    }
+
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public double getTaxaAcerto() {
+        long consultas = acertos.get() + falhas.get();
+        return consultas == 0 ? 0 : (double) acertos.get() / consultas;
+    }
+
+    public long getRemocoesCapacidade() {
+        return remocoesCapacidade.get();
+    }
+
+    public long getRemocoesExpiracao() {
+        return remocoesExpiracao.get();
+    }
+
+    private PagamentoResponseDTO buscarEmMemoria(Long pedidoId) {
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(pedidoId);
+            if (entrada == null) {
+                return null;
+            }
+            if (!entrada.expiraEm().isAfter(Instant.now())) {
+                entradas.remove(pedidoId);
+                remocoesExpiracao.incrementAndGet();
+                return null;
+            }
+            return entrada.pagamento();
+        }
+    }
+
+    private void guardar(Long pedidoId, PagamentoResponseDTO pagamento, long geracaoInicial) {
+        Duration validade = PagamentoService.isStatusFinal(pagamento.getStatus()) ? ttlFinal : ttl;
+        synchronized (entradas) {
+            // Alguma invalidação aconteceu durante a leitura: o valor lido pode ser anterior ao commit
+            if (geracao.get() != geracaoInicial) {
+                return;
+            }
+            entradas.put(pedidoId, new Entrada(pagamento, Instant.now().plus(validade)));
+        }
+    }
+
+    private boolean cacheavel(PagamentoResponseDTO pagamento) {
+        if (pagamento == null || pagamento.getStatus() == null || pagamento.getStatus() == StatusPagamento.PROCESSING) {
+            return false;
+        }
+        // QR Code chega em segundos pelo PixQrCodeService, que não invalida o cache
+        return pagamento.getMetodo() != MetodoPagamento.PIX || pagamento.getQrCode() != null;
+    }
+
+    private record Entrada(PagamentoResponseDTO pagamento, Instant expiraEm) {
+    }
+}
@@ -0,0 +1,267 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.event.PagamentoAlteradoEvent;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoLoteRepository;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Criação de pagamentos em lote, para pedidos agendados e de buffet. Segue o
+ * fluxo de {@link PagamentoService#criarPagamento} com as escritas agrupadas:
+ * os registros PROCESSING entram num INSERT em lote, as cobranças são criadas
+ * no Asaas com até pagamento.lote.concorrencia chamadas simultâneas e os
+ * resultados são gravados num UPDATE em lote. Itens do mesmo cliente
+ * compartilham uma única busca do cliente no Asaas. A falha de um item não
+ * interrompe os demais; cada um tem seu resultado na resposta.
+ */
+@Service
+public class PagamentoLoteService {
+
+    private static final Logger logger = Logger.getLogger(PagamentoLoteService.class.getName());
+    private static final String MENSAGEM_ERRO_CONEXAO = "Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.";
+
+    private final PagamentoRepository pagamentoRepository;
+    private final PagamentoLoteRepository pagamentoLoteRepository;
+    private final PagamentoService pagamentoService;
+    private final AsaasService asaasService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int concorrencia;
+
+    public PagamentoLoteService(PagamentoRepository pagamentoRepository,
+                                PagamentoLoteRepository pagamentoLoteRepository,
+                                PagamentoService pagamentoService,
+                                AsaasService asaasService,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${pagamento.lote.concorrencia:8}") int concorrencia) {
+        this.pagamentoRepository = pagamentoRepository;
+        this.pagamentoLoteRepository = pagamentoLoteRepository;
+        this.pagamentoService = pagamentoService;
+        this.asaasService = asaasService;
+        this.eventPublisher = eventPublisher;
+        this.concorrencia = concorrencia;
+    }
+
+    public CriarPagamentosLoteResponseDTO criarPagamentos(List<CriarPagamentoCompletoRequestDTO> requests, String remoteIp) {
+        CriarPagamentosLoteResponseDTO.ResultadoDTO[] resultados = new CriarPagamentosLoteResponseDTO.ResultadoDTO[requests.size()];
+
+        List<Item> gravados = inserir(validar(requests, pagamentoService.traceIdAtual(), resultados), resultados);
+        List<Item> eletronicos = new ArrayList<>();
+        for (Item item : gravados) {
+            if (item.pagamento().getMetodo() == MetodoPagamento.CASH) {
+                resultados[item.indice()] = sucesso(item.pagamento());
+            } else {
+                eletronicos.add(item);
+            }
+        }
+        if (!eletronicos.isEmpty()) {
+            criarCobrancas(eletronicos, remoteIp, resultados);
+        }
+
+        CriarPagamentosLoteResponseDTO response = new CriarPagamentosLoteResponseDTO();
+        response.setResultados(Arrays.asList(resultados));
+        long criados = response.getResultados().stream().filter(CriarPagamentosLoteResponseDTO.ResultadoDTO::isSucesso).count();
+        logger.info("Lote de pagamentos processado: " + criados + " de " + requests.size() + " criados");
+        return response;
+    }
+
+    private List<Item> validar(List<CriarPagamentoCompletoRequestDTO> requests, String traceId,
+                               CriarPagamentosLoteResponseDTO.ResultadoDTO[] resultados) {
+        Set<Long> comPagamento = new HashSet<>(pagamentoRepository.buscarPedidosComPagamento(
+                requests.stream().map(request -> request.getPagamento().getPedidoId()).toList()));
+        Set<Long> vistos = new HashSet<>();
+
+        List<Item> aceitos = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CriarPagamentoCompletoRequestDTO request = requests.get(i);
+            Long pedidoId = request.getPagamento().getPedidoId();
+            if (!vistos.add(pedidoId)) {
+                resultados[i] = falha(pedidoId, request.getPagamento().getMetodoPagamento(), "duplicado",
+                        "Pedido repetido no lote: " + pedidoId);
+                continue;
+            }
+            if (comPagamento.contains(pedidoId)) {
+                resultados[i] = falha(pedidoId, request.getPagamento().getMetodoPagamento(), "duplicado",
+                        "Já existe pagamento para o pedido: " + pedidoId);
+                continue;
+            }
+            if (request.getPagamento().getMetodoPagamento() == MetodoPagamento.CREDIT_CARD) {
+                try {
+                    PagamentoService.validarDadosCartao(request.getPagamento().getCartaoCredito(), request.getCliente());
+                } catch (IllegalArgumentException e) {
+                    resultados[i] = falha(pedidoId, MetodoPagamento.CREDIT_CARD, "invalido", e.getMessage());
+                    continue;
+                }
+            }
+
+            Pagamento pagamento = PagamentoService.criarPagamentoBasico(request.getPagamento());
+            pagamento.setTraceId(traceId);
+            if (pagamento.getMetodo() != MetodoPagamento.CASH) {
+                pagamento.setStatus(StatusPagamento.PROCESSING);
+            }
+            aceitos.add(new Item(i, request, pagamento));
+        }
+        return aceitos;
+    }
+
+    private List<Item> inserir(List<Item> itens, CriarPagamentosLoteResponseDTO.ResultadoDTO[] resultados) {
+        try {
+            pagamentoLoteRepository.inserir(itens.stream().map(Item::pagamento).toList());
+            return itens;
+        } catch (DataIntegrityViolationException e) {
+            // Outra requisição criou pagamento para algum dos pedidos depois da verificação
+            logger.warning("Conflito no INSERT em lote, gravando pagamentos um a um: " + e.getMessage());
+        }
+
+        List<Item> gravados = new ArrayList<>();
+        for (Item item : itens) {
+            try {
+                pagamentoLoteRepository.inserir(List.of(item.pagamento()));
+                gravados.add(item);
+            } catch (DataIntegrityViolationException e) {
+                Long pedidoId = item.pagamento().getPedidoId();
+                resultados[item.indice()] = falha(pedidoId, item.pagamento().getMetodo(), "duplicado",
+                        "Já existe pagamento para o pedido: " + pedidoId);
+            }
+        }
+        return gravados;
+    }
+
+    private void criarCobrancas(List<Item> itens, String remoteIp, CriarPagamentosLoteResponseDTO.ResultadoDTO[] resultados) {
+        Map<String, Mono<String>> clientes = new HashMap<>();
+        List<Mono<Cobranca>> chamadas = itens.stream()
+                .map(item -> criarCobranca(item, cliente(item.request().getCliente(), clientes), remoteIp))
+                .toList();
+        List<Cobranca> cobrancas = Flux.fromIterable(chamadas)
+                .flatMap(chamada -> chamada, concorrencia)
+                .collectList()
+                .block();
+
+        List<Item> concluidos = new ArrayList<>();
+        List<Long> descartados = new ArrayList<>();
+        for (Cobranca cobranca : cobrancas) {
+            Pagamento pagamento = cobranca.item().pagamento();
+            if (cobranca.erro() == null) {
+                PagamentoService.atualizarPagamentoComRespostaAsaas(pagamento, cobranca.resposta());
+                concluidos.add(cobranca.item());
+                continue;
+            }
+
+            if (PagamentoService.cobrancaPodeTerSidoCriada(cobranca.erro())) {
+                // A cobrança pode ter sido criada (falha de comunicação ou 5xx): a recuperação consulta o Asaas antes de decidir
+                logger.severe("Falha ao criar cobrança, pagamento " + pagamento.getId() + " fica para recuperação: " + cobranca.erro().getMessage());
+                resultados[cobranca.item().indice()] = falha(pagamento.getPedidoId(), pagamento.getMetodo(),
+                        PagamentoService.resultadoDoErro(cobranca.erro()),
+                        cobranca.erro() instanceof WebClientRequestException ? MENSAGEM_ERRO_CONEXAO : mensagemErro(cobranca.erro()));
+            } else {
+                logger.severe("Erro ao criar cobrança do pedido " + pagamento.getPedidoId() + ": " + cobranca.erro().getMessage());
+                descartados.add(pagamento.getId());
+                resultados[cobranca.item().indice()] = falha(pagamento.getPedidoId(), pagamento.getMetodo(),
+                        PagamentoService.resultadoDoErro(cobranca.erro()), mensagemErro(cobranca.erro()));
+            }
+        }
+
+        if (!descartados.isEmpty()) {
+            pagamentoRepository.removerTodosSeStatus(descartados, StatusPagamento.PROCESSING);
+        }
+        if (concluidos.isEmpty()) {
+            return;
+        }
+
+        boolean[] atualizados = pagamentoLoteRepository.concluirCriacao(
+                concluidos.stream().map(Item::pagamento).toList(), StatusPagamento.PROCESSING);
+        for (int i = 0; i < concluidos.size(); i++) {
+            Pagamento pagamento = concluidos.get(i).pagamento();
+            if (atualizados[i]) {
+                eventPublisher.publishEvent(new PagamentoAlteradoEvent(pagamento.getPedidoId()));
+                if (pagamento.getMetodo() == MetodoPagamento.PIX) {
+                    eventPublisher.publishEvent(new PagamentoPixCriadoEvent(pagamento.getId(), pagamento.getAsaasPaymentId()));
+                }
+            } else {
+                logger.warning("Pagamento " + pagamento.getId() + " não estava mais em PROCESSING ao concluir a criação");
+            }
+            resultados[concluidos.get(i).indice()] = sucesso(pagamento);
+        }
+    }
+
+    /**
+     * Busca do cliente compartilhada pelos itens do lote com a mesma chave
+     * (e-mail ou CPF/CNPJ); o resultado, ou o erro, é reaproveitado.
+     */
+    private Mono<String> cliente(ClienteInfoDTO cliente, Map<String, Mono<String>> clientes) {
+        String chave = AsaasClienteCache.gerarChave(cliente);
+        if (chave == null) {
+            return asaasService.buscarOuCriarClienteReativo(cliente);
+        }
+        return clientes.computeIfAbsent(chave, ignored -> asaasService.buscarOuCriarClienteReativo(cliente).cache());
+    }
+
+    private Mono<Cobranca> criarCobranca(Item item, Mono<String> cliente, String remoteIp) {
+        Pagamento pagamento = item.pagamento();
+        CriarPagamentoRequestDTO request = item.request().getPagamento();
+        return cliente
+                .doOnNext(pagamento::setAsaasCustomerId)
+                .flatMap(asaasCustomerId -> pagamento.getMetodo() == MetodoPagamento.PIX
+                        ? asaasService.criarPagamentoPixReativo(pagamento.getPedidoId(), pagamento.getValor(), asaasCustomerId)
+                        : asaasService.criarPagamentoCartaoReativo(pagamento.getPedidoId(), pagamento.getValor(), asaasCustomerId,
+                                request.getCartaoCredito(), item.request().getCliente(), remoteIp))
+                .map(resposta -> new Cobranca(item, resposta, null))
+                .switchIfEmpty(Mono.fromSupplier(() -> new Cobranca(item, null, new PaymentGatewayException("Resposta nula da API Asaas"))))
+                .onErrorResume(e -> Mono.just(new Cobranca(item, null, e)));
+    }
+
+    private String mensagemErro(Throwable erro) {
+        if (erro instanceof WebClientResponseException responseException) {
+            return "Erro ao processar pagamento: " + responseException.getResponseBodyAsString();
+        }
+        if (erro instanceof PaymentGatewayException) {
+            return erro.getMessage();
+        }
+        return "Erro ao processar pagamento: " + erro.getMessage();
+    }
+
+    private CriarPagamentosLoteResponseDTO.ResultadoDTO sucesso(Pagamento pagamento) {
+        PagamentoService.registrarCriacao(pagamento.getMetodo(), "sucesso");
+        CriarPagamentosLoteResponseDTO.ResultadoDTO resultado = new CriarPagamentosLoteResponseDTO.ResultadoDTO();
+        resultado.setPedidoId(pagamento.getPedidoId());
+        resultado.setSucesso(true);
+        resultado.setPagamento(pagamentoService.toResponse(pagamento));
+        return resultado;
+    }
+
+    private CriarPagamentosLoteResponseDTO.ResultadoDTO falha(Long pedidoId, MetodoPagamento metodo, String resultadoMetrica, String erro) {
+        PagamentoService.registrarCriacao(metodo, resultadoMetrica);
+        CriarPagamentosLoteResponseDTO.ResultadoDTO resultado = new CriarPagamentosLoteResponseDTO.ResultadoDTO();
+        resultado.setPedidoId(pedidoId);
+        resultado.setSucesso(false);
+        resultado.setErro(erro);
+        return resultado;
+    }
+
+    private record Item(int indice, CriarPagamentoCompletoRequestDTO request, Pagamento pagamento) {
+    }
+
+    private record Cobranca(Item item, AsaasPaymentResponseDTO resposta, Throwable erro) {
+    }
+}
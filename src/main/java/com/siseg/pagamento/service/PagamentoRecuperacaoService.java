@@ -0,0 +1,72 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Resolve pagamentos que ficaram em PROCESSING: o processo caiu entre o
+ * INSERT e o UPDATE final, ou a chamada de criação ao Asaas falhou sem
+ * resposta. O Asaas é consultado pelo externalReference (o ID do pedido): se
+ * a cobrança existe, o pagamento é concluído; se não existe, o registro é
+ * removido e o pedido pode ser pago de novo.
+ */
+@Service
+public class PagamentoRecuperacaoService {
+
+    private static final Logger logger = Logger.getLogger(PagamentoRecuperacaoService.class.getName());
+
+    private final PagamentoRepository pagamentoRepository;
+    private final AsaasService asaasService;
+    private final PagamentoService pagamentoService;
+    private final Duration idadeMinima;
+
+    public PagamentoRecuperacaoService(PagamentoRepository pagamentoRepository,
+                                       AsaasService asaasService,
+                                       PagamentoService pagamentoService,
+                                       @Value("${pagamento.criacao.recuperacao.idade-minima-s:120}") long idadeMinimaSegundos) {
+        this.pagamentoRepository = pagamentoRepository;
+        this.asaasService = asaasService;
+        this.pagamentoService = pagamentoService;
+        this.idadeMinima = Duration.ofSeconds(idadeMinimaSegundos);
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.criacao.recuperacao.intervalo-ms:60000}",
+               initialDelayString = "${pagamento.criacao.recuperacao.atraso-inicial-ms:60000}")
+    public void recuperarPagamentosPendentes() {
+        // A idade mínima fica acima do timeout de resposta do Asaas para não disputar com criações em andamento
+        List<Pagamento> pendentes = pagamentoRepository.findByStatusAndCriadoEmBefore(
+                StatusPagamento.PROCESSING, Instant.now().minus(idadeMinima));
+
+        for (Pagamento pagamento : pendentes) {
+            try {
+                recuperar(pagamento);
+            } catch (Exception e) {
+                logger.warning("Erro ao recuperar pagamento " + pagamento.getId() + ", nova tentativa na próxima varredura: " + e.getMessage());
+            }
+        }
+    }
+
+    void recuperar(Pagamento pagamento) {
+        AsaasPaymentResponseDTO cobranca = asaasService.buscarPagamentoPorPedido(pagamento.getPedidoId());
+
+        if (cobranca == null) {
+            pagamentoRepository.removerSeStatus(pagamento.getId(), StatusPagamento.PROCESSING);
+            logger.info("Pagamento " + pagamento.getId() + " sem cobrança no Asaas removido - Pedido: " + pagamento.getPedidoId());
+            return;
+        }
+
+        if (pagamentoService.concluirCriacao(pagamento, cobranca)) {
+            logger.info("Pagamento " + pagamento.getId() + " recuperado com a cobrança " + cobranca.getId() + " - Pedido: " + pagamento.getPedidoId());
+        }
+    }
+}
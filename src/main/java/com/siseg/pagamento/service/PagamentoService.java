@@ -1,62 +1,227 @@
 package com.siseg.pagamento.service;
 
 import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.event.PagamentoAlteradoEvent;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
+import com.siseg.pagamento.exception.PagamentoJaReembolsadoException;
 import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.exception.PrazoEsgotadoException;
+import com.siseg.pagamento.exception.RequisicaoEmAndamentoException;
 import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.OutboxNotificacao;
 import com.siseg.pagamento.model.Pagamento;
 import com.siseg.pagamento.model.enumerations.MetodoPagamento;
 import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
 import com.siseg.pagamento.repository.PagamentoRepository;
 import com.siseg.pagamento.validator.PagamentoValidator;
-import org.modelmapper.ModelMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 @Service
 public class PagamentoService {
     
     private static final Logger logger = Logger.getLogger(PagamentoService.class.getName());
+    private static final Set<String> ESTORNADO_NO_ASAAS = Set.of("REFUNDED", "REFUND_REQUESTED", "REFUND_IN_PROGRESS");
     
     private final PagamentoRepository pagamentoRepository;
-    private final ModelMapper modelMapper;
+    private final PagamentoMapper pagamentoMapper;
     private final PagamentoValidator pagamentoValidator;
     private final AsaasService asaasService;
+    private final PixQrCodeService pixQrCodeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxNotificacaoRepository outboxNotificacaoRepository;
+    private final PagamentoCache pagamentoCache;
+    private final Tracer tracer;
     
     public PagamentoService(PagamentoRepository pagamentoRepository, 
-                           ModelMapper modelMapper,
+                           PagamentoMapper pagamentoMapper,
                            PagamentoValidator pagamentoValidator,
-                           AsaasService asaasService) {
+                           AsaasService asaasService,
+                           PixQrCodeService pixQrCodeService,
+                           ApplicationEventPublisher eventPublisher,
+                           OutboxNotificacaoRepository outboxNotificacaoRepository,
+                           PagamentoCache pagamentoCache,
+                           Tracer tracer) {
         this.pagamentoRepository = pagamentoRepository;
-        this.modelMapper = modelMapper;
+        this.pagamentoMapper = pagamentoMapper;
         this.pagamentoValidator = pagamentoValidator;
         this.asaasService = asaasService;
+        this.pixQrCodeService = pixQrCodeService;
+        this.eventPublisher = eventPublisher;
+        this.outboxNotificacaoRepository = outboxNotificacaoRepository;
+        this.pagamentoCache = pagamentoCache;
+        this.tracer = tracer;
     }
     
-    @Transactional
-    public PagamentoResponseDTO criarPagamento(CriarPagamentoRequestDTO request, ClienteInfoDTO clienteInfo, String remoteIp) {
+    /**
+     * Cria o pagamento sem manter transação nem conexão do pool abertas durante
+     * as chamadas ao Asaas: o registro é inserido como PROCESSING, o gateway é
+     * chamado fora de transação e o resultado é gravado com um UPDATE curto.
+     * Registros que ficarem em PROCESSING são resolvidos pelo
+     * {@link PagamentoRecuperacaoService}. Cada chamada ao Asaas recebe só o
+     * que resta do prazo; esgotado, lança {@link PrazoEsgotadoException}.
+     *
+     * <p>Se o pedido já tem pagamento, como na repetição de uma criação que
+     * falhou sem saber se o Asaas criou a cobrança, a criação não é refeita:
+     * o pagamento existente é devolvido se for do mesmo método e valor, e
+     * enquanto ele estiver em PROCESSING a repetição recebe
+     * {@link RequisicaoEmAndamentoException}.
+     */
+    public PagamentoResponseDTO criarPagamento(CriarPagamentoRequestDTO request, ClienteInfoDTO clienteInfo, String remoteIp, Prazo prazo) {
+        try {
+            Optional<PagamentoResponseDTO> existente = pagamentoExistente(request);
+            if (existente.isEmpty()) {
+                try {
+                    PagamentoResponseDTO response = executarCriacao(request, clienteInfo, remoteIp, prazo);
+                    registrarCriacao(request.getMetodoPagamento(), "sucesso");
+                    return response;
+                } catch (DataIntegrityViolationException e) {
+                    // Outra requisição criou o pagamento do pedido entre a consulta e o INSERT
+                    existente = Optional.of(pagamentoExistente(request).orElseThrow(() -> e));
+                }
+            }
+            registrarCriacao(request.getMetodoPagamento(), "existente");
+            return existente.get();
+        } catch (RuntimeException e) {
+            registrarCriacao(request.getMetodoPagamento(), resultadoDoErro(e));
+            throw e;
+        }
+    }
+    
+    private Optional<PagamentoResponseDTO> pagamentoExistente(CriarPagamentoRequestDTO request) {
+        Optional<Pagamento> existente = pagamentoRepository.findByPedidoId(request.getPedidoId());
+        if (existente.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        Pagamento pagamento = existente.get();
+        if (pagamento.getMetodo() != request.getMetodoPagamento() || pagamento.getValor().compareTo(request.getValor()) != 0) {
+            throw new IllegalArgumentException("Já existe outro pagamento para o pedido: " + request.getPedidoId());
+        }
+        if (pagamento.getStatus() == StatusPagamento.PROCESSING) {
+            throw new RequisicaoEmAndamentoException("Pagamento do pedido " + request.getPedidoId()
+                    + " ainda em processamento, tente novamente mais tarde");
+        }
+        return Optional.of(toResponse(pagamento));
+    }
+    
+    private PagamentoResponseDTO executarCriacao(CriarPagamentoRequestDTO request, ClienteInfoDTO clienteInfo, String remoteIp, Prazo prazo) {
+        prazo.verificar("criar o pagamento");
         Pagamento pagamento = criarPagamentoBasico(request);
+        pagamento.setTraceId(traceIdAtual());
+        
+        if (request.getMetodoPagamento() == MetodoPagamento.CASH) {
+            processarPagamentoDinheiro(pagamento);
+            return toResponse(pagamentoRepository.save(pagamento));
+        }
+        if (request.getMetodoPagamento() == MetodoPagamento.CREDIT_CARD) {
+            validarDadosCartao(request.getCartaoCredito(), clienteInfo);
+        }
         
+        pagamento.setStatus(StatusPagamento.PROCESSING);
+        Pagamento pendente = pagamentoRepository.save(pagamento);
+        
+        AsaasPaymentResponseDTO response;
         if (request.getMetodoPagamento() == MetodoPagamento.PIX) {
-            processarPagamentoPix(pagamento, clienteInfo);
-        } else if (request.getMetodoPagamento() == MetodoPagamento.CREDIT_CARD) {
-            if (request.getCartaoCredito() == null) {
-                throw new IllegalArgumentException("Dados do cartão são obrigatórios para pagamento com cartão de crédito");
-            }
-            processarPagamentoCartao(pagamento, request.getCartaoCredito(), clienteInfo, remoteIp);
+            response = processarPagamentoPix(pendente, clienteInfo, prazo);
         } else {
-            processarPagamentoDinheiro(pagamento);
+            response = processarPagamentoCartao(pendente, request.getCartaoCredito(), clienteInfo, remoteIp, prazo);
         }
         
-        Pagamento saved = pagamentoRepository.save(pagamento);
+        concluirCriacao(pendente, response);
+        return toResponse(pendente);
+    }
+    
+    /**
+     * Grava o resultado da criação no Asaas em um registro PROCESSING. Devolve
+     * false se o registro já foi resolvido por outro caminho.
+     */
+    public boolean concluirCriacao(Pagamento pagamento, AsaasPaymentResponseDTO response) {
+        atualizarPagamentoComRespostaAsaas(pagamento, response);
         
-        PagamentoResponseDTO response = modelMapper.map(saved, PagamentoResponseDTO.class);
-        response.setPedidoId(saved.getPedidoId());
-        return response;
+        int atualizados = pagamentoRepository.concluirCriacao(pagamento.getId(), StatusPagamento.PROCESSING,
+                pagamento.getStatus(), pagamento.getAsaasPaymentId(), pagamento.getAsaasCustomerId(), pagamento.getAtualizadoEm());
+        if (atualizados == 0) {
+            logger.warning("Pagamento " + pagamento.getId() + " não estava mais em PROCESSING ao concluir a criação");
+            return false;
+        }
+        
+        eventPublisher.publishEvent(new PagamentoAlteradoEvent(pagamento.getPedidoId()));
+        if (pagamento.getMetodo() == MetodoPagamento.PIX) {
+            // QR Code é buscado depois, fora da requisição de criação
+            eventPublisher.publishEvent(new PagamentoPixCriadoEvent(pagamento.getId(), pagamento.getAsaasPaymentId()));
+        }
+        return true;
+    }
+    
+    /**
+     * Trace da requisição corrente, gravado no pagamento para que os webhooks
+     * dele apontem para a criação. Só traces amostrados, que são exportados.
+     */
+    String traceIdAtual() {
+        Span span = tracer.currentSpan();
+        if (span == null || !Boolean.TRUE.equals(span.context().sampled())) {
+            return null;
+        }
+        return span.context().traceId();
+    }
+    
+    /** Conta a criação em pagamento.criacoes, por método e resultado; também usado pelo lote. */
+    static void registrarCriacao(MetodoPagamento metodo, String resultado) {
+        Counter.builder("pagamento.criacoes")
+                .description("Criações de pagamento por método e resultado")
+                .tag("metodo", String.valueOf(metodo))
+                .tag("resultado", resultado)
+                .register(Metrics.globalRegistry)
+                .increment();
     }
     
-    private Pagamento criarPagamentoBasico(CriarPagamentoRequestDTO request) {
+    /** Classificação do erro para a tag resultado das métricas de criação e reembolso. */
+    static String resultadoDoErro(Throwable e) {
+        if (e instanceof IllegalArgumentException || e instanceof IllegalStateException) {
+            return "invalido";
+        }
+        if (e instanceof ResourceNotFoundException) {
+            return "nao-encontrado";
+        }
+        if (e instanceof PagamentoJaReembolsadoException) {
+            return "ja-reembolsado";
+        }
+        if (e instanceof PrazoEsgotadoException) {
+            return "prazo-esgotado";
+        }
+        if (e instanceof RequisicaoEmAndamentoException) {
+            return "em-andamento";
+        }
+        if (e instanceof PaymentGatewayException || e instanceof WebClientException) {
+            return "erro-gateway";
+        }
+        return "erro";
+    }
+    
+    static Pagamento criarPagamentoBasico(CriarPagamentoRequestDTO request) {
         Pagamento pagamento = new Pagamento();
         pagamento.setPedidoId(request.getPedidoId());
         pagamento.setMetodo(request.getMetodoPagamento());
@@ -70,139 +235,300 @@ public class PagamentoService {
         pagamento.setStatus(StatusPagamento.PENDING);
     }
     
-    private void processarPagamentoPix(Pagamento pagamento, ClienteInfoDTO clienteInfo) {
+    static void validarDadosCartao(CartaoCreditoRequestDTO cartaoDTO, ClienteInfoDTO clienteInfo) {
+        if (cartaoDTO == null) {
+            throw new IllegalArgumentException("Dados do cartão são obrigatórios para pagamento com cartão de crédito");
+        }
+        if (clienteInfo.getCep() == null || clienteInfo.getCep().isEmpty()) {
+            throw new IllegalArgumentException("CEP do cliente é obrigatório para pagamento com cartão de crédito");
+        }
+        if (clienteInfo.getAddressNumber() == null || clienteInfo.getAddressNumber().isEmpty()) {
+            throw new IllegalArgumentException("Número do endereço do cliente é obrigatório para pagamento com cartão de crédito");
+        }
+    }
+    
+    private AsaasPaymentResponseDTO processarPagamentoPix(Pagamento pagamento, ClienteInfoDTO clienteInfo, Prazo prazo) {
+        AtomicBoolean cobrancaEnviada = new AtomicBoolean();
         try {
-            String asaasCustomerId = asaasService.buscarOuCriarCliente(clienteInfo);
-            AsaasPaymentResponseDTO response = asaasService.criarPagamentoPix(
-                    pagamento.getPedidoId(), 
-                    pagamento.getValor(), 
-                    asaasCustomerId
-            );
+            // Cliente e cobrança compostos sem bloqueio; só aguarda o resultado final
+            AsaasPaymentResponseDTO response = prazo.aplicar(asaasService.buscarOuCriarClienteReativo(clienteInfo), "buscar o cliente no Asaas")
+                    .doOnNext(pagamento::setAsaasCustomerId)
+                    .flatMap(asaasCustomerId -> prazo.aplicar(Mono.defer(() -> {
+                        cobrancaEnviada.set(true);
+                        return asaasService.criarPagamentoPixReativo(
+                                pagamento.getPedidoId(), 
+                                pagamento.getValor(), 
+                                asaasCustomerId
+                        );
+                    }), "criar a cobrança PIX"))
+                    .block();
             
             validarRespostaAsaas(response);
-            atualizarPagamentoComRespostaAsaas(pagamento, asaasCustomerId, response);
-            atualizarPagamentoComQrCode(pagamento, response.getId());
+            return response;
             
-        } catch (org.springframework.web.reactive.function.client.WebClientException e) {
+        } catch (PrazoEsgotadoException e) {
+            tratarPrazoEsgotado(pagamento, cobrancaEnviada.get(), e);
+            throw e;
+        } catch (WebClientResponseException e) {
+            tratarErroHttp(pagamento, cobrancaEnviada.get(), e);
+            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
+        } catch (WebClientRequestException e) {
+            logger.severe("Falha de comunicação ao criar cobrança PIX, pagamento " + pagamento.getId() + " fica para recuperação: " + e.getMessage());
+            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
+        } catch (WebClientException e) {
+            descartarPagamentoPendente(pagamento);
             logger.severe("Erro de conexão com API Asaas: " + e.getMessage());
             throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
         } catch (Exception e) {
+            descartarPagamentoPendente(pagamento);
             logger.severe("Erro ao criar pagamento PIX: " + e.getMessage());
             throw new PaymentGatewayException("Erro ao processar pagamento PIX: " + e.getMessage());
         }
     }
     
-    private void processarPagamentoCartao(Pagamento pagamento, CartaoCreditoRequestDTO cartaoDTO, ClienteInfoDTO clienteInfo, String remoteIp) {
-        if (clienteInfo.getCep() == null || clienteInfo.getCep().isEmpty()) {
-            throw new IllegalArgumentException("CEP do cliente é obrigatório para pagamento com cartão de crédito");
-        }
-        if (clienteInfo.getAddressNumber() == null || clienteInfo.getAddressNumber().isEmpty()) {
-            throw new IllegalArgumentException("Número do endereço do cliente é obrigatório para pagamento com cartão de crédito");
-        }
-        
+    private AsaasPaymentResponseDTO processarPagamentoCartao(Pagamento pagamento, CartaoCreditoRequestDTO cartaoDTO, ClienteInfoDTO clienteInfo, String remoteIp, Prazo prazo) {
+        AtomicBoolean cobrancaEnviada = new AtomicBoolean();
         try {
-            String asaasCustomerId = asaasService.buscarOuCriarCliente(clienteInfo);
-            AsaasPaymentResponseDTO response = asaasService.criarPagamentoCartao(
-                    pagamento.getPedidoId(),
-                    pagamento.getValor(),
-                    asaasCustomerId,
-                    cartaoDTO,
-                    clienteInfo,
-                    remoteIp
-            );
+            AsaasPaymentResponseDTO response = prazo.aplicar(asaasService.buscarOuCriarClienteReativo(clienteInfo), "buscar o cliente no Asaas")
+                    .doOnNext(pagamento::setAsaasCustomerId)
+                    .flatMap(asaasCustomerId -> prazo.aplicar(Mono.defer(() -> {
+                        cobrancaEnviada.set(true);
+                        return asaasService.criarPagamentoCartaoReativo(
+                                pagamento.getPedidoId(),
+                                pagamento.getValor(),
+                                asaasCustomerId,
+                                cartaoDTO,
+                                clienteInfo,
+                                remoteIp
+                        );
+                    }), "criar a cobrança no cartão"))
+                    .block();
             
             validarRespostaAsaas(response);
-            atualizarPagamentoComRespostaAsaas(pagamento, asaasCustomerId, response);
+            return response;
             
-            if (response.getStatus() != null && "CONFIRMED".equals(response.getStatus())) {
-                pagamento.setStatus(StatusPagamento.AUTHORIZED);
-            } else {
-                pagamento.setStatus(StatusPagamento.PENDING);
-            }
-            
-        } catch (org.springframework.web.reactive.function.client.WebClientResponseException e) {
-            logger.severe("Erro do Asaas (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
+        } catch (PrazoEsgotadoException e) {
+            tratarPrazoEsgotado(pagamento, cobrancaEnviada.get(), e);
+            throw e;
+        } catch (WebClientResponseException e) {
+            tratarErroHttp(pagamento, cobrancaEnviada.get(), e);
             throw new PaymentGatewayException("Erro ao processar pagamento: " + e.getResponseBodyAsString(), e);
-        } catch (org.springframework.web.reactive.function.client.WebClientException e) {
+        } catch (WebClientRequestException e) {
+            logger.severe("Falha de comunicação ao criar cobrança no cartão, pagamento " + pagamento.getId() + " fica para recuperação: " + e.getMessage());
+            throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
+        } catch (WebClientException e) {
+            descartarPagamentoPendente(pagamento);
             logger.severe("Erro de conexão com API Asaas: " + e.getMessage());
             throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento. Verifique sua conexão com a internet.", e);
         } catch (Exception e) {
+            descartarPagamentoPendente(pagamento);
             logger.severe("Erro ao criar pagamento com cartão: " + e.getMessage());
             throw new PaymentGatewayException("Erro ao processar pagamento com cartão de crédito: " + e.getMessage());
         }
     }
     
+    /**
+     * Um 4xx é recusa do Asaas e libera o pedido. Um 5xx depois do envio não
+     * garante que a cobrança deixou de ser criada (o Asaas ou um proxy à frente
+     * dele pode falhar depois de criá-la): o registro fica em PROCESSING para a
+     * recuperação, como numa falha de comunicação.
+     */
+    private void tratarErroHttp(Pagamento pagamento, boolean cobrancaEnviada, WebClientResponseException e) {
+        if (cobrancaEnviada && cobrancaPodeTerSidoCriada(e)) {
+            logger.severe("Asaas respondeu HTTP " + e.getStatusCode() + " ao criar a cobrança, pagamento " + pagamento.getId()
+                    + " fica para recuperação: " + e.getResponseBodyAsString());
+            return;
+        }
+        descartarPagamentoPendente(pagamento);
+        logger.severe("Erro do Asaas (HTTP " + e.getStatusCode() + "): " + e.getResponseBodyAsString());
+    }
+    
+    /**
+     * Erros da criação da cobrança depois dos quais ela pode existir no Asaas:
+     * falha de comunicação ou resposta 5xx. O registro PROCESSING fica para a
+     * recuperação em vez de ser removido.
+     */
+    static boolean cobrancaPodeTerSidoCriada(Throwable e) {
+        return e instanceof WebClientRequestException
+                || e instanceof WebClientResponseException resposta && resposta.getStatusCode().is5xxServerError();
+    }
+    
+    /**
+     * Com a cobrança já enviada o Asaas pode tê-la criado: como numa falha de
+     * comunicação, o registro fica em PROCESSING para a recuperação. Antes
+     * disso nada foi criado e o pedido é liberado.
+     */
+    private void tratarPrazoEsgotado(Pagamento pagamento, boolean cobrancaEnviada, PrazoEsgotadoException e) {
+        if (cobrancaEnviada) {
+            logger.warning("Prazo esgotado aguardando o Asaas, pagamento " + pagamento.getId() + " fica para recuperação: " + e.getMessage());
+        } else {
+            descartarPagamentoPendente(pagamento);
+            logger.warning("Prazo esgotado antes de criar a cobrança do pagamento " + pagamento.getId() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Remove o registro PROCESSING quando o Asaas certamente não criou a
+     * cobrança, liberando o pedido para nova tentativa. Falhas de comunicação
+     * e respostas 5xx na criação não passam por aqui: a cobrança pode ter sido criada e a
+     * recuperação consulta o Asaas antes de decidir.
+     */
+    private void descartarPagamentoPendente(Pagamento pagamento) {
+        pagamentoRepository.removerSeStatus(pagamento.getId(), StatusPagamento.PROCESSING);
+    }
+    
     private void validarRespostaAsaas(AsaasPaymentResponseDTO response) {
         if (response == null) {
             throw new PaymentGatewayException("Resposta nula da API Asaas");
         }
     }
     
-    private void atualizarPagamentoComRespostaAsaas(Pagamento pagamento, String asaasCustomerId, AsaasPaymentResponseDTO response) {
+    static void atualizarPagamentoComRespostaAsaas(Pagamento pagamento, AsaasPaymentResponseDTO response) {
         pagamento.setAsaasPaymentId(response.getId());
-        pagamento.setAsaasCustomerId(asaasCustomerId);
-        pagamento.setStatus(StatusPagamento.AUTHORIZED);
-    }
-    
-    private void atualizarPagamentoComQrCode(Pagamento pagamento, String asaasPaymentId) {
-        try {
-            AsaasQrCodeResponseDTO qrCodeResponse = asaasService.buscarQrCodePix(asaasPaymentId);
-            if (qrCodeResponse != null) {
-                pagamento.setQrCode(qrCodeResponse.getPayload());
-                pagamento.setQrCodeImageUrl(qrCodeResponse.getEncodedImage());
-            }
-        } catch (Exception e) {
-            logger.severe("Erro ao obter QR Code PIX: " + e.getMessage());
+        if (pagamento.getAsaasCustomerId() == null) {
+            pagamento.setAsaasCustomerId(response.getCustomer());
         }
+        if (pagamento.getMetodo() == MetodoPagamento.CREDIT_CARD && !"CONFIRMED".equals(response.getStatus())) {
+            pagamento.setStatus(StatusPagamento.PENDING);
+        } else {
+            pagamento.setStatus(StatusPagamento.AUTHORIZED);
+        }
+        pagamento.setAtualizadoEm(java.time.Instant.now());
     }
     
-    @Transactional
-    public PagamentoResponseDTO buscarPagamentoPorPedido(Long pedidoId) {
+    @Transactional(readOnly = true)
+    public PixQrCodeResponseDTO buscarQrCodePix(Long pedidoId) {
         Pagamento pagamento = buscarPagamentoPorPedidoId(pedidoId);
         
-        if (pagamento.getMetodo() == MetodoPagamento.PIX && 
-            pagamento.getStatus() != StatusPagamento.PAID && 
-            pagamento.getStatus() != StatusPagamento.REFUNDED &&
-            pagamento.getAsaasPaymentId() != null) {
-            sincronizarStatusComAsaas(pagamento);
+        if (pagamento.getMetodo() != MetodoPagamento.PIX) {
+            throw new IllegalArgumentException("Pagamento do pedido " + pedidoId + " não é PIX");
         }
         
-        PagamentoResponseDTO response = modelMapper.map(pagamento, PagamentoResponseDTO.class);
+        PixQrCodeResponseDTO response = new PixQrCodeResponseDTO();
         response.setPedidoId(pagamento.getPedidoId());
+        response.setQrCode(pagamento.getQrCode());
+        response.setPronto(pagamento.getQrCode() != null);
+        if (response.isPronto()) {
+            response.setQrCodeImageUrl(urlImagemQrCode(pagamento.getPedidoId()));
+        }
+        
+        if (!response.isPronto() && pagamento.getAsaasPaymentId() != null) {
+            pixQrCodeService.agendarBusca(pagamento.getId(), pagamento.getAsaasPaymentId());
+        }
         return response;
     }
     
-    private void sincronizarStatusComAsaas(Pagamento pagamento) {
-        try {
-            AsaasPaymentResponseDTO asaasResponse = asaasService.buscarPagamento(pagamento.getAsaasPaymentId());
+    /**
+     * Leitura local: o status de pagamentos PIX em aberto é atualizado pelo
+     * webhook e pelo {@link ReconciliadorPix}, não a cada consulta. Sem
+     * transação própria, para que um acerto no {@link PagamentoCache} não
+     * ocupe conexão do pool.
+     */
+    public PagamentoResponseDTO buscarPagamentoPorPedido(Long pedidoId) {
+        return pagamentoCache.buscar(pedidoId, id -> toResponse(buscarPagamentoPorPedidoId(id)));
+    }
+    
+    /**
+     * Status de vários pedidos numa única consulta que lê só as colunas da
+     * projeção, em vez de uma consulta e uma transação por pedido. Pedidos sem
+     * pagamento ficam fora da lista.
+     */
+    public List<StatusPagamentoPedidoDTO> buscarStatusPorPedidos(Collection<Long> pedidoIds) {
+        return pagamentoRepository.buscarStatusPorPedidos(new LinkedHashSet<>(pedidoIds));
+    }
+    
+    /**
+     * Aplica em uma transação os status obtidos pelo reconciliador. Pagamentos
+     * que um webhook já finalizou são mantidos; confirmações entram na outbox
+     * para o serviço de pedidos, como no webhook.
+     */
+    @Transactional
+    public void aplicarStatusReconciliados(Map<Long, StatusPagamento> novosStatus) {
+        if (novosStatus.isEmpty()) {
+            return;
+        }
+        
+        for (Pagamento pagamento : pagamentoRepository.findAllById(novosStatus.keySet())) {
+            StatusPagamento novoStatus = novosStatus.get(pagamento.getId());
+            if (pagamento.getStatus() == novoStatus || isStatusFinal(pagamento.getStatus())) {
+                continue;
+            }
             
-            if (asaasResponse != null && asaasResponse.getStatus() != null) {
-                String asaasStatus = asaasResponse.getStatus();
-                
-                if ("CONFIRMED".equals(asaasStatus) || "RECEIVED".equals(asaasStatus)) {
-                    pagamento.setStatus(StatusPagamento.PAID);
-                    pagamento.setAtualizadoEm(java.time.Instant.now());
-                    logger.info("Pagamento PIX sincronizado e confirmado: " + pagamento.getAsaasPaymentId() + " - Pedido: " + pagamento.getPedidoId());
-                } else if ("REFUSED".equals(asaasStatus) || "OVERDUE".equals(asaasStatus)) {
-                    pagamento.setStatus(StatusPagamento.REFUSED);
-                    pagamento.setAtualizadoEm(java.time.Instant.now());
-                    logger.info("Pagamento PIX recusado/vencido: " + pagamento.getAsaasPaymentId());
-                }
-                
-                pagamentoRepository.save(pagamento);
+            pagamento.setStatus(novoStatus);
+            pagamento.setAtualizadoEm(java.time.Instant.now());
+            pagamentoRepository.save(pagamento);
+            eventPublisher.publishEvent(new PagamentoAlteradoEvent(pagamento.getPedidoId()));
+            if (novoStatus == StatusPagamento.PAID) {
+                outboxNotificacaoRepository.save(OutboxNotificacao.pagamentoConfirmado(pagamento.getPedidoId(), pagamento.getAsaasPaymentId()));
             }
-        } catch (Exception e) {
-            logger.warning("Erro ao sincronizar status com Asaas para pagamento " + pagamento.getId() + ": " + e.getMessage());
+            logger.info("Pagamento PIX reconciliado como " + novoStatus + ": " + pagamento.getAsaasPaymentId() + " - Pedido: " + pagamento.getPedidoId());
         }
     }
     
+    static boolean isStatusFinal(StatusPagamento status) {
+        return status == StatusPagamento.PAID
+                || status == StatusPagamento.REFUSED
+                || status == StatusPagamento.REFUNDED
+                || status == StatusPagamento.CANCELED;
+    }
+    
     private Pagamento buscarPagamentoPorPedidoId(Long pedidoId) {
         return pagamentoRepository.findByPedidoId(pedidoId)
                 .orElseThrow(() -> new ResourceNotFoundException("Pagamento não encontrado para o pedido: " + pedidoId));
     }
     
-    @Transactional
+    /**
+     * Sem transação própria: a chamada de estorno ao Asaas não segura conexão
+     * do pool, e o resultado é gravado pelo save ao final. A duração, por
+     * resultado, vai para o histograma pagamento.reembolsos.
+     */
     public PagamentoResponseDTO processarReembolso(Long pedidoId, String motivo) {
+        Timer.Sample amostra = Timer.start();
+        String resultado = "sucesso";
+        try {
+            return executarReembolso(pedidoId, motivo);
+        } catch (RuntimeException e) {
+            resultado = resultadoDoErro(e);
+            throw e;
+        } finally {
+            amostra.stop(Timer.builder("pagamento.reembolsos")
+                    .description("Duração dos reembolsos")
+                    .tag("resultado", resultado)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry));
+        }
+    }
+    
+    /**
+     * Confere no Asaas se o estorno do pedido já foi aplicado, antes de repetir
+     * um estorno cuja resposta se perdeu (timeout, erro de conexão, 5xx ou
+     * instância que caiu no meio). Se foi, conclui o pagamento local como
+     * REFUNDED e devolve true; a consulta da cobrança não traz o id do
+     * estorno, que fica vazio.
+     */
+    public boolean concluirSeJaEstornado(Long pedidoId) {
+        Pagamento pagamento = buscarPagamentoPorPedidoId(pedidoId);
+        if (pagamento.getMetodo() == MetodoPagamento.CASH || pagamento.getAsaasPaymentId() == null
+                || (pagamento.getStatus() != StatusPagamento.PAID && pagamento.getStatus() != StatusPagamento.AUTHORIZED)) {
+            return false;
+        }
+        
+        AsaasPaymentResponseDTO cobranca = asaasService.buscarPagamento(pagamento.getAsaasPaymentId());
+        if (cobranca == null || !ESTORNADO_NO_ASAAS.contains(cobranca.getStatus())) {
+            return false;
+        }
+        
+        pagamento.setStatus(StatusPagamento.REFUNDED);
+        pagamento.setValorReembolsado(pagamento.getValor());
+        pagamento.setDataReembolso(java.time.Instant.now());
+        pagamento.setAtualizadoEm(java.time.Instant.now());
+        pagamentoRepository.save(pagamento);
+        eventPublisher.publishEvent(new PagamentoAlteradoEvent(pedidoId));
+        logger.info("Estorno já aplicado no Asaas (" + cobranca.getStatus() + ") concluído localmente - Pedido: " + pedidoId);
+        return true;
+    }
+    
+    private PagamentoResponseDTO executarReembolso(Long pedidoId, String motivo) {
         Pagamento pagamento = buscarPagamentoPorPedidoId(pedidoId);
         
         pagamentoValidator.validateReembolsoPossivel(pagamento);
@@ -214,12 +540,11 @@ public class PagamentoService {
         }
         
         Pagamento saved = pagamentoRepository.save(pagamento);
+        eventPublisher.publishEvent(new PagamentoAlteradoEvent(pedidoId));
         
         logger.info("Reembolso processado para pedido " + pedidoId + " - Valor: R$ " + pagamento.getValorReembolsado());
         
-        PagamentoResponseDTO response = modelMapper.map(saved, PagamentoResponseDTO.class);
-        response.setPedidoId(saved.getPedidoId());
-        return response;
+        return toResponse(saved);
     }
     
     private void processarReembolsoDinheiro(Pagamento pagamento, String motivo) {
@@ -246,7 +571,7 @@ public class PagamentoService {
             throw new PaymentGatewayException("Erro de conexão com o gateway de pagamento ao processar reembolso.", e);
         } catch (Exception e) {
             logger.severe("Erro ao processar reembolso: " + e.getMessage());
-            throw new PaymentGatewayException("Erro ao processar reembolso: " + e.getMessage());
+            throw new PaymentGatewayException("Erro ao processar reembolso: " + e.getMessage(), e);
         }
     }
     
@@ -257,7 +582,16 @@ public class PagamentoService {
         pagamento.setAsaasRefundId(refundResponse.getId());
         pagamento.setAtualizadoEm(java.time.Instant.now());
     }
+    
+    PagamentoResponseDTO toResponse(Pagamento pagamento) {
+        PagamentoResponseDTO response = pagamentoMapper.toPagamentoResponse(pagamento);
+        if (pagamento.getMetodo() == MetodoPagamento.PIX && pagamento.getQrCode() != null) {
+            response.setQrCodeImageUrl(urlImagemQrCode(pagamento.getPedidoId()));
+        }
+        return response;
+    }
+    
+    private String urlImagemQrCode(Long pedidoId) {
+        return "/api/pagamentos/pedidos/" + pedidoId + "/qrcode";
+    }
 }
-
-
-
@@ -1,15 +1,25 @@
 package com.siseg.pagamento.service;
 
 import com.siseg.pagamento.dto.NotificarPedidoDTO;
+import com.siseg.pagamento.dto.NotificarPedidosLoteDTO;
+import com.siseg.pagamento.dto.NotificarPedidosLoteResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.logging.Logger;
 
+/**
+ * Cliente do serviço de pedidos. Chamadas que falham são contadas em
+ * pedido.service.notificacoes.falhas, por tipo (individual ou lote) e motivo
+ * (código HTTP, timeout ou erro de conexão).
+ */
 @Service
 public class PedidoServiceClient {
     
@@ -18,39 +28,77 @@ public class PedidoServiceClient {
     private final WebClient webClient;
     private final String serviceKey;
     
-    public PedidoServiceClient(@Value("${pedido.service.url}") String pedidoServiceUrl,
+    public PedidoServiceClient(@Qualifier("pedidoServiceWebClient") WebClient webClient,
                                @Value("${pedido.service.key}") String serviceKey) {
+        this.webClient = webClient;
         this.serviceKey = serviceKey;
-        this.webClient = WebClient.builder()
-                .baseUrl(pedidoServiceUrl)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .build();
     }
     
     public void notificarPagamentoConfirmado(Long pedidoId, String asaasPaymentId) {
-        try {
-            NotificarPedidoDTO notificacao = new NotificarPedidoDTO();
-            notificacao.setPedidoId(pedidoId);
-            notificacao.setStatusPagamento(com.siseg.pagamento.model.enumerations.StatusPagamento.PAID);
-            notificacao.setAsaasPaymentId(asaasPaymentId);
-            
-            webClient.post()
-                    .uri("/api/pedidos/pagamento-confirmado")
-                    .header("X-Service-Key", serviceKey)
-                    .bodyValue(notificacao)
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
-                    
-            logger.info("Notificação de pagamento confirmado enviada para pedido: " + pedidoId);
-            
-        } catch (WebClientException e) {
-            logger.warning("Erro ao notificar monólito sobre pagamento confirmado para pedido " + pedidoId + ": " + e.getMessage());
-            // Não lança exceção para não interromper o processamento do webhook
-        } catch (Exception e) {
-            logger.warning("Erro ao notificar monólito sobre pagamento confirmado: " + e.getMessage());
-        }
+        notificarPagamentoConfirmadoReativo(pedidoId, asaasPaymentId).block();
+    }
+    
+    public Mono<Void> notificarPagamentoConfirmadoReativo(Long pedidoId, String asaasPaymentId) {
+        return enviarPagamentoConfirmadoReativo(pedidoId, asaasPaymentId)
+                // Não propaga o erro para não interromper o processamento do webhook
+                .onErrorResume(WebClientException.class, e -> {
+                    logger.warning("Erro ao notificar monólito sobre pagamento confirmado para pedido " + pedidoId + ": " + e.getMessage());
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    logger.warning("Erro ao notificar monólito sobre pagamento confirmado: " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    /**
+     * Envia a notificação propagando falhas, para quem precisa decidir sobre
+     * nova tentativa (o relay da outbox).
+     */
+    public Mono<Void> enviarPagamentoConfirmadoReativo(Long pedidoId, String asaasPaymentId) {
+        NotificarPedidoDTO notificacao = new NotificarPedidoDTO();
+        notificacao.setPedidoId(pedidoId);
+        notificacao.setStatusPagamento(com.siseg.pagamento.model.enumerations.StatusPagamento.PAID);
+        notificacao.setAsaasPaymentId(asaasPaymentId);
+        return enviarPagamentoConfirmadoReativo(notificacao);
+    }
+    
+    public Mono<Void> enviarPagamentoConfirmadoReativo(NotificarPedidoDTO notificacao) {
+        return webClient.post()
+                .uri("/api/pedidos/pagamento-confirmado")
+                .header("X-Service-Key", serviceKey)
+                .bodyValue(notificacao)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .doOnSuccess(ignored -> logger.info("Notificação de pagamento confirmado enviada para pedido: " + notificacao.getPedidoId()))
+                .doOnError(e -> registrarFalha("individual", e));
+    }
+    
+    /**
+     * Envia várias confirmações em uma chamada. O serviço de pedidos devolve
+     * um resultado por item, na ordem do envio.
+     */
+    public Mono<NotificarPedidosLoteResponseDTO> enviarPagamentosConfirmadosEmLoteReativo(List<NotificarPedidoDTO> notificacoes) {
+        NotificarPedidosLoteDTO lote = new NotificarPedidosLoteDTO();
+        lote.setNotificacoes(notificacoes);
+        
+        return webClient.post()
+                .uri("/api/pedidos/pagamentos-confirmados")
+                .header("X-Service-Key", serviceKey)
+                .bodyValue(lote)
+                .retrieve()
+                .bodyToMono(NotificarPedidosLoteResponseDTO.class)
+                .doOnSuccess(ignored -> logger.fine("Lote de " + notificacoes.size() + " notificações enviado ao serviço de pedidos"))
+                .doOnError(e -> registrarFalha("lote", e));
+    }
+    
+    private static void registrarFalha(String tipo, Throwable e) {
+        Counter.builder("pedido.service.notificacoes.falhas")
+                .description("Chamadas ao serviço de pedidos que falharam")
+                .tag("tipo", tipo)
+                .tag("motivo", ProtecaoAsaas.statusDoErro(e))
+                .register(Metrics.globalRegistry)
+                .increment();
     }
 }
 
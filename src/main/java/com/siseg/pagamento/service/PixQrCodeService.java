@@ -0,0 +1,153 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasQrCodeResponseDTO;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
+import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.model.PixQrCodeImagem;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import com.siseg.pagamento.repository.PixQrCodeImagemRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Busca o QR Code PIX fora do caminho de criação do pagamento. O pagamento é
+ * persistido logo após o Asaas criar a cobrança e o QR Code é preenchido
+ * depois, por um pool dedicado. A imagem fica decodificada na tabela
+ * pix_qrcode_imagens, fora da linha do pagamento.
+ */
+@Service
+public class PixQrCodeService {
+
+    private static final Logger logger = Logger.getLogger(PixQrCodeService.class.getName());
+    private static final String PREFIXO_DATA_URI = "data:image/png;base64,";
+
+    private final PagamentoRepository pagamentoRepository;
+    private final PixQrCodeImagemRepository pixQrCodeImagemRepository;
+    private final AsaasService asaasService;
+    private final TaskExecutor qrCodeExecutor;
+    private final int maxTentativas;
+    private final long intervaloTentativaMs;
+    private final Set<Long> emAndamento = ConcurrentHashMap.newKeySet();
+
+    public PixQrCodeService(PagamentoRepository pagamentoRepository,
+                            PixQrCodeImagemRepository pixQrCodeImagemRepository,
+                            AsaasService asaasService,
+                            @Qualifier("qrCodeExecutor") TaskExecutor qrCodeExecutor,
+                            @Value("${pagamento.pix.qrcode.max-tentativas:3}") int maxTentativas,
+                            @Value("${pagamento.pix.qrcode.intervalo-tentativa-ms:500}") long intervaloTentativaMs) {
+        this.pagamentoRepository = pagamentoRepository;
+        this.pixQrCodeImagemRepository = pixQrCodeImagemRepository;
+        this.asaasService = asaasService;
+        this.qrCodeExecutor = qrCodeExecutor;
+        this.maxTentativas = maxTentativas;
+        this.intervaloTentativaMs = intervaloTentativaMs;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoCriarPagamentoPix(PagamentoPixCriadoEvent evento) {
+        agendarBusca(evento.pagamentoId(), evento.asaasPaymentId());
+    }
+
+    public void agendarBusca(Long pagamentoId, String asaasPaymentId) {
+        if (!emAndamento.add(pagamentoId)) {
+            return;
+        }
+        try {
+            qrCodeExecutor.execute(() -> {
+                try {
+                    buscarEAtualizar(pagamentoId, asaasPaymentId);
+                } finally {
+                    emAndamento.remove(pagamentoId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            emAndamento.remove(pagamentoId);
+            logger.warning("Fila de QR Code PIX cheia, busca adiada para pagamento " + pagamentoId);
+        }
+    }
+
+    void buscarEAtualizar(Long pagamentoId, String asaasPaymentId) {
+        for (int tentativa = 1; tentativa <= maxTentativas; tentativa++) {
+            try {
+                AsaasQrCodeResponseDTO qrCodeResponse = asaasService.buscarQrCodePix(asaasPaymentId);
+                if (qrCodeResponse != null) {
+                    salvarImagem(pagamentoId, qrCodeResponse.getEncodedImage());
+                    pagamentoRepository.atualizarQrCode(pagamentoId, qrCodeResponse.getPayload());
+                    return;
+                }
+            } catch (Exception e) {
+                logger.warning("Erro ao obter QR Code PIX (tentativa " + tentativa + "/" + maxTentativas + ") para " + asaasPaymentId + ": " + e.getMessage());
+            }
+            if (tentativa < maxTentativas && !aguardar(intervaloTentativaMs * tentativa)) {
+                return;
+            }
+        }
+        logger.severe("QR Code PIX não obtido após " + maxTentativas + " tentativas: " + asaasPaymentId);
+    }
+
+    public String buscarEtagImagem(Long pedidoId) {
+        return pixQrCodeImagemRepository.findEtagByPedidoId(pedidoId)
+                .orElseThrow(() -> new ResourceNotFoundException("QR Code PIX não disponível para o pedido: " + pedidoId));
+    }
+
+    public PixQrCodeImagem buscarImagem(Long pedidoId) {
+        return pixQrCodeImagemRepository.findByPedidoId(pedidoId)
+                .orElseThrow(() -> new ResourceNotFoundException("QR Code PIX não disponível para o pedido: " + pedidoId));
+    }
+
+    /**
+     * Sem imagem, ou com base64 inválido, a tentativa falha antes de gravar o
+     * payload: com o payload gravado o QR Code seria dado como pronto e a URL
+     * da imagem responderia 404 sem nova busca.
+     */
+    private void salvarImagem(Long pagamentoId, String encodedImage) {
+        if (encodedImage == null || encodedImage.isEmpty()) {
+            throw new IllegalStateException("Asaas devolveu o QR Code PIX sem imagem");
+        }
+        String base64 = encodedImage.startsWith(PREFIXO_DATA_URI)
+                ? encodedImage.substring(PREFIXO_DATA_URI.length())
+                : encodedImage;
+        byte[] png = Base64.getMimeDecoder().decode(base64.getBytes(StandardCharsets.US_ASCII));
+        // O decoder MIME ignora caracteres fora do alfabeto: lixo vira imagem vazia
+        if (png.length == 0) {
+            throw new IllegalStateException("Imagem do QR Code PIX inválida");
+        }
+
+        PixQrCodeImagem imagem = new PixQrCodeImagem();
+        imagem.setPagamentoId(pagamentoId);
+        imagem.setImagem(png);
+        imagem.setEtag(calcularEtag(png));
+        pixQrCodeImagemRepository.save(imagem);
+    }
+
+    private String calcularEtag(byte[] conteudo) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(conteudo));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private boolean aguardar(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.service.ProtecaoAsaas.Operacao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retentativas e hedge para as leituras idempotentes do Asaas (GETs). Nunca
+ * deve ser aplicada a POSTs: repetir a criação de uma cobrança ou um estorno
+ * pode duplicá-los.
+ *
+ * <p>Erros de conexão, timeouts e respostas 408, 429 e 5xx são repetidos até
+ * asaas.leitura.max-retentativas vezes, com backoff exponencial e jitter.
+ * Recusas do disjuntor ou do bulkhead ({@link ProtecaoAsaas}) e as demais
+ * respostas 4xx não são repetidas. Esgotadas as tentativas, segue o erro da
+ * última.
+ *
+ * <p>Com asaas.leitura.hedge.habilitado, se a resposta não chega dentro do
+ * percentil asaas.leitura.hedge.percentil das latências recentes da operação,
+ * uma segunda requisição é disparada e vale a primeira resposta; a outra é
+ * cancelada. Uma resposta vazia também é resposta e encerra a disputa. Só
+ * leituras com valor entram nas amostras de latência; enquanto não há amostras
+ * suficientes não há hedge.
+ */
+@Component
+public class PoliticaLeituraAsaas {
+
+    private static final int TAMANHO_AMOSTRA = 128;
+
+    private final int maxRetentativas;
+    private final Duration backoffInicial;
+    private final Duration backoffMaximo;
+    private final double jitter;
+    private final boolean hedgeHabilitado;
+    private final double percentilHedge;
+    private final Duration atrasoMinimoHedge;
+    private final int amostrasMinimasHedge;
+    private final Map<Operacao, LatenciaRecente> latencias = new EnumMap<>(Operacao.class);
+
+    private final AtomicLong retentativas = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    public PoliticaLeituraAsaas(@Value("${asaas.leitura.max-retentativas:2}") int maxRetentativas,
+                                @Value("${asaas.leitura.backoff-inicial-ms:100}") long backoffInicialMs,
+                                @Value("${asaas.leitura.backoff-max-ms:2000}") long backoffMaximoMs,
+                                @Value("${asaas.leitura.jitter:0.5}") double jitter,
+                                @Value("${asaas.leitura.hedge.habilitado:false}") boolean hedgeHabilitado,
+                                @Value("${asaas.leitura.hedge.percentil:95}") double percentilHedge,
+                                @Value("${asaas.leitura.hedge.atraso-min-ms:50}") long atrasoMinimoHedgeMs,
+                                @Value("${asaas.leitura.hedge.amostras-min:20}") int amostrasMinimasHedge) {
+        this.maxRetentativas = Math.max(0, maxRetentativas);
+        this.backoffInicial = Duration.ofMillis(backoffInicialMs);
+        this.backoffMaximo = Duration.ofMillis(backoffMaximoMs);
+        this.jitter = jitter;
+        this.hedgeHabilitado = hedgeHabilitado;
+        this.percentilHedge = percentilHedge;
+        this.atrasoMinimoHedge = Duration.ofMillis(atrasoMinimoHedgeMs);
+        this.amostrasMinimasHedge = Math.max(1, Math.min(amostrasMinimasHedge, TAMANHO_AMOSTRA));
+        for (Operacao operacao : Operacao.values()) {
+            latencias.put(operacao, new LatenciaRecente());
+        }
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        FunctionCounter.builder("asaas.leitura.retentativas", retentativas, AtomicLong::get)
+                .description("Leituras do Asaas repetidas após erro temporário")
+                .register(registry);
+        FunctionCounter.builder("asaas.leitura.hedges", hedges, AtomicLong::get)
+                .description("Segundas requisições disparadas por leitura lenta")
+                .register(registry);
+    }
+
+    /**
+     * Aplica hedge e retentativas à leitura. Cada inscrição em
+     * {@code tentativa} deve fazer uma nova requisição, como as do WebClient.
+     */
+    <T> Mono<T> ler(Operacao operacao, Mono<T> tentativa) {
+        LatenciaRecente latencia = latencias.get(operacao);
+        Mono<T> medida = Mono.defer(() -> {
+            long inicio = System.nanoTime();
+            return tentativa.doOnNext(resultado -> latencia.registrar(System.nanoTime() - inicio));
+        });
+        Mono<T> chamada = hedgeHabilitado
+                ? Mono.defer(() -> comHedge(medida, latencia.percentil(percentilHedge, amostrasMinimasHedge)))
+                : medida;
+        return comRetentativas(chamada);
+    }
+
+    /** Só retentativas, para leituras sem operação própria no {@link ProtecaoAsaas}. */
+    <T> Mono<T> comRetentativas(Mono<T> chamada) {
+        if (maxRetentativas == 0) {
+            return chamada;
+        }
+        return chamada.retryWhen(politicaRetentativa());
+    }
+
+    private RetryBackoffSpec politicaRetentativa() {
+        return Retry.backoff(maxRetentativas, backoffInicial)
+                .maxBackoff(backoffMaximo)
+                .jitter(jitter)
+                .filter(PoliticaLeituraAsaas::isRetentavel)
+                .doBeforeRetry(sinal -> retentativas.incrementAndGet())
+                .onRetryExhaustedThrow((spec, sinal) -> sinal.failure());
+    }
+
+    private <T> Mono<T> comHedge(Mono<T> tentativa, Duration percentil) {
+        if (percentil == null) {
+            return tentativa;
+        }
+        Duration atraso = percentil.compareTo(atrasoMinimoHedge) > 0 ? percentil : atrasoMinimoHedge;
+
+        // Se a primeira termina antes do atraso, com ou sem valor, não há hedge; depois dele, vale a que responder.
+        // O vazio vira Optional.empty() para também encerrar a disputa, em vez de esperar a outra requisição
+        Sinks.Empty<Void> primeiraTerminou = Sinks.empty();
+        Mono<Optional<T>> primeira = comVazio(tentativa).doFinally(sinal -> primeiraTerminou.tryEmitEmpty());
+        Mono<Optional<T>> segunda = Mono.delay(atraso)
+                .takeUntilOther(primeiraTerminou.asMono())
+                .flatMap(ignorado -> {
+                    hedges.incrementAndGet();
+                    return comVazio(tentativa);
+                });
+        return Flux.mergeDelayError(1, primeira, segunda)
+                .next()
+                .flatMap(Mono::justOrEmpty)
+                .onErrorMap(Exceptions::isMultiple, e -> Exceptions.unwrapMultiple(e).get(0));
+    }
+
+    private static <T> Mono<Optional<T>> comVazio(Mono<T> tentativa) {
+        return tentativa.map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+
+    long getRetentativas() {
+        return retentativas.get();
+    }
+
+    long getHedges() {
+        return hedges.get();
+    }
+
+    static boolean isRetentavel(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof WebClientResponseException resposta) {
+                int status = resposta.getStatusCode().value();
+                return status == 408 || status == 429 || resposta.getStatusCode().is5xxServerError();
+            }
+            if (causa instanceof WebClientRequestException || causa instanceof IOException
+                    || causa instanceof TimeoutException || causa instanceof io.netty.handler.timeout.TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Últimas latências de sucesso de uma operação, em janela circular. */
+    private static final class LatenciaRecente {
+
+        private final long[] amostras = new long[TAMANHO_AMOSTRA];
+        private int posicao;
+        private int quantidade;
+
+        private synchronized void registrar(long nanos) {
+            amostras[posicao] = nanos;
+            posicao = (posicao + 1) % amostras.length;
+            quantidade = Math.min(quantidade + 1, amostras.length);
+        }
+
+        private Duration percentil(double percentil, int amostrasMinimas) {
+            long[] copia;
+            synchronized (this) {
+                if (quantidade < amostrasMinimas) {
+                    return null;
+                }
+                copia = Arrays.copyOf(amostras, quantidade);
+            }
+            Arrays.sort(copia);
+            int indice = (int) Math.ceil(percentil / 100.0 * copia.length) - 1;
+            return Duration.ofNanos(copia[Math.max(0, Math.min(indice, copia.length - 1))]);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.exception.PrazoEsgotadoException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Prazo de uma requisição: o tempo que quem chamou ainda está disposto a
+ * esperar. Cada chamada sequencial ao gateway recebe só o que sobrou do
+ * prazo; esgotado, o trabalho para com {@link PrazoEsgotadoException} em vez
+ * de continuar para ninguém.
+ */
+public final class Prazo {
+
+    private final long limiteNanos;
+
+    private Prazo(long limiteNanos) {
+        this.limiteNanos = limiteNanos;
+    }
+
+    public static Prazo em(Duration duracao) {
+        return new Prazo(System.nanoTime() + duracao.toNanos());
+    }
+
+    public Duration restante() {
+        return Duration.ofNanos(Math.max(0, limiteNanos - System.nanoTime()));
+    }
+
+    public boolean isEsgotado() {
+        return limiteNanos - System.nanoTime() <= 0;
+    }
+
+    public void verificar(String etapa) {
+        if (isEsgotado()) {
+            throw new PrazoEsgotadoException("Prazo da requisição esgotado antes de " + etapa);
+        }
+    }
+
+    /**
+     * Limita a chamada ao prazo restante no momento da inscrição. Esgotado o
+     * prazo a chamada é cancelada e o erro é {@link PrazoEsgotadoException}.
+     */
+    public <T> Mono<T> aplicar(Mono<T> chamada, String etapa) {
+        return Mono.defer(() -> {
+            Duration restante = restante();
+            if (restante.isZero()) {
+                return Mono.error(new PrazoEsgotadoException("Prazo da requisição esgotado antes de " + etapa));
+            }
+            return chamada.timeout(restante,
+                    Mono.error(() -> new PrazoEsgotadoException("Prazo da requisição esgotado durante " + etapa)));
+        });
+    }
+}
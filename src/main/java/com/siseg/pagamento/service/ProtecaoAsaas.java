@@ -0,0 +1,242 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proteção das chamadas ao Asaas. Cada operação tem seu {@link Disjuntor}:
+ * com o gateway degradado o circuito abre e as chamadas falham na hora com
+ * {@link PaymentGatewayException}, sem ocupar conexão nem thread esperando o
+ * timeout. As operações são agrupadas em bulkheads (criação, consulta,
+ * estorno e QR Code), cada um com seu limite de chamadas simultâneas, para
+ * que a lentidão de um grupo não esgote o que os outros precisam; acima do
+ * limite a chamada também é recusada na hora.
+ *
+ * <p>Só contam como falha erros de conexão, timeouts e respostas 5xx ou 429.
+ * As demais respostas 4xx são recusas do Asaas à requisição e não indicam
+ * problema no gateway.
+ *
+ * <p>Estado dos circuitos, chamadas em andamento e recusas são publicados no
+ * registro global do Micrometer (asaas.disjuntor.*, asaas.bulkhead.*), junto
+ * com o histograma de latência das chamadas por operação e status HTTP
+ * (asaas.chamadas). Chamadas recusadas não entram no histograma.
+ */
+@Component
+public class ProtecaoAsaas {
+
+    enum Grupo {
+        CRIACAO("criacao"), CONSULTA("consulta"), ESTORNO("estorno"), QR_CODE("qrcode");
+
+        private final String nome;
+
+        Grupo(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    enum Operacao {
+        CLIENTE("cliente", Grupo.CRIACAO),
+        COBRANCA_PIX("cobranca-pix", Grupo.CRIACAO),
+        COBRANCA_CARTAO("cobranca-cartao", Grupo.CRIACAO),
+        CONFIRMAR_SANDBOX("confirmar-sandbox", Grupo.CRIACAO),
+        BUSCAR_PAGAMENTO("buscar-pagamento", Grupo.CONSULTA),
+        BUSCAR_PAGAMENTO_PEDIDO("buscar-pagamento-pedido", Grupo.CONSULTA),
+        ESTORNO("estorno", Grupo.ESTORNO),
+        QR_CODE_PIX("qrcode-pix", Grupo.QR_CODE);
+
+        private final String nome;
+        private final Grupo grupo;
+
+        Operacao(String nome, Grupo grupo) {
+            this.nome = nome;
+            this.grupo = grupo;
+        }
+
+        String getNome() {
+            return nome;
+        }
+    }
+
+    private final Map<Operacao, Disjuntor> disjuntores = new EnumMap<>(Operacao.class);
+    private final Map<Grupo, Bulkhead> bulkheads = new EnumMap<>(Grupo.class);
+
+    public ProtecaoAsaas(@Value("${asaas.disjuntor.janela:20}") int tamanhoJanela,
+                         @Value("${asaas.disjuntor.minimo-chamadas:10}") int minimoChamadas,
+                         @Value("${asaas.disjuntor.taxa-falha-percentual:50}") double taxaFalhaPercentual,
+                         @Value("${asaas.disjuntor.tempo-aberto-ms:30000}") long tempoAbertoMs,
+                         @Value("${asaas.disjuntor.chamadas-teste:3}") int chamadasTeste,
+                         @Value("${asaas.bulkhead.criacao:40}") int limiteCriacao,
+                         @Value("${asaas.bulkhead.consulta:40}") int limiteConsulta,
+                         @Value("${asaas.bulkhead.estorno:10}") int limiteEstorno,
+                         @Value("${asaas.bulkhead.qrcode:20}") int limiteQrCode) {
+        for (Operacao operacao : Operacao.values()) {
+            disjuntores.put(operacao, new Disjuntor(operacao.nome, tamanhoJanela, minimoChamadas, taxaFalhaPercentual,
+                    Duration.ofMillis(tempoAbertoMs), chamadasTeste));
+        }
+        bulkheads.put(Grupo.CRIACAO, new Bulkhead(limiteCriacao));
+        bulkheads.put(Grupo.CONSULTA, new Bulkhead(limiteConsulta));
+        bulkheads.put(Grupo.ESTORNO, new Bulkhead(limiteEstorno));
+        bulkheads.put(Grupo.QR_CODE, new Bulkhead(limiteQrCode));
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        disjuntores.forEach((operacao, disjuntor) -> {
+            Gauge.builder("asaas.disjuntor.estado", disjuntor, d -> d.getEstado().ordinal())
+                    .description("Estado do circuito: 0 fechado, 1 meio aberto, 2 aberto")
+                    .tag("operacao", operacao.nome)
+                    .register(registry);
+            FunctionCounter.builder("asaas.disjuntor.rejeicoes", disjuntor, Disjuntor::getRejeicoes)
+                    .description("Chamadas recusadas com o circuito aberto")
+                    .tag("operacao", operacao.nome)
+                    .register(registry);
+        });
+        bulkheads.forEach((grupo, bulkhead) -> {
+            Gauge.builder("asaas.bulkhead.em-uso", bulkhead, Bulkhead::getEmUso)
+                    .description("Chamadas ao Asaas em andamento no grupo")
+                    .tag("grupo", grupo.nome)
+                    .register(registry);
+            FunctionCounter.builder("asaas.bulkhead.rejeicoes", bulkhead.rejeicoes, AtomicLong::get)
+                    .description("Chamadas recusadas por limite de concorrência do grupo")
+                    .tag("grupo", grupo.nome)
+                    .register(registry);
+        });
+    }
+
+    /**
+     * Aplica disjuntor e bulkhead à chamada. A passagem é decidida a cada
+     * inscrição, então a chamada deve ser preguiçosa (só ir ao Asaas quando
+     * inscrita), como as do WebClient.
+     */
+    <T> Mono<T> proteger(Operacao operacao, Mono<T> chamada) {
+        return Mono.defer(() -> {
+            Disjuntor disjuntor = disjuntores.get(operacao);
+            if (!disjuntor.permitir()) {
+                return Mono.error(new PaymentGatewayException(
+                        "Gateway de pagamento indisponível no momento (" + operacao.nome + "). Tente novamente em instantes."));
+            }
+            Bulkhead bulkhead = bulkheads.get(operacao.grupo);
+            if (!bulkhead.adquirir()) {
+                disjuntor.descartar();
+                return Mono.error(new PaymentGatewayException(
+                        "Gateway de pagamento sobrecarregado (" + operacao.grupo.nome + "). Tente novamente em instantes."));
+            }
+
+            AtomicBoolean concluida = new AtomicBoolean();
+            Timer.Sample amostra = Timer.start();
+            return chamada
+                    .doOnSuccess(resultado -> {
+                        concluida.set(true);
+                        disjuntor.registrarSucesso();
+                        registrarLatencia(amostra, operacao, "2xx");
+                    })
+                    .doOnError(e -> {
+                        concluida.set(true);
+                        if (isFalhaDoGateway(e)) {
+                            disjuntor.registrarFalha();
+                        } else {
+                            disjuntor.registrarSucesso();
+                        }
+                        registrarLatencia(amostra, operacao, statusDoErro(e));
+                    })
+                    .doFinally(sinal -> {
+                        bulkhead.liberar();
+                        if (sinal == SignalType.CANCEL && !concluida.get()) {
+                            disjuntor.descartar();
+                            registrarLatencia(amostra, operacao, "cancelada");
+                        }
+                    });
+        });
+    }
+
+    Disjuntor.Estado getEstado(Operacao operacao) {
+        return disjuntores.get(operacao).getEstado();
+    }
+
+    long getRejeicoesDisjuntor(Operacao operacao) {
+        return disjuntores.get(operacao).getRejeicoes();
+    }
+
+    long getRejeicoesBulkhead(Grupo grupo) {
+        return bulkheads.get(grupo).rejeicoes.get();
+    }
+
+    private static void registrarLatencia(Timer.Sample amostra, Operacao operacao, String status) {
+        amostra.stop(Timer.builder("asaas.chamadas")
+                .description("Latência das chamadas ao Asaas")
+                .tag("operacao", operacao.nome)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+
+    /** Código HTTP da resposta de erro, ou o tipo de falha quando não houve resposta. */
+    static String statusDoErro(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof WebClientResponseException resposta) {
+                return String.valueOf(resposta.getStatusCode().value());
+            }
+            if (causa instanceof TimeoutException || causa instanceof io.netty.handler.timeout.TimeoutException) {
+                return "timeout";
+            }
+            if (causa instanceof WebClientRequestException || causa instanceof IOException) {
+                return "erro-conexao";
+            }
+        }
+        return "erro";
+    }
+
+    static boolean isFalhaDoGateway(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof WebClientResponseException resposta) {
+                return resposta.getStatusCode().is5xxServerError() || resposta.getStatusCode().value() == 429;
+            }
+        }
+        return true;
+    }
+
+    private static final class Bulkhead {
+
+        private final int limite;
+        private final Semaphore permissoes;
+        private final AtomicLong rejeicoes = new AtomicLong();
+
+        private Bulkhead(int limite) {
+            this.limite = limite;
+            this.permissoes = new Semaphore(limite);
+        }
+
+        private boolean adquirir() {
+            if (permissoes.tryAcquire()) {
+                return true;
+            }
+            rejeicoes.incrementAndGet();
+            return false;
+        }
+
+        private void liberar() {
+            permissoes.release();
+        }
+
+        private int getEmUso() {
+            return limite - permissoes.availablePermits();
+        }
+    }
+}
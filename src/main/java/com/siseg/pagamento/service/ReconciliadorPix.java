@@ -0,0 +1,207 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Acompanha pagamentos PIX em aberto e consulta o Asaas em intervalos
+ * crescentes (pagamento.pix.reconciliacao.intervalos-s, padrão 5, 15, 60, 120
+ * e 300 s; o último se repete). Os vencimentos ficam numa
+ * {@link RodaTemporizacao}; a cada tick os vencidos são consultados em lotes e
+ * os novos status gravados numa transação por lote; se a gravação falha, os
+ * pagamentos do lote seguem acompanhados. Cada consulta tem o limite
+ * pagamento.pix.reconciliacao.timeout-consulta-ms, para que um Asaas lento não
+ * prenda a thread do agendador. O acompanhamento termina
+ * quando o pagamento fica PAID ou REFUSED, passa do vencimento da cobrança ou
+ * excede a validade configurada.
+ */
+@Component
+public class ReconciliadorPix {
+
+    private static final Logger logger = Logger.getLogger(ReconciliadorPix.class.getName());
+    private static final List<StatusPagamento> STATUS_EM_ABERTO = List.of(StatusPagamento.PENDING, StatusPagamento.AUTHORIZED);
+
+    private final PagamentoRepository pagamentoRepository;
+    private final AsaasService asaasService;
+    private final PagamentoService pagamentoService;
+    private final int[] intervalosSegundos;
+    private final int tamanhoLote;
+    private final int concorrencia;
+    private final Duration validade;
+    private final Duration timeoutConsulta;
+    private final RodaTemporizacao<Long> roda;
+    private final Map<Long, Acompanhamento> acompanhados = new ConcurrentHashMap<>();
+
+    public ReconciliadorPix(PagamentoRepository pagamentoRepository,
+                            AsaasService asaasService,
+                            PagamentoService pagamentoService,
+                            @Value("${pagamento.pix.reconciliacao.intervalos-s:5,15,60,120,300}") int[] intervalosSegundos,
+                            @Value("${pagamento.pix.reconciliacao.tick-ms:1000}") long tickMs,
+                            @Value("${pagamento.pix.reconciliacao.slots:512}") int slots,
+                            @Value("${pagamento.pix.reconciliacao.tamanho-lote:100}") int tamanhoLote,
+                            @Value("${pagamento.pix.reconciliacao.concorrencia:8}") int concorrencia,
+                            @Value("${pagamento.pix.reconciliacao.validade-horas:72}") long validadeHoras,
+                            @Value("${pagamento.pix.reconciliacao.timeout-consulta-ms:10000}") long timeoutConsultaMs) {
+        this.pagamentoRepository = pagamentoRepository;
+        this.asaasService = asaasService;
+        this.pagamentoService = pagamentoService;
+        this.intervalosSegundos = intervalosSegundos;
+        this.tamanhoLote = tamanhoLote;
+        this.concorrencia = concorrencia;
+        this.validade = Duration.ofHours(validadeHoras);
+        this.timeoutConsulta = Duration.ofMillis(timeoutConsultaMs);
+        this.roda = new RodaTemporizacao<>(slots, Duration.ofMillis(tickMs), System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarPendentes() {
+        List<Pagamento> pendentes = pagamentoRepository.findByMetodoAndStatusInAndAsaasPaymentIdIsNotNull(
+                MetodoPagamento.PIX, STATUS_EM_ABERTO);
+        pendentes.forEach(pagamento -> acompanhar(pagamento.getId(), pagamento.getAsaasPaymentId(), pagamento.getCriadoEm()));
+        if (!pendentes.isEmpty()) {
+            logger.info("Pagamentos PIX em aberto sob reconciliação: " + pendentes.size());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoCriarPagamentoPix(PagamentoPixCriadoEvent evento) {
+        acompanhar(evento.pagamentoId(), evento.asaasPaymentId(), Instant.now());
+    }
+
+    public void acompanhar(Long pagamentoId, String asaasPaymentId, Instant criadoEm) {
+        if (acompanhados.putIfAbsent(pagamentoId, new Acompanhamento(asaasPaymentId, criadoEm, 0)) == null) {
+            roda.agendar(pagamentoId, intervalo(0));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.pix.reconciliacao.tick-ms:1000}")
+    public void avancar() {
+        List<Long> vencidos = roda.avancarAte(System.currentTimeMillis());
+        for (int inicio = 0; inicio < vencidos.size(); inicio += tamanhoLote) {
+            List<Long> lote = vencidos.subList(inicio, Math.min(inicio + tamanhoLote, vencidos.size()));
+            try {
+                reconciliar(lote);
+            } catch (Exception e) {
+                logger.warning("Erro ao reconciliar lote de pagamentos PIX: " + e.getMessage());
+                lote.forEach(this::reagendar);
+            }
+        }
+    }
+
+    public int getTamanho() {
+        return acompanhados.size();
+    }
+
+    void reconciliar(List<Long> pagamentoIds) {
+        Map<Long, Pagamento> locais = pagamentoRepository.findAllById(pagamentoIds).stream()
+                .collect(Collectors.toMap(Pagamento::getId, Function.identity()));
+
+        // Status final gravado por webhook: encerra sem consultar o Asaas
+        List<Pagamento> emAberto = pagamentoIds.stream()
+                .map(locais::get)
+                .filter(pagamento -> pagamento != null && !PagamentoService.isStatusFinal(pagamento.getStatus()))
+                .toList();
+        pagamentoIds.stream().filter(id -> !emAberto.contains(locais.get(id))).forEach(acompanhados::remove);
+
+        List<Consulta> consultas = Flux.fromIterable(emAberto)
+                .flatMap(pagamento -> asaasService.buscarPagamentoReativo(pagamento.getAsaasPaymentId())
+                        .timeout(timeoutConsulta)
+                        .map(resposta -> new Consulta(pagamento.getId(), resposta))
+                        .onErrorResume(e -> {
+                            logger.warning("Erro ao consultar pagamento PIX " + pagamento.getAsaasPaymentId() + ": " + e.getMessage());
+                            reagendar(pagamento.getId());
+                            return Mono.empty();
+                        }), concorrencia)
+                .collectList()
+                .block();
+
+        Map<Long, StatusPagamento> novosStatus = new HashMap<>();
+        for (Consulta consulta : consultas) {
+            StatusPagamento status = mapearStatus(consulta.resposta().getStatus());
+            if (status != null) {
+                novosStatus.put(consulta.pagamentoId(), status);
+            } else if (expirado(consulta.pagamentoId(), consulta.resposta())) {
+                logger.info("Reconciliação encerrada para pagamento PIX vencido: " + consulta.resposta().getId());
+                acompanhados.remove(consulta.pagamentoId());
+            } else {
+                reagendar(consulta.pagamentoId());
+            }
+        }
+        try {
+            pagamentoService.aplicarStatusReconciliados(novosStatus);
+        } catch (RuntimeException e) {
+            logger.warning("Erro ao gravar status reconciliados de " + novosStatus.size() + " pagamentos PIX, nova consulta depois: " + e.getMessage());
+            novosStatus.keySet().forEach(this::reagendar);
+            return;
+        }
+        // Só deixa de acompanhar depois que o novo status está gravado
+        novosStatus.keySet().forEach(acompanhados::remove);
+    }
+
+    private void reagendar(Long pagamentoId) {
+        Acompanhamento atual = acompanhados.computeIfPresent(pagamentoId,
+                (id, acompanhamento) -> new Acompanhamento(acompanhamento.asaasPaymentId(), acompanhamento.criadoEm(), acompanhamento.consultas() + 1));
+        if (atual != null) {
+            roda.agendar(pagamentoId, intervalo(atual.consultas()));
+        }
+    }
+
+    private Duration intervalo(int consultas) {
+        return Duration.ofSeconds(intervalosSegundos[Math.min(consultas, intervalosSegundos.length - 1)]);
+    }
+
+    private boolean expirado(Long pagamentoId, AsaasPaymentResponseDTO resposta) {
+        Acompanhamento acompanhamento = acompanhados.get(pagamentoId);
+        if (acompanhamento != null && acompanhamento.criadoEm().plus(validade).isBefore(Instant.now())) {
+            return true;
+        }
+        if (resposta.getDueDate() == null) {
+            return false;
+        }
+        try {
+            return LocalDate.now().isAfter(LocalDate.parse(resposta.getDueDate()));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    static StatusPagamento mapearStatus(String asaasStatus) {
+        if ("CONFIRMED".equals(asaasStatus) || "RECEIVED".equals(asaasStatus)) {
+            return StatusPagamento.PAID;
+        }
+        if ("REFUSED".equals(asaasStatus) || "OVERDUE".equals(asaasStatus)) {
+            return StatusPagamento.REFUSED;
+        }
+        return null;
+    }
+
+    private record Acompanhamento(String asaasPaymentId, Instant criadoEm, int consultas) {
+    }
+
+    private record Consulta(Long pagamentoId, AsaasPaymentResponseDTO resposta) {
+    }
+}
@@ -0,0 +1,264 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.ReembolsoLoteResponseDTO;
+import com.siseg.pagamento.event.ReembolsoLoteCriadoEvent;
+import com.siseg.pagamento.exception.PagamentoJaReembolsadoException;
+import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.model.ReembolsoLote;
+import com.siseg.pagamento.model.ReembolsoLoteItem;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLoteItem;
+import com.siseg.pagamento.repository.ReembolsoLoteItemRepository;
+import com.siseg.pagamento.repository.ReembolsoLoteRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Reembolsos em lote, para quando uma loja fecha e todos os pedidos abertos
+ * precisam ser estornados. O lote e um item por pedido são gravados em
+ * reembolsos_lote e reembolsos_lote_itens e a requisição termina com o id do
+ * lote. Os itens rodam no pool reembolsoExecutor, com as chamadas ao Asaas
+ * espaçadas por pagamento.reembolso.lote.chamadas-por-segundo. O progresso
+ * fica no banco item a item: a varredura periódica retoma pendentes, falhas
+ * temporárias com backoff e itens presos por uma instância que caiu. O
+ * estorno não é idempotente, então um item que já teve tentativa só é
+ * reenviado depois de conferir no Asaas que o estorno anterior não foi
+ * aplicado.
+ */
+@Service
+public class ReembolsoLoteService {
+
+    private static final Logger logger = Logger.getLogger(ReembolsoLoteService.class.getName());
+    private static final int TAMANHO_MAX_ERRO = 500;
+    private static final List<StatusReembolsoLoteItem> STATUS_EM_ABERTO =
+            List.of(StatusReembolsoLoteItem.PENDENTE, StatusReembolsoLoteItem.PROCESSANDO);
+
+    private final ReembolsoLoteRepository reembolsoLoteRepository;
+    private final ReembolsoLoteItemRepository reembolsoLoteItemRepository;
+    private final PagamentoService pagamentoService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskExecutor reembolsoExecutor;
+    private final LimitadorTaxa limitador;
+    private final int maxTentativas;
+    private final Duration backoffInicial;
+    private final int tamanhoLote;
+    private final Duration timeoutProcessamento;
+    // Itens já na fila do pool, para a varredura não enfileirá-los de novo
+    private final Set<Long> despachados = ConcurrentHashMap.newKeySet();
+
+    public ReembolsoLoteService(ReembolsoLoteRepository reembolsoLoteRepository,
+                                ReembolsoLoteItemRepository reembolsoLoteItemRepository,
+                                PagamentoService pagamentoService,
+                                ApplicationEventPublisher eventPublisher,
+                                @Qualifier("reembolsoExecutor") TaskExecutor reembolsoExecutor,
+                                @Value("${pagamento.reembolso.lote.chamadas-por-segundo:5}") double chamadasPorSegundo,
+                                @Value("${pagamento.reembolso.lote.max-tentativas:5}") int maxTentativas,
+                                @Value("${pagamento.reembolso.lote.backoff-inicial-ms:5000}") long backoffInicialMs,
+                                @Value("${pagamento.reembolso.lote.tamanho-lote:100}") int tamanhoLote,
+                                @Value("${pagamento.reembolso.lote.timeout-processamento-min:5}") long timeoutProcessamentoMin) {
+        this.reembolsoLoteRepository = reembolsoLoteRepository;
+        this.reembolsoLoteItemRepository = reembolsoLoteItemRepository;
+        this.pagamentoService = pagamentoService;
+        this.eventPublisher = eventPublisher;
+        this.reembolsoExecutor = reembolsoExecutor;
+        this.limitador = new LimitadorTaxa(chamadasPorSegundo);
+        this.maxTentativas = maxTentativas;
+        this.backoffInicial = Duration.ofMillis(backoffInicialMs);
+        this.tamanhoLote = tamanhoLote;
+        this.timeoutProcessamento = Duration.ofMinutes(timeoutProcessamentoMin);
+    }
+
+    @Transactional
+    public ReembolsoLoteResponseDTO criar(List<Long> pedidoIds, String motivo) {
+        Set<Long> unicos = new LinkedHashSet<>(pedidoIds);
+
+        ReembolsoLote lote = new ReembolsoLote();
+        lote.setMotivo(motivo);
+        lote.setTotal(unicos.size());
+        ReembolsoLote salvo = reembolsoLoteRepository.save(lote);
+
+        List<ReembolsoLoteItem> itens = unicos.stream().map(pedidoId -> {
+            ReembolsoLoteItem item = new ReembolsoLoteItem();
+            item.setLoteId(salvo.getId());
+            item.setPedidoId(pedidoId);
+            return item;
+        }).toList();
+        List<ReembolsoLoteItem> salvos = reembolsoLoteItemRepository.saveAll(itens);
+
+        // Os workers só enxergam os itens depois do commit
+        eventPublisher.publishEvent(new ReembolsoLoteCriadoEvent(salvo.getId()));
+        logger.info("Reembolso em lote " + salvo.getId() + " criado com " + unicos.size() + " pedidos");
+        return toResponse(salvo, salvos);
+    }
+
+    @Transactional(readOnly = true)
+    public ReembolsoLoteResponseDTO buscar(Long loteId) {
+        ReembolsoLote lote = reembolsoLoteRepository.findById(loteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reembolso em lote não encontrado: " + loteId));
+        return toResponse(lote, reembolsoLoteItemRepository.findByLoteIdOrderById(loteId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoCriarLote(ReembolsoLoteCriadoEvent evento) {
+        for (ReembolsoLoteItem item : reembolsoLoteItemRepository.findByLoteIdOrderById(evento.loteId())) {
+            if (!despachar(item.getId())) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${pagamento.reembolso.lote.intervalo-ms:5000}")
+    public void despacharPendentes() {
+        reembolsoLoteItemRepository.liberarTravados(StatusReembolsoLoteItem.PROCESSANDO, StatusReembolsoLoteItem.PENDENTE,
+                Instant.now().minus(timeoutProcessamento), "Processamento interrompido sem resultado");
+
+        List<Long> prontos = reembolsoLoteItemRepository.buscarIdsProntos(StatusReembolsoLoteItem.PENDENTE, Instant.now(),
+                PageRequest.of(0, tamanhoLote));
+        for (Long id : prontos) {
+            if (!despachar(id)) {
+                return;
+            }
+        }
+    }
+
+    private boolean despachar(Long id) {
+        if (!despachados.add(id)) {
+            return true;
+        }
+        try {
+            reembolsoExecutor.execute(() -> {
+                try {
+                    processarItem(id);
+                } finally {
+                    despachados.remove(id);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            despachados.remove(id);
+            logger.warning("Pool de reembolsos cheio, item " + id + " fica para a próxima varredura");
+            return false;
+        }
+    }
+
+    void processarItem(Long id) {
+        if (reembolsoLoteItemRepository.reservar(id, StatusReembolsoLoteItem.PENDENTE, StatusReembolsoLoteItem.PROCESSANDO, Instant.now()) == 0) {
+            return;
+        }
+        ReembolsoLoteItem item = reembolsoLoteItemRepository.findById(id).orElse(null);
+        if (item == null) {
+            return;
+        }
+        String motivo = reembolsoLoteRepository.findById(item.getLoteId()).map(ReembolsoLote::getMotivo).orElse(null);
+
+        try {
+            limitador.aguardar();
+            // A tentativa anterior pode ter estornado no Asaas sem que a resposta chegasse
+            if (item.getTentativas() == 0 || !pagamentoService.concluirSeJaEstornado(item.getPedidoId())) {
+                pagamentoService.processarReembolso(item.getPedidoId(), motivo);
+            }
+            reembolsoLoteItemRepository.concluir(id, StatusReembolsoLoteItem.REEMBOLSADO, null, Instant.now());
+        } catch (PagamentoJaReembolsadoException e) {
+            reembolsoLoteItemRepository.concluir(id, StatusReembolsoLoteItem.JA_REEMBOLSADO, null, Instant.now());
+        } catch (InterruptedException e) {
+            // Aplicação encerrando: o item volta para a fila sem gastar tentativa
+            Thread.currentThread().interrupt();
+            reembolsoLoteItemRepository.registrarFalha(id, StatusReembolsoLoteItem.PENDENTE, item.getTentativas(),
+                    Instant.now(), "Interrompido antes do estorno");
+            return;
+        } catch (Exception e) {
+            registrarFalha(item, e);
+        }
+        verificarConclusao(item.getLoteId());
+    }
+
+    private void registrarFalha(ReembolsoLoteItem item, Exception e) {
+        int tentativas = item.getTentativas() + 1;
+        String erro = resumirErro(e);
+
+        if (!isFalhaTemporaria(e) || tentativas >= maxTentativas) {
+            logger.warning("Reembolso do pedido " + item.getPedidoId() + " (lote " + item.getLoteId() + ") falhou após "
+                    + tentativas + " tentativa(s): " + erro);
+            reembolsoLoteItemRepository.registrarFalha(item.getId(), StatusReembolsoLoteItem.FALHOU, tentativas,
+                    item.getProximaTentativaEm(), erro);
+            return;
+        }
+
+        Instant proximaTentativa = Instant.now().plus(backoffInicial.multipliedBy(1L << Math.min(tentativas - 1, 20)));
+        logger.warning("Erro ao reembolsar pedido " + item.getPedidoId() + " (tentativa " + tentativas + "/" + maxTentativas
+                + "), nova tentativa em " + proximaTentativa + ": " + erro);
+        reembolsoLoteItemRepository.registrarFalha(item.getId(), StatusReembolsoLoteItem.PENDENTE, tentativas, proximaTentativa, erro);
+    }
+
+    private void verificarConclusao(Long loteId) {
+        if (reembolsoLoteItemRepository.contarPorStatus(loteId, STATUS_EM_ABERTO) == 0
+                && reembolsoLoteRepository.concluir(loteId, StatusReembolsoLote.EM_ANDAMENTO, StatusReembolsoLote.CONCLUIDO, Instant.now()) > 0) {
+            logger.info("Reembolso em lote " + loteId + " concluído");
+        }
+    }
+
+    /**
+     * Pedido inexistente, pagamento em status que não permite estorno e
+     * recusas do Asaas (HTTP 4xx) não mudam com nova tentativa.
+     */
+    static boolean isFalhaTemporaria(Throwable erro) {
+        if (erro instanceof ResourceNotFoundException || erro instanceof IllegalStateException || erro instanceof IllegalArgumentException) {
+            return false;
+        }
+        for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+            if (causa instanceof WebClientResponseException responseException) {
+                return !responseException.getStatusCode().is4xxClientError();
+            }
+        }
+        return true;
+    }
+
+    private ReembolsoLoteResponseDTO toResponse(ReembolsoLote lote, List<ReembolsoLoteItem> itens) {
+        ReembolsoLoteResponseDTO response = new ReembolsoLoteResponseDTO();
+        response.setId(lote.getId());
+        response.setStatus(lote.getStatus());
+        response.setMotivo(lote.getMotivo());
+        response.setTotal(lote.getTotal());
+        response.setCriadoEm(lote.getCriadoEm());
+        response.setConcluidoEm(lote.getConcluidoEm());
+
+        for (ReembolsoLoteItem item : itens) {
+            switch (item.getStatus()) {
+                case PENDENTE, PROCESSANDO -> response.setPendentes(response.getPendentes() + 1);
+                case REEMBOLSADO -> response.setReembolsados(response.getReembolsados() + 1);
+                case JA_REEMBOLSADO -> response.setJaReembolsados(response.getJaReembolsados() + 1);
+                case FALHOU -> response.setFalhas(response.getFalhas() + 1);
+            }
+
+            ReembolsoLoteResponseDTO.ItemDTO itemDTO = new ReembolsoLoteResponseDTO.ItemDTO();
+            itemDTO.setPedidoId(item.getPedidoId());
+            itemDTO.setStatus(item.getStatus());
+            itemDTO.setTentativas(item.getTentativas());
+            itemDTO.setErro(item.getUltimoErro());
+            response.getItens().add(itemDTO);
+        }
+        return response;
+    }
+
+    private String resumirErro(Throwable erro) {
+        String mensagem = erro.getClass().getSimpleName() + ": " + erro.getMessage();
+        return mensagem.length() > TAMANHO_MAX_ERRO ? mensagem.substring(0, TAMANHO_MAX_ERRO) : mensagem;
+    }
+}
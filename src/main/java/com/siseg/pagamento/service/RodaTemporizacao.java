@@ -0,0 +1,68 @@
+package com.siseg.pagamento.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Roda de temporização com hash (hashed timing wheel). Cada item cai no slot
+ * do tick em que vence; agendar e vencer custam O(1) por item, sem fila
+ * ordenada. Itens com atraso maior que uma volta ficam no mesmo slot e só
+ * vencem quando o tick alvo chega.
+ */
+final class RodaTemporizacao<T> {
+
+    private final List<List<Entrada<T>>> slots;
+    private final long duracaoTickMs;
+    private final long inicioMs;
+    private long tickAtual;
+    private int tamanho;
+
+    RodaTemporizacao(int numSlots, Duration duracaoTick, long inicioMs) {
+        this.slots = new ArrayList<>(numSlots);
+        for (int i = 0; i < numSlots; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.duracaoTickMs = duracaoTick.toMillis();
+        this.inicioMs = inicioMs;
+    }
+
+    synchronized void agendar(T item, Duration atraso) {
+        long ticks = Math.max(1, (atraso.toMillis() + duracaoTickMs - 1) / duracaoTickMs);
+        long tickAlvo = tickAtual + ticks;
+        slots.get((int) (tickAlvo % slots.size())).add(new Entrada<>(item, tickAlvo));
+        tamanho++;
+    }
+
+    /**
+     * Avança a roda até o instante informado, percorrendo todos os ticks
+     * perdidos se o agendador atrasou, e devolve os itens vencidos.
+     */
+    synchronized List<T> avancarAte(long agoraMs) {
+        long tickAlvo = (agoraMs - inicioMs) / duracaoTickMs;
+        List<T> vencidos = new ArrayList<>();
+        // Mais de uma volta de atraso: basta percorrer cada slot uma vez
+        long primeiro = Math.max(tickAtual + 1, tickAlvo - slots.size() + 1);
+        for (long tick = primeiro; tick <= tickAlvo; tick++) {
+            Iterator<Entrada<T>> iterator = slots.get((int) (tick % slots.size())).iterator();
+            while (iterator.hasNext()) {
+                Entrada<T> entrada = iterator.next();
+                if (entrada.tickAlvo() <= tickAlvo) {
+                    vencidos.add(entrada.item());
+                    iterator.remove();
+                    tamanho--;
+                }
+            }
+        }
+        tickAtual = Math.max(tickAtual, tickAlvo);
+        return vencidos;
+    }
+
+    synchronized int tamanho() {
+        return tamanho;
+    }
+
+    private record Entrada<T>(T item, long tickAlvo) {
+    }
+}
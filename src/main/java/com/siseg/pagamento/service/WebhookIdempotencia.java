@@ -0,0 +1,179 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.exception.WebhookDuplicadoException;
+import com.siseg.pagamento.repository.WebhookEventoProcessadoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Deduplicação de webhooks do Asaas. A garantia vem da tabela
+ * webhook_eventos_processados: a chave é inserida na mesma transação que
+ * aplica o evento, e a PK faz a segunda instância a processar o mesmo evento
+ * falhar e desfazer tudo. Na frente do banco ficam um LRU das chaves já vistas
+ * (duplicata rejeitada sem consulta) e um filtro de Bloom (evento novo segue
+ * sem consulta de existência). Memória perdida ou desatualizada só custa
+ * consultas a mais, nunca processamento duplicado.
+ *
+ * <p>O contador pagamento.webhook.idempotencia.consultas separa as consultas
+ * por quem respondeu: memoria (duplicata no LRU), bloom (evento novo sem ir ao
+ * banco) e banco (duplicata encontrada na tabela).
+ */
+@Component
+public class WebhookIdempotencia {
+
+    private static final Logger logger = Logger.getLogger(WebhookIdempotencia.class.getName());
+
+    private final WebhookEventoProcessadoRepository webhookEventoProcessadoRepository;
+    private final int maxEntradas;
+    private final long capacidadeBloom;
+    private final double taxaFalsoPositivo;
+    private final Duration retencao;
+    private final Map<String, Boolean> recentes;
+    private volatile FiltroBloom filtro;
+
+    private final AtomicLong acertosMemoria = new AtomicLong();
+    private final AtomicLong acertosBanco = new AtomicLong();
+    private final AtomicLong negativosBloom = new AtomicLong();
+
+    public WebhookIdempotencia(WebhookEventoProcessadoRepository webhookEventoProcessadoRepository,
+                               @Value("${asaas.webhook.idempotencia.max-entradas:100000}") int maxEntradas,
+                               @Value("${asaas.webhook.idempotencia.bloom.capacidade:1000000}") long capacidadeBloom,
+                               @Value("${asaas.webhook.idempotencia.bloom.taxa-falso-positivo:0.01}") double taxaFalsoPositivo,
+                               @Value("${asaas.webhook.idempotencia.retencao-dias:30}") long retencaoDias) {
+        this.webhookEventoProcessadoRepository = webhookEventoProcessadoRepository;
+        this.maxEntradas = maxEntradas;
+        this.capacidadeBloom = capacidadeBloom;
+        this.taxaFalsoPositivo = taxaFalsoPositivo;
+        this.retencao = Duration.ofDays(retencaoDias);
+        this.filtro = new FiltroBloom(capacidadeBloom, taxaFalsoPositivo);
+        this.recentes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > WebhookIdempotencia.this.maxEntradas;
+            }
+        };
+
+        MeterRegistry registry = Metrics.globalRegistry;
+        FunctionCounter.builder("pagamento.webhook.idempotencia.consultas", acertosMemoria, AtomicLong::get).tag("resultado", "memoria").register(registry);
+        FunctionCounter.builder("pagamento.webhook.idempotencia.consultas", negativosBloom, AtomicLong::get).tag("resultado", "bloom").register(registry);
+        FunctionCounter.builder("pagamento.webhook.idempotencia.consultas", acertosBanco, AtomicLong::get).tag("resultado", "banco").register(registry);
+    }
+
+    /**
+     * Caminho rápido, fora de transação. Um falso "não processado" é seguro:
+     * {@link #registrar} rejeita a duplicata na transação do processamento.
+     */
+    public boolean jaProcessado(String chave) {
+        if (estaNaMemoria(chave)) {
+            acertosMemoria.incrementAndGet();
+            return true;
+        }
+        if (!filtro.talvezContenha(chave)) {
+            negativosBloom.incrementAndGet();
+            return false;
+        }
+
+        try {
+            boolean existe = webhookEventoProcessadoRepository.existsById(chave);
+            if (existe) {
+                acertosBanco.incrementAndGet();
+                guardarNaMemoria(chave);
+            }
+            return existe;
+        } catch (Exception e) {
+            logger.warning("Erro ao consultar webhooks processados: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Grava a chave na transação corrente. Lança
+     * {@link WebhookDuplicadoException} se o evento já foi processado, o que
+     * desfaz a transação do processamento.
+     */
+    public void registrar(String chave) {
+        try {
+            webhookEventoProcessadoRepository.inserir(chave, Instant.now());
+        } catch (DataIntegrityViolationException e) {
+            lembrar(chave);
+            throw new WebhookDuplicadoException("Webhook já processado: " + chave);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lembrar(chave);
+                }
+            });
+        } else {
+            lembrar(chave);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${asaas.webhook.idempotencia.intervalo-limpeza-ms:3600000}")
+    public void removerAntigos() {
+        int removidos = webhookEventoProcessadoRepository.removerAntesDe(Instant.now().minus(retencao));
+        if (removidos > 0) {
+            logger.info("Chaves de webhooks processados removidas: " + removidos);
+        }
+    }
+
+    public long getAcertosMemoria() {
+        return acertosMemoria.get();
+    }
+
+    public long getAcertosBanco() {
+        return acertosBanco.get();
+    }
+
+    public long getNegativosBloom() {
+        return negativosBloom.get();
+    }
+
+    static String gerarChave(AsaasWebhookDTO webhook) {
+        if (webhook.getId() != null && !webhook.getId().isBlank()) {
+            return "id:" + webhook.getId();
+        }
+        AsaasWebhookDTO.PaymentData payment = webhook.getPayment();
+        return "evento:" + webhook.getEvent()
+                + ":" + (payment != null ? payment.getId() : null)
+                + ":" + (payment != null ? payment.getStatus() : null);
+    }
+
+    private void lembrar(String chave) {
+        guardarNaMemoria(chave);
+        if (filtro.saturado()) {
+            // Recomeçar o filtro só gera falsos negativos, que a PK da tabela cobre
+            filtro = new FiltroBloom(capacidadeBloom, taxaFalsoPositivo);
+        }
+        filtro.adicionar(chave);
+    }
+
+    private boolean estaNaMemoria(String chave) {
+        synchronized (recentes) {
+            return recentes.get(chave) != null;
+        }
+    }
+
+    private void guardarNaMemoria(String chave) {
+        synchronized (recentes) {
+            recentes.put(chave, Boolean.TRUE);
+        }
+    }
+}
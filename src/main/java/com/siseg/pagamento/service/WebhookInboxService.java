@@ -0,0 +1,232 @@
+package com.siseg.pagamento.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.exception.WebhookDuplicadoException;
+import com.siseg.pagamento.model.WebhookEvento;
+import com.siseg.pagamento.model.enumerations.StatusWebhookEvento;
+import com.siseg.pagamento.repository.WebhookEventoRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Inbox dos webhooks do Asaas. Com asaas.webhook.inbox.habilitado=true (padrão)
+ * o webhook é gravado em webhook_eventos e a requisição termina; o
+ * processamento roda no pool webhookExecutor. Eventos que falham voltam para a
+ * fila com backoff e, esgotadas as tentativas, ficam como DESCARTADO. Com o
+ * inbox desabilitado o webhook é processado na própria requisição.
+ *
+ * <p>O histograma pagamento.webhook.processamento mede o processamento de
+ * cada webhook por resultado; pagamento.webhook.atraso mede do recebimento
+ * até o evento ficar PROCESSADO, incluindo fila e novas tentativas. Cada
+ * processamento é também a observação asaas.webhook, com o id da cobrança no
+ * Asaas; o {@link AsaasWebhookService} acrescenta o pedido e o trace da
+ * criação do pagamento.
+ */
+@Service
+public class WebhookInboxService {
+
+    private static final Logger logger = Logger.getLogger(WebhookInboxService.class.getName());
+    private static final int TAMANHO_MAX_ERRO = 500;
+
+    private final WebhookEventoRepository webhookEventoRepository;
+    private final AsaasWebhookService asaasWebhookService;
+    private final WebhookIdempotencia webhookIdempotencia;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor webhookExecutor;
+    private final ObservationRegistry observationRegistry;
+    private final boolean habilitado;
+    private final int maxTentativas;
+    private final Duration backoffInicial;
+    private final int tamanhoLote;
+    private final Duration timeoutProcessamento;
+    // Eventos já na fila do pool, para a varredura não enfileirá-los de novo
+    private final Set<Long> despachados = ConcurrentHashMap.newKeySet();
+
+    public WebhookInboxService(WebhookEventoRepository webhookEventoRepository,
+                               AsaasWebhookService asaasWebhookService,
+                               WebhookIdempotencia webhookIdempotencia,
+                               ObjectMapper objectMapper,
+                               @Qualifier("webhookExecutor") TaskExecutor webhookExecutor,
+                               ObservationRegistry observationRegistry,
+                               @Value("${asaas.webhook.inbox.habilitado:true}") boolean habilitado,
+                               @Value("${asaas.webhook.inbox.max-tentativas:5}") int maxTentativas,
+                               @Value("${asaas.webhook.inbox.backoff-inicial-ms:2000}") long backoffInicialMs,
+                               @Value("${asaas.webhook.inbox.tamanho-lote:100}") int tamanhoLote,
+                               @Value("${asaas.webhook.inbox.timeout-processamento-min:5}") long timeoutProcessamentoMin) {
+        this.webhookEventoRepository = webhookEventoRepository;
+        this.asaasWebhookService = asaasWebhookService;
+        this.webhookIdempotencia = webhookIdempotencia;
+        this.objectMapper = objectMapper;
+        this.webhookExecutor = webhookExecutor;
+        this.observationRegistry = observationRegistry;
+        this.habilitado = habilitado;
+        this.maxTentativas = maxTentativas;
+        this.backoffInicial = Duration.ofMillis(backoffInicialMs);
+        this.tamanhoLote = tamanhoLote;
+        this.timeoutProcessamento = Duration.ofMinutes(timeoutProcessamentoMin);
+    }
+
+    public void receber(AsaasWebhookDTO webhook) {
+        // Redeliveries já vistas são descartadas aqui, sem gravar no inbox
+        String chave = WebhookIdempotencia.gerarChave(webhook);
+        if (webhookIdempotencia.jaProcessado(chave)) {
+            logger.fine("Webhook duplicado ignorado: " + chave);
+            return;
+        }
+        if (!habilitado) {
+            processarIgnorandoDuplicado(webhook);
+            return;
+        }
+
+        WebhookEvento evento = new WebhookEvento();
+        evento.setEvento(webhook.getEvent());
+        evento.setAsaasPaymentId(webhook.getPayment() != null ? webhook.getPayment().getId() : null);
+        evento.setPayload(serializar(webhook));
+        WebhookEvento salvo = webhookEventoRepository.save(evento);
+
+        despachar(salvo.getId());
+    }
+
+    /**
+     * Pega os eventos que não foram despachados na chegada (fila do pool cheia,
+     * reinício da aplicação) e os que estão aguardando nova tentativa.
+     */
+    @Scheduled(fixedDelayString = "${asaas.webhook.inbox.intervalo-ms:2000}")
+    public void despacharPendentes() {
+        if (!habilitado) {
+            return;
+        }
+        webhookEventoRepository.liberarTravados(StatusWebhookEvento.PROCESSANDO, StatusWebhookEvento.RECEBIDO,
+                Instant.now().minus(timeoutProcessamento));
+
+        List<Long> prontos = webhookEventoRepository.buscarIdsProntos(StatusWebhookEvento.RECEBIDO, Instant.now(),
+                PageRequest.of(0, tamanhoLote));
+        for (Long id : prontos) {
+            if (!despachar(id)) {
+                return;
+            }
+        }
+    }
+
+    private boolean despachar(Long id) {
+        if (!despachados.add(id)) {
+            return true;
+        }
+        try {
+            webhookExecutor.execute(() -> {
+                try {
+                    processar(id);
+                } finally {
+                    despachados.remove(id);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            despachados.remove(id);
+            logger.warning("Pool de webhooks cheio, evento " + id + " fica para a próxima varredura");
+            return false;
+        }
+    }
+
+    void processar(Long id) {
+        if (webhookEventoRepository.reservar(id, StatusWebhookEvento.RECEBIDO, StatusWebhookEvento.PROCESSANDO, Instant.now()) == 0) {
+            return;
+        }
+        WebhookEvento evento = webhookEventoRepository.findById(id).orElse(null);
+        if (evento == null) {
+            return;
+        }
+
+        try {
+            AsaasWebhookDTO webhook = objectMapper.readValue(evento.getPayload(), AsaasWebhookDTO.class);
+            if (!webhookIdempotencia.jaProcessado(WebhookIdempotencia.gerarChave(webhook))) {
+                processarIgnorandoDuplicado(webhook);
+            }
+            Instant processadoEm = Instant.now();
+            webhookEventoRepository.marcarProcessado(id, StatusWebhookEvento.PROCESSADO, processadoEm);
+            Timer.builder("pagamento.webhook.atraso")
+                    .description("Tempo do recebimento do webhook até o fim do processamento")
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry)
+                    .record(Duration.between(evento.getRecebidoEm(), processadoEm));
+        } catch (Exception e) {
+            registrarFalha(evento, e);
+        }
+    }
+
+    private void processarIgnorandoDuplicado(AsaasWebhookDTO webhook) {
+        Timer.Sample amostra = Timer.start();
+        String resultado = "processado";
+        try {
+            Observation.createNotStarted("asaas.webhook", observationRegistry)
+                    .contextualName("webhook " + String.valueOf(webhook.getEvent()).toLowerCase(Locale.ROOT))
+                    .lowCardinalityKeyValue("evento", String.valueOf(webhook.getEvent()))
+                    .highCardinalityKeyValue("asaas.payment_id",
+                            webhook.getPayment() != null ? String.valueOf(webhook.getPayment().getId()) : "")
+                    .observe(() -> asaasWebhookService.processarWebhook(webhook));
+        } catch (WebhookDuplicadoException e) {
+            // Outra instância processou o mesmo evento primeiro
+            resultado = "duplicado";
+            logger.fine(e.getMessage());
+        } catch (RuntimeException e) {
+            resultado = "erro";
+            throw e;
+        } finally {
+            amostra.stop(Timer.builder("pagamento.webhook.processamento")
+                    .description("Duração do processamento de webhooks do Asaas")
+                    .tag("resultado", resultado)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry));
+        }
+    }
+
+    private void registrarFalha(WebhookEvento evento, Exception e) {
+        int tentativas = evento.getTentativas() + 1;
+        String erro = resumirErro(e);
+
+        if (tentativas >= maxTentativas) {
+            logger.severe("Webhook " + evento.getId() + " (" + evento.getEvento() + ", " + evento.getAsaasPaymentId()
+                    + ") descartado após " + tentativas + " tentativas: " + erro);
+            webhookEventoRepository.registrarFalha(evento.getId(), StatusWebhookEvento.DESCARTADO, tentativas,
+                    evento.getProximaTentativaEm(), erro);
+            return;
+        }
+
+        Instant proximaTentativa = Instant.now().plus(backoffInicial.multipliedBy(1L << Math.min(tentativas - 1, 20)));
+        logger.warning("Erro ao processar webhook " + evento.getId() + " (tentativa " + tentativas + "/" + maxTentativas
+                + "), nova tentativa em " + proximaTentativa + ": " + erro);
+        webhookEventoRepository.registrarFalha(evento.getId(), StatusWebhookEvento.RECEBIDO, tentativas, proximaTentativa, erro);
+    }
+
+    private String serializar(AsaasWebhookDTO webhook) {
+        try {
+            return objectMapper.writeValueAsString(webhook);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Webhook inválido: " + e.getMessage(), e);
+        }
+    }
+
+    private String resumirErro(Throwable erro) {
+        String mensagem = erro.getClass().getSimpleName() + ": " + erro.getMessage();
+        return mensagem.length() > TAMANHO_MAX_ERRO ? mensagem.substring(0, TAMANHO_MAX_ERRO) : mensagem;
+    }
+}
@@ -0,0 +1,7 @@
+-- Migração V2: Cache persistente de clientes do Asaas
+CREATE TABLE asaas_clientes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    chave VARCHAR(255) NOT NULL UNIQUE,
+    asaas_customer_id VARCHAR(100) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
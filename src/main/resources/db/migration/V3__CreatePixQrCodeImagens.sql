@@ -0,0 +1,17 @@
+-- Migração V3: Imagens de QR Code PIX fora da tabela de pagamentos
+CREATE TABLE pix_qrcode_imagens (
+    pagamento_id BIGINT PRIMARY KEY,
+    imagem MEDIUMBLOB NOT NULL,
+    etag VARCHAR(64) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_pix_qrcode_imagens_pagamento FOREIGN KEY (pagamento_id) REFERENCES pagamentos(id)
+);
+
+INSERT INTO pix_qrcode_imagens (pagamento_id, imagem, etag)
+SELECT id,
+       FROM_BASE64(REPLACE(qr_code_image_url, 'data:image/png;base64,', '')),
+       SHA2(FROM_BASE64(REPLACE(qr_code_image_url, 'data:image/png;base64,', '')), 256)
+FROM pagamentos
+WHERE qr_code_image_url IS NOT NULL;
+
+ALTER TABLE pagamentos DROP COLUMN qr_code_image_url;
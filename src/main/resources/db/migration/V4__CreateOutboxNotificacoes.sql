@@ -0,0 +1,16 @@
+-- Migração V4: Outbox de notificações ao serviço de pedidos
+CREATE TABLE outbox_notificacoes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    pedido_id BIGINT NOT NULL,
+    asaas_payment_id VARCHAR(100),
+    tipo VARCHAR(40) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    enviado_em TIMESTAMP
+);
+
+CREATE INDEX idx_outbox_notificacoes_status ON outbox_notificacoes(status, id);
+CREATE INDEX idx_outbox_notificacoes_pedido ON outbox_notificacoes(pedido_id, status);
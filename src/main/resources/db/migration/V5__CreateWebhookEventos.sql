@@ -0,0 +1,17 @@
+-- Migração V5: Inbox de webhooks do Asaas
+CREATE TABLE webhook_eventos (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    evento VARCHAR(50),
+    asaas_payment_id VARCHAR(100),
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RECEBIDO',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    recebido_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    iniciado_em TIMESTAMP NULL,
+    processado_em TIMESTAMP NULL
+);
+
+CREATE INDEX idx_webhook_eventos_status ON webhook_eventos(status, proxima_tentativa_em);
+CREATE INDEX idx_webhook_eventos_asaas_id ON webhook_eventos(asaas_payment_id);
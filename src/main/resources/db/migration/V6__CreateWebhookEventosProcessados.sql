@@ -0,0 +1,7 @@
+-- Migração V6: Chaves de webhooks já processados (idempotência entre instâncias)
+CREATE TABLE webhook_eventos_processados (
+    chave VARCHAR(255) PRIMARY KEY,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_webhook_eventos_processados_criado ON webhook_eventos_processados(criado_em);
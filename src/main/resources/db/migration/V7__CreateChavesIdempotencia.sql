@@ -0,0 +1,11 @@
+-- Migração V7: Idempotency-Key de POST /api/pagamentos
+CREATE TABLE chaves_idempotencia (
+    chave VARCHAR(255) PRIMARY KEY,
+    impressao_digital VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resposta TEXT,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    concluido_em TIMESTAMP NULL
+);
+
+CREATE INDEX idx_chaves_idempotencia_status ON chaves_idempotencia(status, criado_em);
@@ -0,0 +1,25 @@
+-- Migração V8: Reembolsos em lote com progresso por pedido
+CREATE TABLE reembolsos_lote (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    motivo VARCHAR(500),
+    status VARCHAR(20) NOT NULL DEFAULT 'EM_ANDAMENTO',
+    total INT NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    concluido_em TIMESTAMP NULL
+);
+
+CREATE TABLE reembolsos_lote_itens (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    lote_id BIGINT NOT NULL,
+    pedido_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    iniciado_em TIMESTAMP NULL,
+    concluido_em TIMESTAMP NULL,
+    CONSTRAINT fk_reembolsos_lote_itens_lote FOREIGN KEY (lote_id) REFERENCES reembolsos_lote(id),
+    CONSTRAINT uk_reembolsos_lote_itens_pedido UNIQUE (lote_id, pedido_id)
+);
+
+CREATE INDEX idx_reembolsos_lote_itens_status ON reembolsos_lote_itens(status, proxima_tentativa_em);
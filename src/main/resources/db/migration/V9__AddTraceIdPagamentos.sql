@@ -0,0 +1,2 @@
+-- Migração V9: Trace de origem do pagamento, para correlacionar webhooks com a criação
+ALTER TABLE pagamentos ADD COLUMN trace_id VARCHAR(32);
@@ -0,0 +1,78 @@
+package com.siseg.pagamento.benchmark;
+
+import com.siseg.pagamento.dto.AsaasCustomerRequestDTO;
+import com.siseg.pagamento.dto.AsaasPaymentRequestDTO;
+import com.siseg.pagamento.dto.CartaoCreditoRequestDTO;
+import com.siseg.pagamento.dto.ClienteInfoDTO;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Montagem das requisições ao Asaas no {@link PagamentoMapper}: data de
+ * vencimento formatada, normalização de CEP e telefone com replaceAll e os
+ * dados do cartão.
+ *
+ * <p>Execução: {@code mvn -P jmh test -Djmh.args="MapeamentoAsaas -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeamentoAsaasBenchmark {
+
+    private PagamentoMapper pagamentoMapper;
+    private ClienteInfoDTO cliente;
+    private CartaoCreditoRequestDTO cartao;
+    private BigDecimal valor;
+
+    @Setup
+    public void setUp() {
+        pagamentoMapper = new PagamentoMapper();
+        valor = new BigDecimal("89.90");
+
+        cliente = new ClienteInfoDTO();
+        cliente.setNome("Cliente Teste");
+        cliente.setEmail("cliente@teste.com");
+        cliente.setTelefone("(11) 99999-9999");
+        cliente.setCpfCnpj("123.456.789-00");
+        cliente.setCep("01310-100");
+        cliente.setAddressNumber("1000");
+
+        cartao = new CartaoCreditoRequestDTO();
+        cartao.setNomeTitular("CLIENTE TESTE");
+        cartao.setNumero("4111111111111111");
+        cartao.setValidade("12/30");
+        cartao.setCvv("123");
+    }
+
+    @Benchmark
+    public AsaasPaymentRequestDTO requisicaoPix() {
+        return pagamentoMapper.toAsaasPaymentRequest(1001L, valor, null, "cus_123456", null, null, null, null);
+    }
+
+    @Benchmark
+    public AsaasPaymentRequestDTO requisicaoCartao() {
+        return pagamentoMapper.toAsaasPaymentRequest(1001L, valor, MetodoPagamento.CREDIT_CARD, "cus_123456",
+                cartao, cliente, "12345678900", "10.0.0.1");
+    }
+
+    @Benchmark
+    public AsaasCustomerRequestDTO requisicaoCliente() {
+        return pagamentoMapper.toAsaasCustomerRequest(cliente, "12345678900");
+    }
+}
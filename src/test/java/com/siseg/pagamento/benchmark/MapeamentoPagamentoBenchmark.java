@@ -0,0 +1,70 @@
+package com.siseg.pagamento.benchmark;
+
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pagamento → PagamentoResponseDTO: ModelMapper (reflexão, como era no
+ * PagamentoService) contra o mapeamento manual do {@link PagamentoMapper}.
+ *
+ * <p>Execução: {@code mvn -P jmh test -Djmh.args="MapeamentoPagamento -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeamentoPagamentoBenchmark {
+
+    private ModelMapper modelMapper;
+    private PagamentoMapper pagamentoMapper;
+    private Pagamento pagamento;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        pagamentoMapper = new PagamentoMapper();
+
+        pagamento = new Pagamento();
+        pagamento.setId(42L);
+        pagamento.setPedidoId(1001L);
+        pagamento.setMetodo(MetodoPagamento.PIX);
+        pagamento.setStatus(StatusPagamento.PAID);
+        pagamento.setValor(new BigDecimal("89.90"));
+        pagamento.setQrCode("00020126580014br.gov.bcb.pix0136chave-pix-de-teste");
+        pagamento.setAsaasPaymentId("pay_123456");
+        pagamento.setAsaasCustomerId("cus_123456");
+        pagamento.setAtualizadoEm(Instant.now());
+    }
+
+    @Benchmark
+    public PagamentoResponseDTO modelMapper() {
+        PagamentoResponseDTO response = modelMapper.map(pagamento, PagamentoResponseDTO.class);
+        response.setPedidoId(pagamento.getPedidoId());
+        return response;
+    }
+
+    @Benchmark
+    public PagamentoResponseDTO mapeamentoManual() {
+        return pagamentoMapper.toPagamentoResponse(pagamento);
+    }
+}
@@ -0,0 +1,96 @@
+package com.siseg.pagamento.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siseg.pagamento.dto.AsaasPaymentRequestDTO;
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson nos DTOs que passam pela aplicação: webhook do Asaas (lido na
+ * chegada e gravado/relido pelo inbox), requisição de cobrança enviada ao
+ * Asaas e resposta da API de pagamentos. O ObjectMapper sai do
+ * Jackson2ObjectMapperBuilder, a mesma base que o Spring Boot usa.
+ *
+ * <p>Execução: {@code mvn -P jmh test -Djmh.args="SerializacaoJson -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializacaoJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private String webhookJson;
+    private AsaasWebhookDTO webhook;
+    private AsaasPaymentRequestDTO requisicaoCobranca;
+    private PagamentoResponseDTO resposta;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        webhookJson = """
+                {"id":"evt_05b708f961d739ea7eba7e4db318f621&368604920","event":"PAYMENT_RECEIVED",
+                 "dateCreated":"2024-06-12 16:45:03",
+                 "payment":{"object":"payment","id":"pay_080225913252","customer":"cus_G7Dvo4iphUNk",
+                 "value":89.90,"netValue":88.91,"billingType":"PIX","status":"RECEIVED",
+                 "dueDate":"2024-06-13","externalReference":"1001","deleted":false}}
+                """;
+        webhook = objectMapper.readValue(webhookJson, AsaasWebhookDTO.class);
+
+        requisicaoCobranca = new PagamentoMapper().toAsaasPaymentRequest(1001L, new BigDecimal("89.90"),
+                MetodoPagamento.PIX, "cus_123456", null, null, null, null);
+
+        resposta = new PagamentoResponseDTO();
+        resposta.setId(42L);
+        resposta.setPedidoId(1001L);
+        resposta.setMetodo(MetodoPagamento.PIX);
+        resposta.setStatus(StatusPagamento.PAID);
+        resposta.setValor(new BigDecimal("89.90"));
+        resposta.setQrCode("00020126580014br.gov.bcb.pix0136chave-pix-de-teste");
+        resposta.setQrCodeImageUrl("/api/pagamentos/pedidos/1001/qrcode");
+        resposta.setCriadoEm(Instant.parse("2024-06-12T16:40:00Z"));
+        resposta.setAtualizadoEm(Instant.parse("2024-06-12T16:45:03Z"));
+    }
+
+    @Benchmark
+    public AsaasWebhookDTO lerWebhook() throws JsonProcessingException {
+        return objectMapper.readValue(webhookJson, AsaasWebhookDTO.class);
+    }
+
+    @Benchmark
+    public String gravarWebhook() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(webhook);
+    }
+
+    @Benchmark
+    public byte[] gravarRequisicaoCobranca() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(requisicaoCobranca);
+    }
+
+    @Benchmark
+    public byte[] gravarRespostaPagamento() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resposta);
+    }
+}
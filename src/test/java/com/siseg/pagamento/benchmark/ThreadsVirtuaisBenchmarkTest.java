@@ -0,0 +1,116 @@
+package com.siseg.pagamento.benchmark;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.service.AsaasClienteCache;
+import com.siseg.pagamento.service.AsaasService;
+import com.siseg.pagamento.service.PoliticaLeituraAsaas;
+import com.siseg.pagamento.service.ProtecaoAsaas;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compara threads de plataforma (pool do tamanho padrão do Tomcat) com threads
+ * virtuais executando chamadas bloqueantes ao Asaas contra um stub com
+ * latência injetada. O número de chamadas fica abaixo do limite padrão do pool
+ * do Reactor Netty (500 conexões + 1000 na fila de espera).
+ *
+ * <p>Execução: {@code mvn test -Dgroups=benchmark -DexcludedGroups=none}
+ */
+@Tag("benchmark")
+class ThreadsVirtuaisBenchmarkTest {
+
+    private static final int LATENCIA_MS = 200;
+    private static final int CHAMADAS = 1_000;
+    private static final int THREADS_TOMCAT = 200;
+
+    static {
+        // O HttpServer do JDK fecha conexões ociosas acima de 200 por padrão
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(CHAMADAS));
+    }
+
+    private HttpServer asaasStub;
+    private AsaasService asaasService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        asaasStub = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        asaasStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        asaasStub.createContext("/payments", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] corpo = "{\"id\":\"pay_123456\",\"status\":\"PENDING\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, corpo.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(corpo);
+            }
+        });
+        asaasStub.start();
+
+        String baseUrl = "http://localhost:" + asaasStub.getAddress().getPort();
+        asaasService = new AsaasService(WebClient.create(baseUrl), new PagamentoMapper(), mock(AsaasClienteCache.class),
+                new ProtecaoAsaas(20, 10, 50, 30000, 3, 10_000, 10_000, 10_000, 10_000),
+                new PoliticaLeituraAsaas(0, 100, 2000, 0.5, false, 95, 50, 20), ObservationRegistry.NOOP);
+        // Aquecimento do pool de conexões e do JIT
+        executar(Executors.newFixedThreadPool(THREADS_TOMCAT), THREADS_TOMCAT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asaasStub.stop(0);
+    }
+
+    @Test
+    void compararThreadsDePlataformaEVirtuais() throws Exception {
+        Duration plataforma = executar(Executors.newFixedThreadPool(THREADS_TOMCAT), CHAMADAS);
+        Duration virtuais = executar(Executors.newVirtualThreadPerTaskExecutor(), CHAMADAS);
+
+        System.out.printf("Latência injetada: %d ms, %d chamadas%n", LATENCIA_MS, CHAMADAS);
+        System.out.printf("Threads de plataforma (%d): %d ms, %.0f chamadas/s%n",
+                THREADS_TOMCAT, plataforma.toMillis(), CHAMADAS * 1000.0 / plataforma.toMillis());
+        System.out.printf("Threads virtuais:            %d ms, %.0f chamadas/s%n",
+                virtuais.toMillis(), CHAMADAS * 1000.0 / virtuais.toMillis());
+
+        assertTrue(virtuais.compareTo(plataforma) < 0,
+                "Threads virtuais deveriam terminar antes do pool limitado de threads de plataforma");
+    }
+
+    private Duration executar(ExecutorService executor, int chamadas) {
+        long inicio = System.nanoTime();
+        try (executor) {
+            List<Future<AsaasPaymentResponseDTO>> respostas = new ArrayList<>(chamadas);
+            for (int i = 0; i < chamadas; i++) {
+                respostas.add(executor.submit(() -> asaasService.buscarPagamento("pay_123456")));
+            }
+            for (Future<AsaasPaymentResponseDTO> resposta : respostas) {
+                assertEquals("pay_123456", resposta.get().getId());
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+        return Duration.ofNanos(System.nanoTime() - inicio);
+    }
+}
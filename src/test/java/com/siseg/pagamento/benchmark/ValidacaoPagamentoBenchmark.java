@@ -0,0 +1,113 @@
+package com.siseg.pagamento.benchmark;
+
+import com.siseg.pagamento.dto.CartaoCreditoRequestDTO;
+import com.siseg.pagamento.dto.ClienteInfoDTO;
+import com.siseg.pagamento.dto.CriarPagamentoCompletoRequestDTO;
+import com.siseg.pagamento.dto.CriarPagamentoRequestDTO;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.validator.PagamentoValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validações do pagamento: as regras de reembolso do
+ * {@link PagamentoValidator} e a Bean Validation do corpo de
+ * POST /api/pagamentos (anotações @Valid/@Pattern dos DTOs), que roda em
+ * toda criação.
+ *
+ * <p>Execução: {@code mvn -P jmh test -Djmh.args="ValidacaoPagamento -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidacaoPagamentoBenchmark {
+
+    private PagamentoValidator pagamentoValidator;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Pagamento pagamentoPago;
+    private CriarPagamentoCompletoRequestDTO requisicaoPix;
+    private CriarPagamentoCompletoRequestDTO requisicaoCartao;
+
+    @Setup
+    public void setUp() {
+        pagamentoValidator = new PagamentoValidator();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        pagamentoPago = new Pagamento();
+        pagamentoPago.setMetodo(MetodoPagamento.PIX);
+        pagamentoPago.setStatus(StatusPagamento.PAID);
+        pagamentoPago.setAsaasPaymentId("pay_123456");
+
+        requisicaoPix = requisicao(MetodoPagamento.PIX, null);
+
+        CartaoCreditoRequestDTO cartao = new CartaoCreditoRequestDTO();
+        cartao.setNomeTitular("CLIENTE TESTE");
+        cartao.setNumero("4111111111111111");
+        cartao.setValidade("12/30");
+        cartao.setCvv("123");
+        requisicaoCartao = requisicao(MetodoPagamento.CREDIT_CARD, cartao);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Pagamento validarReembolso() {
+        pagamentoValidator.validateReembolsoPossivel(pagamentoPago);
+        return pagamentoPago;
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CriarPagamentoCompletoRequestDTO>> validarRequisicaoPix() {
+        return validator.validate(requisicaoPix);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CriarPagamentoCompletoRequestDTO>> validarRequisicaoCartao() {
+        return validator.validate(requisicaoCartao);
+    }
+
+    private CriarPagamentoCompletoRequestDTO requisicao(MetodoPagamento metodo, CartaoCreditoRequestDTO cartao) {
+        CriarPagamentoRequestDTO pagamento = new CriarPagamentoRequestDTO();
+        pagamento.setPedidoId(1001L);
+        pagamento.setMetodoPagamento(metodo);
+        pagamento.setValor(new BigDecimal("89.90"));
+        pagamento.setCartaoCredito(cartao);
+
+        ClienteInfoDTO cliente = new ClienteInfoDTO();
+        cliente.setNome("Cliente Teste");
+        cliente.setEmail("cliente@teste.com");
+        cliente.setCpfCnpj("12345678900");
+
+        CriarPagamentoCompletoRequestDTO requisicao = new CriarPagamentoCompletoRequestDTO();
+        requisicao.setPagamento(pagamento);
+        requisicao.setCliente(cliente);
+        return requisicao;
+    }
+}
@@ -0,0 +1,57 @@
+package com.siseg.pagamento.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutorConfigUnitTest {
+
+    @Test
+    void comThreadsVirtuaisDeveRejeitarQuandoFilaEnche() throws InterruptedException {
+        deveRejeitarQuandoFilaEnche(new ExecutorConfig(true).webhookExecutor(1, 1), true);
+    }
+
+    @Test
+    void comThreadsDePlataformaDeveRejeitarQuandoFilaEnche() throws InterruptedException {
+        deveRejeitarQuandoFilaEnche(new ExecutorConfig(false).webhookExecutor(1, 1), false);
+    }
+
+    private void deveRejeitarQuandoFilaEnche(TaskExecutor executor, boolean virtual) throws InterruptedException {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicBoolean threadVirtual = new AtomicBoolean();
+        try {
+            executor.execute(() -> {
+                threadVirtual.set(Thread.currentThread().isVirtual());
+                iniciada.countDown();
+                aguardar(liberar);
+            });
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> { });
+
+            // Thread ocupada e fila cheia: a terceira tarefa é rejeitada na hora, sem bloquear quem submete
+            long inicio = System.nanoTime();
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000);
+            assertEquals(virtual, threadVirtual.get());
+        } finally {
+            liberar.countDown();
+            ((ThreadPoolTaskExecutor) executor).shutdown();
+        }
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.siseg.pagamento.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebClientConfigUnitTest {
+
+    @Test
+    void deveNormalizarIdsDoAsaasNaUri() {
+        assertEquals("/v3/payments/{id}", WebClientConfig.normalizarUri("/v3/payments/pay_4Hx9k2Lm"));
+        assertEquals("/v3/payments/{id}/refund", WebClientConfig.normalizarUri("/v3/payments/pay_123456/refund"));
+        assertEquals("/v3/customers/{id}", WebClientConfig.normalizarUri("/v3/customers/cus_000005219613"));
+        assertEquals("/v3/payments/{id}/pixQrCode", WebClientConfig.normalizarUri("/v3/payments/pay_abc/pixQrCode"));
+    }
+
+    @Test
+    void deveNormalizarIdsNumericosERemoverQueryString() {
+        assertEquals("/api/pedidos/{id}/pagamento", WebClientConfig.normalizarUri("/api/pedidos/42/pagamento"));
+        assertEquals("/v3/customers", WebClientConfig.normalizarUri("/v3/customers?email=cliente@exemplo.com&limit=1"));
+        assertEquals("/api/pedidos/pagamentos-confirmados", WebClientConfig.normalizarUri("/api/pedidos/pagamentos-confirmados"));
+    }
+}
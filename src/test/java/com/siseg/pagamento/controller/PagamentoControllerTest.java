@@ -2,10 +2,18 @@ package com.siseg.pagamento.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.exception.PrazoEsgotadoException;
+import com.siseg.pagamento.model.PixQrCodeImagem;
 import com.siseg.pagamento.model.enumerations.MetodoPagamento;
 import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
 import com.siseg.pagamento.service.AsaasWebhookService;
+import com.siseg.pagamento.service.IdempotenciaService;
+import com.siseg.pagamento.service.PagamentoLoteService;
 import com.siseg.pagamento.service.PagamentoService;
+import com.siseg.pagamento.service.PixQrCodeService;
+import com.siseg.pagamento.service.ReembolsoLoteService;
+import com.siseg.pagamento.service.WebhookInboxService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +24,8 @@ import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequ
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -37,6 +47,21 @@ class PagamentoControllerTest {
     @MockBean
     private AsaasWebhookService asaasWebhookService;
 
+    @MockBean
+    private PixQrCodeService pixQrCodeService;
+
+    @MockBean
+    private WebhookInboxService webhookInboxService;
+
+    @MockBean
+    private IdempotenciaService idempotenciaService;
+
+    @MockBean
+    private PagamentoLoteService pagamentoLoteService;
+
+    @MockBean
+    private ReembolsoLoteService reembolsoLoteService;
+
     private CriarPagamentoCompletoRequestDTO criarPagamentoRequest;
     private PagamentoResponseDTO pagamentoResponse;
 
@@ -67,7 +92,7 @@ class PagamentoControllerTest {
 
     @Test
     void deveCriarPagamentoComSucesso() throws Exception {
-        when(pagamentoService.criarPagamento(any(), any(), any())).thenReturn(pagamentoResponse);
+        when(pagamentoService.criarPagamento(any(), any(), any(), any())).thenReturn(pagamentoResponse);
 
         mockMvc.perform(post("/api/pagamentos")
                         .with(SecurityMockMvcRequestPostProcessors.jwt())
@@ -78,7 +103,97 @@ class PagamentoControllerTest {
                 .andExpect(jsonPath("$.pedidoId").value(1L))
                 .andExpect(jsonPath("$.status").value("PENDING"));
 
-        verify(pagamentoService, times(1)).criarPagamento(any(), any(), any());
+        verify(pagamentoService, times(1)).criarPagamento(any(), any(), any(), any());
+    }
+
+    @Test
+    void deveCriarPagamentoPelaIdempotenciaQuandoHaChave() throws Exception {
+        when(pagamentoService.criarPagamento(any(), any(), any(), any())).thenReturn(pagamentoResponse);
+        when(idempotenciaService.executar(eq("chave-1"), eq("POST /api/pagamentos"), any(), eq(PagamentoResponseDTO.class), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<PagamentoResponseDTO>>getArgument(4).get());
+
+        mockMvc.perform(post("/api/pagamentos")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .header("Idempotency-Key", "chave-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(criarPagamentoRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1L));
+
+        verify(pagamentoService, times(1)).criarPagamento(any(), any(), any(), any());
+    }
+
+    @Test
+    void deveUsarPrazoDoCabecalhoEResponder504QuandoEsgota() throws Exception {
+        when(pagamentoService.criarPagamento(any(), any(), any(), any()))
+                .thenThrow(new PrazoEsgotadoException("Prazo da requisição esgotado durante criar a cobrança PIX"));
+
+        mockMvc.perform(post("/api/pagamentos")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .header("X-Request-Timeout-Ms", "800")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(criarPagamentoRequest)))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.message").value("Prazo da requisição esgotado durante criar a cobrança PIX"));
+
+        verify(pagamentoService).criarPagamento(any(), any(), any(),
+                argThat(prazo -> prazo.restante().toMillis() <= 800));
+    }
+
+    @Test
+    void deveCriarPagamentosEmLote() throws Exception {
+        CriarPagamentosLoteResponseDTO.ResultadoDTO resultado = new CriarPagamentosLoteResponseDTO.ResultadoDTO();
+        resultado.setPedidoId(1L);
+        resultado.setSucesso(true);
+        resultado.setPagamento(pagamentoResponse);
+        CriarPagamentosLoteResponseDTO loteResponse = new CriarPagamentosLoteResponseDTO();
+        loteResponse.setResultados(List.of(resultado));
+        when(pagamentoLoteService.criarPagamentos(anyList(), any())).thenReturn(loteResponse);
+
+        CriarPagamentosLoteRequestDTO loteRequest = new CriarPagamentosLoteRequestDTO();
+        loteRequest.setPagamentos(List.of(criarPagamentoRequest));
+
+        mockMvc.perform(post("/api/pagamentos/lote")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loteRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resultados[0].sucesso").value(true))
+                .andExpect(jsonPath("$.resultados[0].pagamento.id").value(1L));
+    }
+
+    @Test
+    void deveRejeitarLoteVazio() throws Exception {
+        mockMvc.perform(post("/api/pagamentos/lote")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"pagamentos\":[]}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(pagamentoLoteService, never()).criarPagamentos(anyList(), any());
+    }
+
+    @Test
+    void deveAceitarReembolsoEmLoteEDevolverIdDoLote() throws Exception {
+        ReembolsoLoteResponseDTO lote = new ReembolsoLoteResponseDTO();
+        lote.setId(7L);
+        lote.setStatus(StatusReembolsoLote.EM_ANDAMENTO);
+        lote.setTotal(2);
+        when(reembolsoLoteService.criar(List.of(1L, 2L), "Loja fechada")).thenReturn(lote);
+
+        mockMvc.perform(post("/api/pagamentos/reembolsos/lote")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"pedidoIds\":[1,2],\"motivo\":\"Loja fechada\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(7L))
+                .andExpect(jsonPath("$.status").value("EM_ANDAMENTO"));
+
+        when(reembolsoLoteService.buscar(7L)).thenReturn(lote);
+        mockMvc.perform(get("/api/pagamentos/reembolsos/lote/7")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2));
     }
 
     @Test
@@ -94,10 +209,79 @@ class PagamentoControllerTest {
         verify(pagamentoService, times(1)).buscarPagamentoPorPedido(1L);
     }
 
+    @Test
+    void deveBuscarStatusDeVariosPedidos() throws Exception {
+        when(pagamentoService.buscarStatusPorPedidos(List.of(1L, 2L))).thenReturn(List.of(
+                new StatusPagamentoPedidoDTO(1L, MetodoPagamento.PIX, StatusPagamento.PAID, new BigDecimal("100.00"), null)));
+
+        mockMvc.perform(post("/api/pagamentos/pedidos/status")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"pedidoIds\":[1,2]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].pedidoId").value(1L))
+                .andExpect(jsonPath("$[0].status").value("PAID"))
+                .andExpect(jsonPath("$[0].qrCodeImageUrl").doesNotExist());
+    }
+
+    @Test
+    void deveRetornarAcceptedQuandoQrCodePixNaoEstaPronto() throws Exception {
+        PixQrCodeResponseDTO qrCode = new PixQrCodeResponseDTO();
+        qrCode.setPedidoId(1L);
+        qrCode.setPronto(false);
+        when(pagamentoService.buscarQrCodePix(1L)).thenReturn(qrCode);
+
+        mockMvc.perform(get("/api/pagamentos/pedidos/1/pix")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.pronto").value(false));
+    }
+
+    @Test
+    void deveRetornarImagemQrCodePixComEtag() throws Exception {
+        PixQrCodeImagem imagem = imagemQrCode();
+        when(pixQrCodeService.buscarEtagImagem(1L)).thenReturn("abc123");
+        when(pixQrCodeService.buscarImagem(1L)).thenReturn(imagem);
+
+        mockMvc.perform(get("/api/pagamentos/pedidos/1/qrcode")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(content().bytes(imagem.getImagem()));
+    }
+
+    @Test
+    void deveRetornarNotModifiedQuandoEtagConfere() throws Exception {
+        when(pixQrCodeService.buscarEtagImagem(1L)).thenReturn("abc123");
+
+        for (String ifNoneMatch : List.of("\"abc123\"", "W/\"abc123\"", "\"outro\", \"abc123\"")) {
+            mockMvc.perform(get("/api/pagamentos/pedidos/1/qrcode")
+                            .with(SecurityMockMvcRequestPostProcessors.jwt())
+                            .header("If-None-Match", ifNoneMatch))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", "\"abc123\""))
+                    .andExpect(content().bytes(new byte[0]));
+        }
+        verify(pixQrCodeService, never()).buscarImagem(anyLong());
+    }
+
+    @Test
+    void deveRetornarImagemQuandoEtagNaoConfere() throws Exception {
+        when(pixQrCodeService.buscarEtagImagem(1L)).thenReturn("abc123");
+        when(pixQrCodeService.buscarImagem(1L)).thenReturn(imagemQrCode());
+
+        mockMvc.perform(get("/api/pagamentos/pedidos/1/qrcode")
+                        .with(SecurityMockMvcRequestPostProcessors.jwt())
+                        .header("If-None-Match", "\"outro\""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG));
+    }
+
     @Test
     void deveProcessarWebhookComSucesso() throws Exception {
         when(asaasWebhookService.validarAccessToken(anyString())).thenReturn(true);
-        doNothing().when(asaasWebhookService).processarWebhook(any());
 
         AsaasWebhookDTO webhook = new AsaasWebhookDTO();
         webhook.setEvent("PAYMENT_RECEIVED");
@@ -112,7 +296,8 @@ class PagamentoControllerTest {
                 .andExpect(status().isOk());
 
         verify(asaasWebhookService, times(1)).validarAccessToken(anyString());
-        verify(asaasWebhookService, times(1)).processarWebhook(any());
+        verify(webhookInboxService, times(1)).receber(any());
+        verify(asaasWebhookService, never()).processarWebhook(any());
     }
 
     @Test
@@ -132,6 +317,11 @@ class PagamentoControllerTest {
 
         verify(pagamentoService, times(1)).processarReembolso(1L, "Teste");
     }
-}
-
 
+    private PixQrCodeImagem imagemQrCode() {
+        PixQrCodeImagem imagem = new PixQrCodeImagem();
+        imagem.setImagem(new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        imagem.setEtag("abc123");
+        return imagem;
+    }
+}
@@ -7,6 +7,7 @@ import com.siseg.pagamento.model.enumerations.StatusPagamento;
 import com.siseg.pagamento.repository.PagamentoRepository;
 import com.siseg.pagamento.service.AsaasService;
 import com.siseg.pagamento.service.PagamentoService;
+import com.siseg.pagamento.service.Prazo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +17,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -73,20 +75,22 @@ class AsaasPagamentoIntegrationTest {
             return;
         }
 
-        PagamentoResponseDTO response = pagamentoService.criarPagamento(criarPagamentoRequestPix, clienteInfo, "127.0.0.1");
+        PagamentoResponseDTO response = pagamentoService.criarPagamento(criarPagamentoRequestPix, clienteInfo, "127.0.0.1", Prazo.em(Duration.ofSeconds(30)));
         
         assertNotNull(response, "Resposta do pagamento não deve ser nula");
         assertNotNull(response.getId(), "ID do pagamento não deve ser nulo");
         assertEquals(MetodoPagamento.PIX, response.getMetodo(), "Método deve ser PIX");
         assertEquals(new BigDecimal("25.00"), response.getValor(), "Valor deve ser 25.00");
-        assertNotNull(response.getQrCode(), "QR Code não deve ser nulo");
-        assertNotNull(response.getQrCodeImageUrl(), "URL da imagem do QR Code não deve ser nula");
         
         Pagamento pagamento = pagamentoRepository.findById(response.getId())
                 .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
         
         assertNotNull(pagamento.getAsaasPaymentId(), "Asaas Payment ID não deve ser nulo");
         
+        AsaasQrCodeResponseDTO qrCode = asaasService.buscarQrCodePix(pagamento.getAsaasPaymentId());
+        assertNotNull(qrCode, "QR Code não deve ser nulo");
+        assertNotNull(qrCode.getPayload(), "Payload do QR Code não deve ser nulo");
+        
         AsaasPaymentResponseDTO asaasPayment = asaasService.buscarPagamento(pagamento.getAsaasPaymentId());
         assertNotNull(asaasPayment, "Pagamento deve existir no Asaas");
         assertEquals("PIX", asaasPayment.getBillingType(), "Tipo de pagamento deve ser PIX");
@@ -119,7 +123,8 @@ class AsaasPagamentoIntegrationTest {
         PagamentoResponseDTO response = pagamentoService.criarPagamento(
             criarPagamentoRequestCartao, 
             clienteInfo, 
-            "127.0.0.1"
+            "127.0.0.1",
+            Prazo.em(Duration.ofSeconds(30))
         );
         
         assertNotNull(response, "Resposta do pagamento não deve ser nula");
@@ -7,6 +7,7 @@ import com.siseg.pagamento.model.enumerations.StatusPagamento;
 import com.siseg.pagamento.repository.PagamentoRepository;
 import com.siseg.pagamento.service.AsaasService;
 import com.siseg.pagamento.service.PagamentoService;
+import com.siseg.pagamento.service.Prazo;
 import com.siseg.pagamento.exception.PaymentGatewayException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -72,7 +74,8 @@ class AsaasReembolsoIntegrationTest {
         PagamentoResponseDTO pagamentoResponse = pagamentoService.criarPagamento(
             criarPagamentoRequest, 
             clienteInfo, 
-            "127.0.0.1"
+            "127.0.0.1",
+            Prazo.em(Duration.ofSeconds(30))
         );
         
         assertNotNull(pagamentoResponse, "Resposta do pagamento não deve ser nula");
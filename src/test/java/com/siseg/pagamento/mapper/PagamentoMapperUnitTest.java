@@ -0,0 +1,52 @@
+package com.siseg.pagamento.mapper;
+
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagamentoMapperUnitTest {
+
+    private final PagamentoMapper pagamentoMapper = new PagamentoMapper();
+
+    @Test
+    void deveMapearTodosOsCamposDaRespostaDePagamento() {
+        Instant criadoEm = Instant.parse("2024-01-10T10:00:00Z");
+        Instant reembolsadoEm = Instant.parse("2024-01-11T10:00:00Z");
+        Pagamento pagamento = new Pagamento();
+        pagamento.setId(1L);
+        pagamento.setPedidoId(10L);
+        pagamento.setMetodo(MetodoPagamento.PIX);
+        pagamento.setStatus(StatusPagamento.REFUNDED);
+        pagamento.setValor(new BigDecimal("100.00"));
+        pagamento.setTroco(new BigDecimal("5.00"));
+        pagamento.setQrCode("qr-code");
+        pagamento.setValorReembolsado(new BigDecimal("100.00"));
+        pagamento.setDataReembolso(reembolsadoEm);
+        pagamento.setAsaasRefundId("refund_123");
+        pagamento.setCriadoEm(criadoEm);
+        pagamento.setAtualizadoEm(reembolsadoEm);
+
+        PagamentoResponseDTO response = pagamentoMapper.toPagamentoResponse(pagamento);
+
+        assertEquals(1L, response.getId());
+        assertEquals(10L, response.getPedidoId());
+        assertEquals(MetodoPagamento.PIX, response.getMetodo());
+        assertEquals(StatusPagamento.REFUNDED, response.getStatus());
+        assertEquals(new BigDecimal("100.00"), response.getValor());
+        assertEquals(new BigDecimal("5.00"), response.getTroco());
+        assertEquals("qr-code", response.getQrCode());
+        assertEquals(new BigDecimal("100.00"), response.getValorReembolsado());
+        assertEquals(reembolsadoEm, response.getDataReembolso());
+        assertEquals("refund_123", response.getAsaasRefundId());
+        assertEquals(criadoEm, response.getCriadoEm());
+        assertEquals(reembolsadoEm, response.getAtualizadoEm());
+        assertNull(response.getQrCodeImageUrl());
+    }
+}
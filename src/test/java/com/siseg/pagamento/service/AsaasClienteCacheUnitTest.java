@@ -0,0 +1,99 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.ClienteInfoDTO;
+import com.siseg.pagamento.model.AsaasCliente;
+import com.siseg.pagamento.repository.AsaasClienteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsaasClienteCacheUnitTest {
+
+    @Mock
+    private AsaasClienteRepository asaasClienteRepository;
+
+    private AsaasClienteCache asaasClienteCache;
+
+    private ClienteInfoDTO cliente;
+
+    @BeforeEach
+    void setUp() {
+        asaasClienteCache = new AsaasClienteCache(asaasClienteRepository, 2, 60, 30);
+
+        cliente = new ClienteInfoDTO();
+        cliente.setEmail(" Cliente@Teste.com ");
+        cliente.setCpfCnpj("123.456.789-00");
+    }
+
+    @Test
+    void deveNormalizarChavePorEmailOuCpf() {
+        assertEquals("email:cliente@teste.com", AsaasClienteCache.gerarChave(cliente));
+
+        cliente.setEmail(null);
+        assertEquals("cpf:12345678900", AsaasClienteCache.gerarChave(cliente));
+
+        cliente.setCpfCnpj(null);
+        assertNull(AsaasClienteCache.gerarChave(cliente));
+    }
+
+    @Test
+    void deveRetornarDaMemoriaSemConsultarBanco() {
+        when(asaasClienteRepository.findByChave(anyString())).thenReturn(Optional.empty());
+        asaasClienteCache.registrar(cliente, "cus_123456");
+        clearInvocations(asaasClienteRepository);
+
+        assertEquals("cus_123456", asaasClienteCache.buscar(cliente));
+        verifyNoInteractions(asaasClienteRepository);
+        assertEquals(1, asaasClienteCache.getAcertosMemoria());
+    }
+
+    @Test
+    void deveRetornarDoBancoQuandoNaoEstaEmMemoria() {
+        AsaasCliente persistido = new AsaasCliente();
+        persistido.setChave("email:cliente@teste.com");
+        persistido.setAsaasCustomerId("cus_123456");
+        when(asaasClienteRepository.findByChave("email:cliente@teste.com")).thenReturn(Optional.of(persistido));
+
+        assertEquals("cus_123456", asaasClienteCache.buscar(cliente));
+        assertEquals("cus_123456", asaasClienteCache.buscar(cliente));
+
+        verify(asaasClienteRepository, times(1)).findByChave("email:cliente@teste.com");
+        assertEquals(1, asaasClienteCache.getAcertosBanco());
+        assertEquals(1, asaasClienteCache.getAcertosMemoria());
+    }
+
+    @Test
+    void deveIgnorarRegistroPersistidoExpirado() {
+        AsaasCliente persistido = new AsaasCliente();
+        persistido.setAsaasCustomerId("cus_123456");
+        persistido.setCriadoEm(Instant.now().minus(31, ChronoUnit.DAYS));
+        when(asaasClienteRepository.findByChave(anyString())).thenReturn(Optional.of(persistido));
+
+        assertNull(asaasClienteCache.buscar(cliente));
+        assertEquals(1, asaasClienteCache.getFalhas());
+    }
+
+    @Test
+    void deveDescartarEntradaMenosRecenteQuandoCheio() {
+        when(asaasClienteRepository.findByChave(anyString())).thenReturn(Optional.empty());
+
+        for (String email : new String[]{"a@teste.com", "b@teste.com", "c@teste.com"}) {
+            ClienteInfoDTO outro = new ClienteInfoDTO();
+            outro.setEmail(email);
+            asaasClienteCache.registrar(outro, "cus_" + email);
+        }
+
+        assertEquals(2, asaasClienteCache.getTamanhoMemoria());
+    }
+}
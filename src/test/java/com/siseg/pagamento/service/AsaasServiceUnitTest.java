@@ -0,0 +1,239 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.dto.ClienteInfoDTO;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsaasServiceUnitTest {
+
+    @Mock
+    private AsaasClienteCache asaasClienteCache;
+
+    private HttpServer asaasStub;
+    private final Map<String, AtomicInteger> chamadas = new ConcurrentHashMap<>();
+    private final CountDownLatch liberarRespostas = new CountDownLatch(1);
+    private AsaasService asaasService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        asaasStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        asaasStub.createContext("/customers", exchange -> {
+            registrar(exchange);
+            if ("GET".equals(exchange.getRequestMethod())) {
+                responder(exchange, 200, "{}");
+            } else {
+                responder(exchange, 200, "{\"id\":\"cus_novo\"}");
+            }
+        });
+        asaasStub.createContext("/payments", exchange -> {
+            registrar(exchange);
+            if (exchange.getRequestURI().getPath().endsWith("pay_lento")) {
+                aguardar(200);
+            } else if (exchange.getRequestURI().getPath().endsWith("pay_erro_retido")) {
+                aguardarLiberacao();
+                responder(exchange, 404, "{\"errors\":[{\"code\":\"not_found\"}]}");
+                return;
+            }
+            String corpo = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (exchange.getRequestURI().getPath().endsWith("pay_erro")) {
+                responder(exchange, 404, "{\"errors\":[{\"code\":\"not_found\"}]}");
+            } else if (exchange.getRequestURI().getPath().endsWith("pay_indisponivel")
+                    || exchange.getRequestURI().getPath().endsWith("pay_instavel") && chamadas.get("GET /payments").get() == 1
+                    || corpo.contains("cus_indisponivel")) {
+                responder(exchange, 503, "{}");
+            } else {
+                responder(exchange, 200, "{\"id\":\"pay_123456\",\"status\":\"PENDING\"}");
+            }
+        });
+        asaasStub.start();
+
+        String baseUrl = "http://localhost:" + asaasStub.getAddress().getPort();
+        asaasService = new AsaasService(WebClient.create(baseUrl), new PagamentoMapper(), asaasClienteCache,
+                new ProtecaoAsaas(4, 2, 50, 30000, 1, 40, 40, 10, 20),
+                new PoliticaLeituraAsaas(2, 10, 50, 0.5, false, 95, 50, 20), ObservationRegistry.NOOP);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asaasStub.stop(0);
+    }
+
+    @Test
+    void deveUsarClienteDoCacheSemChamarAsaas() {
+        when(asaasClienteCache.buscar(any(ClienteInfoDTO.class))).thenReturn("cus_cache");
+
+        assertEquals("cus_cache", asaasService.buscarOuCriarClienteReativo(cliente()).block());
+
+        assertTrue(chamadas.isEmpty());
+    }
+
+    @Test
+    void deveCriarClienteQuandoNaoEncontradoERegistrarNoCache() {
+        when(asaasClienteCache.buscar(any(ClienteInfoDTO.class))).thenReturn(null);
+
+        assertEquals("cus_novo", asaasService.buscarOuCriarClienteReativo(cliente()).block());
+
+        assertEquals(1, chamadas.get("GET /customers").get());
+        assertEquals(1, chamadas.get("POST /customers").get());
+        verify(asaasClienteCache).registrar(any(ClienteInfoDTO.class), eq("cus_novo"));
+    }
+
+    @Test
+    void deveComporClienteECobrancaSemBloquear() {
+        when(asaasClienteCache.buscar(any(ClienteInfoDTO.class))).thenReturn("cus_cache");
+
+        Mono<AsaasPaymentResponseDTO> cobranca = asaasService.buscarOuCriarClienteReativo(cliente())
+                .flatMap(customerId -> asaasService.criarPagamentoPixReativo(1L, new BigDecimal("25.00"), customerId));
+
+        assertEquals("pay_123456", cobranca.block().getId());
+    }
+
+    @Test
+    void deveTraduzirErroHttpEmPaymentGatewayException() {
+        Mono<AsaasPaymentResponseDTO> busca = asaasService.buscarPagamentoReativo("pay_erro");
+
+        PaymentGatewayException e = assertThrows(PaymentGatewayException.class, busca::block);
+        assertTrue(e.getMessage().contains("not_found"));
+    }
+
+    @Test
+    void deveCompartilharConsultasSimultaneasDaMesmaCobranca() {
+        List<AsaasPaymentResponseDTO> respostas = Flux.range(0, 20)
+                .flatMap(i -> asaasService.buscarPagamentoReativo("pay_lento"))
+                .collectList()
+                .block();
+
+        assertEquals(20, respostas.size());
+        assertEquals(1, chamadas.get("GET /payments").get());
+
+        // Terminada a chamada, a próxima consulta vai ao Asaas de novo
+        asaasService.buscarPagamentoReativo("pay_lento").block();
+        assertEquals(2, chamadas.get("GET /payments").get());
+    }
+
+    @Test
+    void deveCompartilharErroEntreConsultasSimultaneas() {
+        // O stub segura a resposta até todas as consultas estarem inscritas
+        CompletableFuture<List<Throwable>> consultas = Flux.range(0, 5)
+                .flatMap(i -> asaasService.buscarPagamentoReativo("pay_erro_retido")
+                        .then(Mono.<Throwable>empty())
+                        .onErrorResume(Mono::just))
+                .collectList()
+                .toFuture();
+        liberarRespostas.countDown();
+        List<Throwable> erros = consultas.join();
+
+        assertEquals(5, erros.size());
+        assertTrue(erros.stream().allMatch(PaymentGatewayException.class::isInstance));
+        assertEquals(1, chamadas.get("GET /payments").get());
+    }
+
+    @Test
+    void deveAbrirCircuitoComGatewayIndisponivelEFalharSemChamarAsaas() {
+        // A segunda tentativa abre o circuito e a terceira já é recusada
+        assertThrows(PaymentGatewayException.class, () -> asaasService.buscarPagamento("pay_indisponivel"));
+        assertEquals(2, chamadas.get("GET /payments").get());
+
+        PaymentGatewayException e = assertThrows(PaymentGatewayException.class, () -> asaasService.buscarPagamento("pay_123456"));
+        assertTrue(e.getMessage().contains("indisponível"));
+        assertEquals(2, chamadas.get("GET /payments").get());
+
+        // Cada operação tem seu circuito: o estorno continua chegando ao Asaas
+        assertNotNull(asaasService.estornarPagamento("pay_123456", null));
+    }
+
+    @Test
+    void recusaDoAsaasNaoDeveAbrirCircuito() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PaymentGatewayException.class, () -> asaasService.buscarPagamento("pay_erro"));
+        }
+
+        assertEquals("pay_123456", asaasService.buscarPagamento("pay_123456").getId());
+        assertEquals(5, chamadas.get("GET /payments").get());
+    }
+
+    @Test
+    void deveRepetirLeituraAposErroTemporario() {
+        assertEquals("pay_123456", asaasService.buscarPagamento("pay_instavel").getId());
+
+        assertEquals(2, chamadas.get("GET /payments").get());
+    }
+
+    @Test
+    void naoDeveRepetirCriacaoDeCobranca() {
+        assertThrows(WebClientResponseException.class,
+                () -> asaasService.criarPagamentoPix(1L, new BigDecimal("25.00"), "cus_indisponivel"));
+
+        assertEquals(1, chamadas.get("POST /payments").get());
+    }
+
+    private ClienteInfoDTO cliente() {
+        ClienteInfoDTO cliente = new ClienteInfoDTO();
+        cliente.setNome("Cliente Teste");
+        cliente.setEmail("cliente@teste.com");
+        cliente.setCpfCnpj("12345678900");
+        return cliente;
+    }
+
+    private void aguardarLiberacao() {
+        try {
+            liberarRespostas.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void aguardar(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void registrar(HttpExchange exchange) {
+        String chave = exchange.getRequestMethod() + " " + exchange.getHttpContext().getPath();
+        chamadas.computeIfAbsent(chave, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void responder(HttpExchange exchange, int status, String corpo) throws IOException {
+        byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
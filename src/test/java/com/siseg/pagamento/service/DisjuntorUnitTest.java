@@ -0,0 +1,91 @@
+package com.siseg.pagamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisjuntorUnitTest {
+
+    @Test
+    void deveAbrirQuandoTaxaDeFalhasAtingeOLimite() {
+        Disjuntor disjuntor = new Disjuntor("teste", 10, 4, 50, Duration.ofMinutes(1), 1);
+
+        registrar(disjuntor, false, true, false);
+        assertEquals(Disjuntor.Estado.FECHADO, disjuntor.getEstado());
+
+        // Quarta chamada: 2 falhas em 4
+        registrar(disjuntor, true);
+        assertEquals(Disjuntor.Estado.ABERTO, disjuntor.getEstado());
+        assertFalse(disjuntor.permitir());
+        assertEquals(1, disjuntor.getRejeicoes());
+    }
+
+    @Test
+    void janelaDeveConsiderarSoAsUltimasChamadas() {
+        Disjuntor disjuntor = new Disjuntor("teste", 4, 4, 75, Duration.ofMinutes(1), 1);
+
+        registrar(disjuntor, true, true, false, false, false, false, true, true);
+
+        // Das falhas iniciais nenhuma está mais na janela: 2 em 4
+        assertEquals(Disjuntor.Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    void deveFecharQuandoChamadasDeTesteDaoCerto() throws InterruptedException {
+        Disjuntor disjuntor = new Disjuntor("teste", 2, 2, 50, Duration.ofMillis(50), 2);
+        registrar(disjuntor, true, true);
+        assertEquals(Disjuntor.Estado.ABERTO, disjuntor.getEstado());
+
+        Thread.sleep(60);
+
+        assertTrue(disjuntor.permitir());
+        assertTrue(disjuntor.permitir());
+        assertEquals(Disjuntor.Estado.MEIO_ABERTO, disjuntor.getEstado());
+        // Só as chamadas de teste passam
+        assertFalse(disjuntor.permitir());
+
+        disjuntor.registrarSucesso();
+        disjuntor.registrarSucesso();
+        assertEquals(Disjuntor.Estado.FECHADO, disjuntor.getEstado());
+        assertTrue(disjuntor.permitir());
+    }
+
+    @Test
+    void deveReabrirQuandoChamadaDeTesteFalha() throws InterruptedException {
+        Disjuntor disjuntor = new Disjuntor("teste", 2, 2, 50, Duration.ofMillis(50), 1);
+        registrar(disjuntor, true, true);
+        Thread.sleep(60);
+
+        assertTrue(disjuntor.permitir());
+        disjuntor.registrarFalha();
+
+        assertEquals(Disjuntor.Estado.ABERTO, disjuntor.getEstado());
+        assertFalse(disjuntor.permitir());
+    }
+
+    @Test
+    void chamadaDeTesteDescartadaDeveLiberarVaga() throws InterruptedException {
+        Disjuntor disjuntor = new Disjuntor("teste", 2, 2, 50, Duration.ofMillis(50), 1);
+        registrar(disjuntor, true, true);
+        Thread.sleep(60);
+
+        assertTrue(disjuntor.permitir());
+        assertFalse(disjuntor.permitir());
+        disjuntor.descartar();
+
+        assertTrue(disjuntor.permitir());
+    }
+
+    private void registrar(Disjuntor disjuntor, boolean... falhas) {
+        for (boolean falha : falhas) {
+            assertTrue(disjuntor.permitir());
+            if (falha) {
+                disjuntor.registrarFalha();
+            } else {
+                disjuntor.registrarSucesso();
+            }
+        }
+    }
+}
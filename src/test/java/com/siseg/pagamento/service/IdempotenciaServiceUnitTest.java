@@ -0,0 +1,160 @@
+package com.siseg.pagamento.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.exception.ChaveIdempotenciaReutilizadaException;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.exception.RequisicaoEmAndamentoException;
+import com.siseg.pagamento.model.ChaveIdempotencia;
+import com.siseg.pagamento.model.enumerations.StatusChaveIdempotencia;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.ChaveIdempotenciaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaServiceUnitTest {
+
+    private static final String OPERACAO = "POST /api/pagamentos";
+
+    @Mock
+    private ChaveIdempotenciaRepository chaveIdempotenciaRepository;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final AtomicInteger execucoes = new AtomicInteger();
+    private IdempotenciaService idempotenciaService;
+
+    @BeforeEach
+    void setUp() {
+        idempotenciaService = new IdempotenciaService(chaveIdempotenciaRepository, objectMapper, 200, 24, 5);
+    }
+
+    @Test
+    void deveExecutarEGuardarRespostaNaPrimeiraRequisicao() {
+        when(chaveIdempotenciaRepository.findById("chave-1")).thenReturn(Optional.empty());
+
+        PagamentoResponseDTO resposta = idempotenciaService.executar("chave-1", OPERACAO, Map.of("pedidoId", 1),
+                PagamentoResponseDTO.class, this::criar);
+
+        assertEquals(1L, resposta.getPedidoId());
+        assertEquals(1, execucoes.get());
+        verify(chaveIdempotenciaRepository).reservar(eq("chave-1"), anyString(), eq("PROCESSANDO"), any());
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(chaveIdempotenciaRepository).concluir(eq("chave-1"), eq(StatusChaveIdempotencia.PROCESSANDO),
+                eq(StatusChaveIdempotencia.CONCLUIDA), json.capture(), any());
+        assertTrue(json.getValue().contains("\"pedidoId\":1"));
+    }
+
+    @Test
+    void deveDevolverRespostaGuardadaSemExecutarDeNovo() throws Exception {
+        when(chaveIdempotenciaRepository.findById("chave-1")).thenReturn(Optional.of(
+                registro(impressao(1), StatusChaveIdempotencia.CONCLUIDA, objectMapper.writeValueAsString(resposta()))));
+
+        PagamentoResponseDTO repetida = idempotenciaService.executar("chave-1", OPERACAO, Map.of("pedidoId", 1),
+                PagamentoResponseDTO.class, this::criar);
+
+        assertEquals(10L, repetida.getId());
+        assertEquals(StatusPagamento.AUTHORIZED, repetida.getStatus());
+        assertEquals(0, execucoes.get());
+        verify(chaveIdempotenciaRepository, never()).reservar(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void deveRejeitarChaveReutilizadaComOutraRequisicao() {
+        when(chaveIdempotenciaRepository.findById("chave-1"))
+                .thenReturn(Optional.of(registro(impressao(1), StatusChaveIdempotencia.CONCLUIDA, "{}")));
+
+        assertThrows(ChaveIdempotenciaReutilizadaException.class, () -> idempotenciaService.executar("chave-1", OPERACAO,
+                Map.of("pedidoId", 2), PagamentoResponseDTO.class, this::criar));
+        assertEquals(0, execucoes.get());
+    }
+
+    @Test
+    void deveLiberarChaveQuandoExecucaoFalha() {
+        when(chaveIdempotenciaRepository.findById("chave-1")).thenReturn(Optional.empty());
+
+        assertThrows(PaymentGatewayException.class, () -> idempotenciaService.executar("chave-1", OPERACAO,
+                Map.of("pedidoId", 1), PagamentoResponseDTO.class, () -> {
+                    throw new PaymentGatewayException("Asaas indisponível");
+                }));
+
+        verify(chaveIdempotenciaRepository).liberar("chave-1", StatusChaveIdempotencia.PROCESSANDO);
+        verify(chaveIdempotenciaRepository, never()).concluir(anyString(), any(), any(), anyString(), any());
+    }
+
+    @Test
+    void deveAguardarExecucaoDeOutraInstanciaEDevolverResultado() throws Exception {
+        // Outra instância reservou entre a consulta e o INSERT e conclui logo depois
+        doThrow(new DataIntegrityViolationException("PK")).when(chaveIdempotenciaRepository)
+                .reservar(anyString(), anyString(), anyString(), any());
+        when(chaveIdempotenciaRepository.findById("chave-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(registro(impressao(1), StatusChaveIdempotencia.PROCESSANDO, null)))
+                .thenReturn(Optional.of(registro(impressao(1), StatusChaveIdempotencia.CONCLUIDA,
+                        objectMapper.writeValueAsString(resposta()))));
+
+        PagamentoResponseDTO recebida = idempotenciaService.executar("chave-1", OPERACAO, Map.of("pedidoId", 1),
+                PagamentoResponseDTO.class, this::criar);
+
+        assertEquals(1L, recebida.getPedidoId());
+        assertEquals(0, execucoes.get());
+    }
+
+    @Test
+    void deveDesistirQuandoExecucaoOriginalNaoTerminaNaEsperaMaxima() {
+        when(chaveIdempotenciaRepository.findById("chave-1"))
+                .thenReturn(Optional.of(registro(impressao(1), StatusChaveIdempotencia.PROCESSANDO, null)));
+
+        assertThrows(RequisicaoEmAndamentoException.class, () -> idempotenciaService.executar("chave-1", OPERACAO,
+                Map.of("pedidoId", 1), PagamentoResponseDTO.class, this::criar));
+        assertEquals(0, execucoes.get());
+    }
+
+    @Test
+    void deveRejeitarChaveVaziaOuLongaDemais() {
+        assertThrows(IllegalArgumentException.class, () -> idempotenciaService.executar(" ", OPERACAO,
+                Map.of(), PagamentoResponseDTO.class, this::criar));
+        assertThrows(IllegalArgumentException.class, () -> idempotenciaService.executar("x".repeat(256), OPERACAO,
+                Map.of(), PagamentoResponseDTO.class, this::criar));
+    }
+
+    private PagamentoResponseDTO criar() {
+        execucoes.incrementAndGet();
+        return resposta();
+    }
+
+    private PagamentoResponseDTO resposta() {
+        PagamentoResponseDTO resposta = new PagamentoResponseDTO();
+        resposta.setId(10L);
+        resposta.setPedidoId(1L);
+        resposta.setStatus(StatusPagamento.AUTHORIZED);
+        return resposta;
+    }
+
+    private String impressao(long pedidoId) {
+        return idempotenciaService.calcularImpressaoDigital(OPERACAO, Map.of("pedidoId", pedidoId));
+    }
+
+    private ChaveIdempotencia registro(String impressaoDigital, StatusChaveIdempotencia status, String resposta) {
+        ChaveIdempotencia registro = new ChaveIdempotencia();
+        registro.setChave("chave-1");
+        registro.setImpressaoDigital(impressaoDigital);
+        registro.setStatus(status);
+        registro.setResposta(resposta);
+        return registro;
+    }
+}
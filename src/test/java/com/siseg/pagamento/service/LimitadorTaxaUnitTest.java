@@ -0,0 +1,36 @@
+package com.siseg.pagamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitadorTaxaUnitTest {
+
+    @Test
+    void deveEspacarChamadasPelaTaxa() throws InterruptedException {
+        LimitadorTaxa limitador = new LimitadorTaxa(20);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limitador.aguardar();
+        }
+        long decorridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        // A primeira passa na hora; as outras cinco esperam 50 ms cada
+        assertTrue(decorridoMs >= 240, "Esperava ao menos 250 ms, levou " + decorridoMs);
+    }
+
+    @Test
+    void naoDeveLimitarComTaxaZero() throws InterruptedException {
+        LimitadorTaxa limitador = new LimitadorTaxa(0);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            limitador.aguardar();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 100);
+    }
+}
@@ -0,0 +1,191 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.NotificarPedidoDTO;
+import com.siseg.pagamento.dto.NotificarPedidosLoteResponseDTO;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificadorPagamentosConfirmadosUnitTest {
+
+    private static final Pattern PEDIDO_ID = Pattern.compile("\"pedidoId\":(\\d+)");
+
+    private HttpServer pedidoServiceStub;
+    private final AtomicInteger chamadasLote = new AtomicInteger();
+    private final AtomicInteger chamadasIndividuais = new AtomicInteger();
+    private volatile boolean loteDisponivel = true;
+    private volatile boolean loteSemCorpo = false;
+    private NotificadorPagamentosConfirmados notificador;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pedidoServiceStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        pedidoServiceStub.createContext("/api/pedidos/pagamentos-confirmados", exchange -> {
+            chamadasLote.incrementAndGet();
+            if (!loteDisponivel) {
+                responder(exchange, 404, "{}");
+                return;
+            }
+            if (loteSemCorpo) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+            // Pedidos pares são recusados, os demais aceitos
+            StringBuilder resultados = new StringBuilder();
+            Matcher matcher = PEDIDO_ID.matcher(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                long pedidoId = Long.parseLong(matcher.group(1));
+                resultados.append(resultados.isEmpty() ? "" : ",")
+                        .append("{\"pedidoId\":").append(pedidoId)
+                        .append(",\"sucesso\":").append(pedidoId % 2 != 0)
+                        .append(",\"erro\":\"pedido cancelado\"}");
+            }
+            responder(exchange, 200, "{\"resultados\":[" + resultados + "]}");
+        });
+        pedidoServiceStub.createContext("/api/pedidos/pagamento-confirmado", exchange -> {
+            chamadasIndividuais.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        pedidoServiceStub.start();
+
+        String baseUrl = "http://localhost:" + pedidoServiceStub.getAddress().getPort();
+        PedidoServiceClient client = new PedidoServiceClient(WebClient.create(baseUrl), "chave-teste");
+        notificador = new NotificadorPagamentosConfirmados(client, 50, 100, 2, 8, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        notificador.encerrar();
+        pedidoServiceStub.stop(0);
+    }
+
+    @Test
+    void deveAgruparNotificacoesSimultaneasEmPoucasChamadas() {
+        List<Mono<Void>> envios = List.of(1L, 3L, 5L, 7L, 9L, 11L, 13L, 15L, 17L, 19L).stream()
+                .map(pedidoId -> notificador.notificar(notificacao(pedidoId)))
+                .toList();
+
+        Flux.merge(envios).blockLast();
+
+        assertTrue(chamadasLote.get() < envios.size(), "Esperava menos chamadas de lote que notificações: " + chamadasLote.get());
+        assertEquals(0, chamadasIndividuais.get());
+    }
+
+    @Test
+    void deveDevolverResultadoDeCadaItemDoLote() {
+        Mono<Void> aceito = notificador.notificar(notificacao(1L)).cache();
+        Mono<Void> recusado = notificador.notificar(notificacao(2L)).cache();
+        aceito.subscribe(ignored -> { }, ignored -> { });
+        recusado.subscribe(ignored -> { }, ignored -> { });
+
+        assertDoesNotThrow(() -> aceito.block());
+        IllegalStateException erro = assertThrows(IllegalStateException.class, recusado::block);
+        assertTrue(erro.getMessage().contains("pedido cancelado"));
+    }
+
+    @Test
+    void deveFalharItensQuandoLoteRespondeSemCorpo() {
+        loteSemCorpo = true;
+
+        Mono<Void> primeiro = notificador.notificar(notificacao(1L)).cache();
+        Mono<Void> segundo = notificador.notificar(notificacao(3L)).cache();
+        primeiro.subscribe(ignored -> { }, ignored -> { });
+        segundo.subscribe(ignored -> { }, ignored -> { });
+
+        for (Mono<Void> envio : List.of(primeiro, segundo)) {
+            IllegalStateException erro = assertThrows(IllegalStateException.class, () -> envio.block(Duration.ofSeconds(5)));
+            assertTrue(erro.getMessage().contains("sem corpo"), erro.getMessage());
+        }
+        assertEquals(1, chamadasLote.get());
+    }
+
+    @Test
+    void loteQueFalhaNaoDeveInterromperNotificacoesSeguintes() {
+        AtomicInteger lotes = new AtomicInteger();
+        String baseUrl = "http://localhost:" + pedidoServiceStub.getAddress().getPort();
+        PedidoServiceClient client = new PedidoServiceClient(WebClient.create(baseUrl), "chave-teste") {
+            @Override
+            public Mono<NotificarPedidosLoteResponseDTO> enviarPagamentosConfirmadosEmLoteReativo(List<NotificarPedidoDTO> notificacoes) {
+                // O primeiro lote falha antes de devolver o Mono
+                if (lotes.getAndIncrement() == 0) {
+                    throw new IllegalArgumentException("lote inválido");
+                }
+                return super.enviarPagamentosConfirmadosEmLoteReativo(notificacoes);
+            }
+        };
+        NotificadorPagamentosConfirmados notificadorComFalha = new NotificadorPagamentosConfirmados(client, 50, 100, 2, 8, 5);
+        try {
+            Mono<Void> primeiro = notificadorComFalha.notificar(notificacao(1L)).cache();
+            Mono<Void> segundo = notificadorComFalha.notificar(notificacao(3L)).cache();
+            primeiro.subscribe(ignored -> { }, ignored -> { });
+            segundo.subscribe(ignored -> { }, ignored -> { });
+            for (Mono<Void> envio : List.of(primeiro, segundo)) {
+                assertThrows(IllegalArgumentException.class, () -> envio.block(Duration.ofSeconds(5)));
+            }
+
+            Mono<Void> terceiro = notificadorComFalha.notificar(notificacao(5L)).cache();
+            Mono<Void> quarto = notificadorComFalha.notificar(notificacao(7L)).cache();
+            terceiro.subscribe(ignored -> { }, ignored -> { });
+            quarto.subscribe(ignored -> { }, ignored -> { });
+            assertDoesNotThrow(() -> terceiro.block(Duration.ofSeconds(5)));
+            assertDoesNotThrow(() -> quarto.block(Duration.ofSeconds(5)));
+            assertEquals(1, chamadasLote.get());
+        } finally {
+            notificadorComFalha.encerrar();
+        }
+    }
+
+    @Test
+    void deveUsarChamadasIndividuaisQuandoLoteNaoExiste() {
+        loteDisponivel = false;
+
+        Flux.merge(notificador.notificar(notificacao(1L)), notificador.notificar(notificacao(2L)), notificador.notificar(notificacao(3L)))
+                .blockLast();
+        assertEquals(1, chamadasLote.get());
+        assertEquals(3, chamadasIndividuais.get());
+
+        // O endpoint de lote não é tentado de novo durante a janela de indisponibilidade
+        Flux.merge(notificador.notificar(notificacao(4L)), notificador.notificar(notificacao(5L))).blockLast();
+        assertEquals(1, chamadasLote.get());
+        assertEquals(5, chamadasIndividuais.get());
+    }
+
+    private NotificarPedidoDTO notificacao(Long pedidoId) {
+        NotificarPedidoDTO notificacao = new NotificarPedidoDTO();
+        notificacao.setPedidoId(pedidoId);
+        notificacao.setStatusPagamento(StatusPagamento.PAID);
+        notificacao.setAsaasPaymentId("pay_" + pedidoId);
+        return notificacao;
+    }
+
+    private void responder(HttpExchange exchange, int status, String corpo) throws IOException {
+        byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
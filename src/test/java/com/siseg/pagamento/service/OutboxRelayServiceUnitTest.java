@@ -0,0 +1,140 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.model.OutboxNotificacao;
+import com.siseg.pagamento.model.enumerations.StatusOutbox;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayServiceUnitTest {
+
+    @Mock
+    private OutboxNotificacaoRepository outboxNotificacaoRepository;
+
+    @Mock
+    private NotificadorPagamentosConfirmados notificador;
+
+    private OutboxRelayService relayService;
+
+    @BeforeEach
+    void setUp() {
+        relayService = new OutboxRelayService(outboxNotificacaoRepository, notificador, 100, 3, 1000, 10000, 24, 200);
+    }
+
+    @Test
+    void deveMarcarComoEnviadaQuandoPedidoServiceResponde() {
+        OutboxNotificacao notificacao = notificacao(1L, 10L);
+        when(outboxNotificacaoRepository.buscarProntasParaEnvio(eq(StatusOutbox.PENDENTE), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(notificacao));
+        reservarTodas();
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 10L))).thenReturn(Mono.empty());
+
+        assertEquals(1, relayService.processarLote());
+
+        assertEquals(StatusOutbox.ENVIADA, notificacao.getStatus());
+        assertNotNull(notificacao.getEnviadoEm());
+        verify(outboxNotificacaoRepository).saveAll(List.of(notificacao));
+    }
+
+    @Test
+    void deveReagendarComBackoffQuandoEnvioFalha() {
+        OutboxNotificacao falha = notificacao(1L, 10L);
+        OutboxNotificacao sucesso = notificacao(2L, 20L);
+        when(outboxNotificacaoRepository.buscarProntasParaEnvio(eq(StatusOutbox.PENDENTE), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(falha, sucesso));
+        reservarTodas();
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 10L)))
+                .thenReturn(Mono.error(new IllegalStateException("503 Service Unavailable")));
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 20L))).thenReturn(Mono.empty());
+
+        Instant antes = Instant.now();
+        relayService.processarLote();
+
+        assertEquals(StatusOutbox.PENDENTE, falha.getStatus());
+        assertEquals(1, falha.getTentativas());
+        assertTrue(falha.getProximaTentativaEm().isAfter(antes.plusMillis(900)));
+        assertTrue(falha.getUltimoErro().contains("503"));
+        assertEquals(StatusOutbox.ENVIADA, sucesso.getStatus());
+    }
+
+    @Test
+    void deveMarcarFalhaAoEsgotarTentativas() {
+        OutboxNotificacao notificacao = notificacao(1L, 10L);
+        notificacao.setTentativas(2);
+        when(outboxNotificacaoRepository.buscarProntasParaEnvio(eq(StatusOutbox.PENDENTE), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(notificacao));
+        reservarTodas();
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 10L)))
+                .thenReturn(Mono.error(new IllegalStateException("Connection refused")));
+
+        relayService.processarLote();
+
+        assertEquals(StatusOutbox.FALHA, notificacao.getStatus());
+        assertEquals(3, notificacao.getTentativas());
+    }
+
+    @Test
+    void deveReagendarQuandoNotificacaoNaoTemResposta() {
+        OutboxNotificacao notificacao = notificacao(1L, 10L);
+        when(outboxNotificacaoRepository.buscarProntasParaEnvio(eq(StatusOutbox.PENDENTE), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(notificacao));
+        reservarTodas();
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 10L))).thenReturn(Mono.never());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> relayService.processarLote());
+
+        assertEquals(StatusOutbox.PENDENTE, notificacao.getStatus());
+        assertEquals(1, notificacao.getTentativas());
+        assertTrue(notificacao.getUltimoErro().contains("Timeout"));
+    }
+
+    @Test
+    void naoDeveEnviarNotificacaoReservadaPorOutraInstancia() {
+        OutboxNotificacao livre = notificacao(1L, 10L);
+        OutboxNotificacao reservada = notificacao(2L, 20L);
+        when(outboxNotificacaoRepository.buscarProntasParaEnvio(eq(StatusOutbox.PENDENTE), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(livre, reservada));
+        when(outboxNotificacaoRepository.reservar(eq(1L), eq(StatusOutbox.PENDENTE), any(Instant.class), any(Instant.class))).thenReturn(1);
+        when(outboxNotificacaoRepository.reservar(eq(2L), eq(StatusOutbox.PENDENTE), any(Instant.class), any(Instant.class))).thenReturn(0);
+        when(notificador.notificar(argThat(n -> n != null && n.getPedidoId() == 10L))).thenReturn(Mono.empty());
+
+        assertEquals(2, relayService.processarLote());
+
+        verify(notificador, times(1)).notificar(any());
+        verify(outboxNotificacaoRepository).saveAll(List.of(livre));
+        assertEquals(StatusOutbox.PENDENTE, reservada.getStatus());
+    }
+
+    @Test
+    void deveDobrarBackoffAteOLimite() {
+        assertEquals(Duration.ofSeconds(1), relayService.calcularBackoff(1));
+        assertEquals(Duration.ofSeconds(2), relayService.calcularBackoff(2));
+        assertEquals(Duration.ofSeconds(8), relayService.calcularBackoff(4));
+        assertEquals(Duration.ofSeconds(10), relayService.calcularBackoff(5));
+        assertEquals(Duration.ofSeconds(10), relayService.calcularBackoff(60));
+    }
+
+    private void reservarTodas() {
+        when(outboxNotificacaoRepository.reservar(anyLong(), eq(StatusOutbox.PENDENTE), any(Instant.class), any(Instant.class))).thenReturn(1);
+    }
+
+    private OutboxNotificacao notificacao(Long id, Long pedidoId) {
+        OutboxNotificacao notificacao = OutboxNotificacao.pagamentoConfirmado(pedidoId, "pay_" + pedidoId);
+        notificacao.setId(id);
+        return notificacao;
+    }
+}
@@ -0,0 +1,142 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.PagamentoResponseDTO;
+import com.siseg.pagamento.event.PagamentoAlteradoEvent;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagamentoCacheUnitTest {
+
+    private PagamentoCache pagamentoCache;
+    private final AtomicInteger carregamentos = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        pagamentoCache = new PagamentoCache(2, 5, 10);
+    }
+
+    @Test
+    void deveResponderDoCacheSemCarregarNovamente() {
+        PagamentoResponseDTO primeiro = pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.PAID));
+        PagamentoResponseDTO segundo = pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.PAID));
+
+        assertSame(primeiro, segundo);
+        assertEquals(1, carregamentos.get());
+        assertEquals(0.5, pagamentoCache.getTaxaAcerto());
+    }
+
+    @Test
+    void deveCarregarNovamenteAposInvalidacao() {
+        pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.PAID));
+
+        pagamentoCache.aoAlterarPagamento(new PagamentoAlteradoEvent(1L));
+        PagamentoResponseDTO atual = pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.REFUNDED));
+
+        assertEquals(StatusPagamento.REFUNDED, atual.getStatus());
+        assertEquals(2, carregamentos.get());
+    }
+
+    @Test
+    void naoDeveGuardarLeituraConcorrenteComInvalidacao() {
+        pagamentoCache.buscar(1L, id -> {
+            // Commit de uma escrita enquanto a leitura estava em andamento
+            pagamentoCache.invalidar(id);
+            return carregar(id, StatusPagamento.AUTHORIZED);
+        });
+
+        assertEquals(0, pagamentoCache.getTamanho());
+    }
+
+    @Test
+    void naoDeveGuardarPagamentoEmProcessamentoOuPixSemQrCode() {
+        pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.PROCESSING));
+        pagamentoCache.buscar(2L, id -> {
+            PagamentoResponseDTO pix = carregar(id, StatusPagamento.AUTHORIZED);
+            pix.setMetodo(MetodoPagamento.PIX);
+            return pix;
+        });
+
+        assertEquals(0, pagamentoCache.getTamanho());
+    }
+
+    @Test
+    void deveRemoverMenosRecenteAoAtingirCapacidade() {
+        pagamentoCache.buscar(1L, id -> carregar(id, StatusPagamento.PAID));
+        pagamentoCache.buscar(2L, id -> carregar(id, StatusPagamento.PAID));
+        pagamentoCache.buscar(3L, id -> carregar(id, StatusPagamento.PAID));
+
+        assertEquals(2, pagamentoCache.getTamanho());
+        assertEquals(1, pagamentoCache.getRemocoesCapacidade());
+    }
+
+    @Test
+    void deveExpirarPagamentoEmAbertoAntesDoFinal() {
+        PagamentoCache semTtlAberto = new PagamentoCache(10, 0, 10);
+        semTtlAberto.buscar(1L, id -> carregar(id, StatusPagamento.AUTHORIZED));
+        semTtlAberto.buscar(2L, id -> carregar(id, StatusPagamento.PAID));
+
+        semTtlAberto.buscar(1L, id -> carregar(id, StatusPagamento.AUTHORIZED));
+        semTtlAberto.buscar(2L, id -> carregar(id, StatusPagamento.PAID));
+
+        assertEquals(3, carregamentos.get());
+        assertEquals(1, semTtlAberto.getRemocoesExpiracao());
+    }
+
+    @Test
+    void deveCompartilharLeituraEntreConsultasSimultaneas() throws InterruptedException {
+        int consultas = 10;
+        CountDownLatch largada = new CountDownLatch(1);
+        CountDownLatch concluidas = new CountDownLatch(consultas);
+        ExecutorService executor = Executors.newFixedThreadPool(consultas);
+        try {
+            for (int i = 0; i < consultas; i++) {
+                executor.execute(() -> {
+                    try {
+                        largada.await();
+                        pagamentoCache.buscar(1L, id -> {
+                            aguardar(200);
+                            return carregar(id, StatusPagamento.AUTHORIZED);
+                        });
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        concluidas.countDown();
+                    }
+                });
+            }
+            largada.countDown();
+            assertTrue(concluidas.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, carregamentos.get());
+    }
+
+    private void aguardar(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PagamentoResponseDTO carregar(Long pedidoId, StatusPagamento status) {
+        carregamentos.incrementAndGet();
+        PagamentoResponseDTO pagamento = new PagamentoResponseDTO();
+        pagamento.setPedidoId(pedidoId);
+        pagamento.setMetodo(MetodoPagamento.CREDIT_CARD);
+        pagamento.setStatus(status);
+        return pagamento;
+    }
+}
@@ -0,0 +1,234 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoLoteRepository;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PagamentoLoteServiceUnitTest {
+
+    @Mock
+    private PagamentoRepository pagamentoRepository;
+
+    @Mock
+    private PagamentoLoteRepository pagamentoLoteRepository;
+
+    @Mock
+    private PagamentoService pagamentoService;
+
+    @Mock
+    private AsaasService asaasService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong proximoId = new AtomicLong(1);
+    private PagamentoLoteService pagamentoLoteService;
+
+    @BeforeEach
+    void setUp() {
+        pagamentoLoteService = new PagamentoLoteService(pagamentoRepository, pagamentoLoteRepository, pagamentoService,
+                asaasService, eventPublisher, 2);
+
+        lenient().when(pagamentoService.toResponse(any()))
+                .thenAnswer(invocation -> new PagamentoMapper().toPagamentoResponse(invocation.getArgument(0)));
+        lenient().doAnswer(invocation -> {
+            List<Pagamento> pagamentos = invocation.getArgument(0);
+            pagamentos.forEach(pagamento -> pagamento.setId(proximoId.getAndIncrement()));
+            return null;
+        }).when(pagamentoLoteRepository).inserir(anyList());
+        lenient().when(pagamentoLoteRepository.concluirCriacao(anyList(), eq(StatusPagamento.PROCESSING)))
+                .thenAnswer(invocation -> {
+                    boolean[] concluidos = new boolean[invocation.<List<?>>getArgument(0).size()];
+                    Arrays.fill(concluidos, true);
+                    return concluidos;
+                });
+        lenient().when(asaasService.buscarOuCriarClienteReativo(any()))
+                .thenAnswer(invocation -> Mono.just("cus_" + invocation.<ClienteInfoDTO>getArgument(0).getEmail()));
+        lenient().when(asaasService.criarPagamentoPixReativo(anyLong(), any(), anyString()))
+                .thenAnswer(invocation -> Mono.just(respostaAsaas("pay_" + invocation.getArgument(0), invocation.getArgument(2))));
+    }
+
+    @Test
+    void deveCriarPagamentosEDevolverResultadoPorItem() {
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(2L, MetodoPagamento.CASH, "b@siseg.com"),
+                item(3L, MetodoPagamento.PIX, "c@siseg.com")), "127.0.0.1");
+
+        assertEquals(3, response.getResultados().size());
+        assertTrue(response.getResultados().stream().allMatch(CriarPagamentosLoteResponseDTO.ResultadoDTO::isSucesso));
+        assertEquals(List.of(1L, 2L, 3L), response.getResultados().stream().map(CriarPagamentosLoteResponseDTO.ResultadoDTO::getPedidoId).toList());
+        assertEquals(StatusPagamento.AUTHORIZED, response.getResultados().get(0).getPagamento().getStatus());
+        assertEquals(1L, response.getResultados().get(0).getPagamento().getId());
+        assertEquals(StatusPagamento.PENDING, response.getResultados().get(1).getPagamento().getStatus());
+
+        // Um INSERT em lote e um UPDATE em lote para o lote inteiro
+        verify(pagamentoLoteRepository, times(1)).inserir(argThat(pagamentos -> pagamentos.size() == 3));
+        verify(pagamentoLoteRepository, times(1)).concluirCriacao(argThat(pagamentos -> pagamentos.size() == 2), eq(StatusPagamento.PROCESSING));
+        verify(eventPublisher, times(2)).publishEvent(any(PagamentoPixCriadoEvent.class));
+        verify(pagamentoRepository, never()).removerTodosSeStatus(anyList(), any());
+    }
+
+    @Test
+    void deveCompartilharBuscaDeClienteEntreItensDoMesmoCliente() {
+        pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "buffet@siseg.com"),
+                item(2L, MetodoPagamento.PIX, "Buffet@siseg.com"),
+                item(3L, MetodoPagamento.PIX, "buffet@siseg.com"),
+                item(4L, MetodoPagamento.PIX, "outro@siseg.com")), "127.0.0.1");
+
+        verify(asaasService, times(2)).buscarOuCriarClienteReativo(any());
+        verify(asaasService, times(4)).criarPagamentoPixReativo(anyLong(), any(), anyString());
+    }
+
+    @Test
+    void falhaDeUmItemNaoDeveInterromperOsDemais() {
+        when(asaasService.criarPagamentoPixReativo(eq(2L), any(), anyString()))
+                .thenReturn(Mono.error(new PaymentGatewayException("Cliente bloqueado")));
+
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(2L, MetodoPagamento.PIX, "b@siseg.com"),
+                item(3L, MetodoPagamento.PIX, "c@siseg.com")), "127.0.0.1");
+
+        assertTrue(response.getResultados().get(0).isSucesso());
+        assertFalse(response.getResultados().get(1).isSucesso());
+        assertEquals("Cliente bloqueado", response.getResultados().get(1).getErro());
+        assertNull(response.getResultados().get(1).getPagamento());
+        assertTrue(response.getResultados().get(2).isSucesso());
+        // O registro PROCESSING do item recusado é removido, liberando o pedido
+        verify(pagamentoRepository).removerTodosSeStatus(List.of(2L), StatusPagamento.PROCESSING);
+    }
+
+    @Test
+    void falhaDeComunicacaoDeveManterPagamentoParaRecuperacao() {
+        when(asaasService.criarPagamentoPixReativo(eq(1L), any(), anyString()))
+                .thenReturn(Mono.error(new WebClientRequestException(new IOException("Connection reset"),
+                        HttpMethod.POST, URI.create("https://asaas/payments"), new HttpHeaders())));
+
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "a@siseg.com")), "127.0.0.1");
+
+        assertFalse(response.getResultados().get(0).isSucesso());
+        verify(pagamentoRepository, never()).removerTodosSeStatus(anyList(), any());
+        verify(pagamentoLoteRepository, never()).concluirCriacao(anyList(), any());
+    }
+
+    @Test
+    void erroDoServidorDeveManterPagamentoParaRecuperacaoERecusaDeveLiberarPedido() {
+        when(asaasService.criarPagamentoPixReativo(eq(1L), any(), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(504, "Gateway Timeout", new HttpHeaders(), new byte[0], null)));
+        when(asaasService.criarPagamentoPixReativo(eq(2L), any(), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(400, "Bad Request", new HttpHeaders(), new byte[0], null)));
+
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(2L, MetodoPagamento.PIX, "b@siseg.com")), "127.0.0.1");
+
+        assertFalse(response.getResultados().get(0).isSucesso());
+        assertFalse(response.getResultados().get(1).isSucesso());
+        // Só o item recusado (4xx) é removido; o do 5xx fica em PROCESSING para a recuperação
+        verify(pagamentoRepository).removerTodosSeStatus(List.of(2L), StatusPagamento.PROCESSING);
+        verify(pagamentoLoteRepository, never()).concluirCriacao(anyList(), any());
+    }
+
+    @Test
+    void deveRejeitarPedidoRepetidoOuJaPagoSemChamarAsaas() {
+        when(pagamentoRepository.buscarPedidosComPagamento(anyCollection())).thenReturn(List.of(5L));
+        CriarPagamentoCompletoRequestDTO cartaoSemCep = item(6L, MetodoPagamento.CREDIT_CARD, "d@siseg.com");
+        cartaoSemCep.getPagamento().setCartaoCredito(new CartaoCreditoRequestDTO());
+
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(4L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(4L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(5L, MetodoPagamento.PIX, "b@siseg.com"),
+                cartaoSemCep), "127.0.0.1");
+
+        assertTrue(response.getResultados().get(0).isSucesso());
+        assertTrue(response.getResultados().get(1).getErro().contains("repetido"));
+        assertTrue(response.getResultados().get(2).getErro().contains("Já existe pagamento"));
+        assertTrue(response.getResultados().get(3).getErro().contains("CEP"));
+        verify(pagamentoLoteRepository).inserir(argThat(pagamentos -> pagamentos.size() == 1));
+        verify(asaasService, times(1)).criarPagamentoPixReativo(anyLong(), any(), anyString());
+    }
+
+    @Test
+    void deveLimitarChamadasSimultaneasAoAsaas() {
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(), anyString()))
+                .thenAnswer(invocation -> Mono.defer(() -> {
+                            maximo.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+                            return Mono.delay(Duration.ofMillis(30)).map(ignored -> {
+                                emAndamento.decrementAndGet();
+                                return respostaAsaas("pay_" + invocation.getArgument(0), invocation.getArgument(2));
+                            });
+                        }));
+
+        CriarPagamentosLoteResponseDTO response = pagamentoLoteService.criarPagamentos(List.of(
+                item(1L, MetodoPagamento.PIX, "a@siseg.com"),
+                item(2L, MetodoPagamento.PIX, "b@siseg.com"),
+                item(3L, MetodoPagamento.PIX, "c@siseg.com"),
+                item(4L, MetodoPagamento.PIX, "d@siseg.com"),
+                item(5L, MetodoPagamento.PIX, "e@siseg.com"),
+                item(6L, MetodoPagamento.PIX, "f@siseg.com")), "127.0.0.1");
+
+        assertTrue(response.getResultados().stream().allMatch(CriarPagamentosLoteResponseDTO.ResultadoDTO::isSucesso));
+        assertEquals(2, maximo.get());
+    }
+
+    private CriarPagamentoCompletoRequestDTO item(Long pedidoId, MetodoPagamento metodo, String email) {
+        CriarPagamentoRequestDTO pagamento = new CriarPagamentoRequestDTO();
+        pagamento.setPedidoId(pedidoId);
+        pagamento.setMetodoPagamento(metodo);
+        pagamento.setValor(new BigDecimal("50.00"));
+
+        ClienteInfoDTO cliente = new ClienteInfoDTO();
+        cliente.setNome("Cliente " + pedidoId);
+        cliente.setEmail(email);
+
+        CriarPagamentoCompletoRequestDTO request = new CriarPagamentoCompletoRequestDTO();
+        request.setPagamento(pagamento);
+        request.setCliente(cliente);
+        return request;
+    }
+
+    private AsaasPaymentResponseDTO respostaAsaas(String id, String customer) {
+        AsaasPaymentResponseDTO resposta = new AsaasPaymentResponseDTO();
+        resposta.setId(id);
+        resposta.setCustomer(customer);
+        resposta.setStatus("PENDING");
+        return resposta;
+    }
+}
@@ -0,0 +1,93 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PagamentoRecuperacaoServiceUnitTest {
+
+    @Mock
+    private PagamentoRepository pagamentoRepository;
+
+    @Mock
+    private AsaasService asaasService;
+
+    @Mock
+    private PagamentoService pagamentoService;
+
+    private PagamentoRecuperacaoService recuperacaoService;
+    private Pagamento pagamento;
+
+    @BeforeEach
+    void setUp() {
+        recuperacaoService = new PagamentoRecuperacaoService(pagamentoRepository, asaasService, pagamentoService, 120);
+
+        pagamento = new Pagamento();
+        pagamento.setId(1L);
+        pagamento.setPedidoId(10L);
+        pagamento.setMetodo(MetodoPagamento.PIX);
+        pagamento.setValor(new BigDecimal("100.00"));
+        pagamento.setStatus(StatusPagamento.PROCESSING);
+    }
+
+    @Test
+    void deveConcluirPagamentoQuandoCobrancaExisteNoAsaas() {
+        AsaasPaymentResponseDTO cobranca = new AsaasPaymentResponseDTO();
+        cobranca.setId("pay_123456");
+        cobranca.setCustomer("cus_123456");
+        when(pagamentoRepository.findByStatusAndCriadoEmBefore(eq(StatusPagamento.PROCESSING), any(Instant.class)))
+                .thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoPorPedido(10L)).thenReturn(cobranca);
+        when(pagamentoService.concluirCriacao(pagamento, cobranca)).thenReturn(true);
+
+        recuperacaoService.recuperarPagamentosPendentes();
+
+        verify(pagamentoService).concluirCriacao(pagamento, cobranca);
+        verify(pagamentoRepository, never()).removerSeStatus(anyLong(), any());
+    }
+
+    @Test
+    void deveRemoverPagamentoQuandoCobrancaNaoExisteNoAsaas() {
+        when(pagamentoRepository.findByStatusAndCriadoEmBefore(eq(StatusPagamento.PROCESSING), any(Instant.class)))
+                .thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoPorPedido(10L)).thenReturn(null);
+
+        recuperacaoService.recuperarPagamentosPendentes();
+
+        verify(pagamentoRepository).removerSeStatus(1L, StatusPagamento.PROCESSING);
+        verify(pagamentoService, never()).concluirCriacao(any(), any());
+    }
+
+    @Test
+    void deveManterPagamentoQuandoAsaasIndisponivel() {
+        Pagamento outro = new Pagamento();
+        outro.setId(2L);
+        outro.setPedidoId(20L);
+        outro.setStatus(StatusPagamento.PROCESSING);
+        when(pagamentoRepository.findByStatusAndCriadoEmBefore(eq(StatusPagamento.PROCESSING), any(Instant.class)))
+                .thenReturn(List.of(pagamento, outro));
+        when(asaasService.buscarPagamentoPorPedido(10L)).thenThrow(new PaymentGatewayException("Erro de conexão"));
+        when(asaasService.buscarPagamentoPorPedido(20L)).thenReturn(null);
+
+        recuperacaoService.recuperarPagamentosPendentes();
+
+        verify(pagamentoRepository, never()).removerSeStatus(1L, StatusPagamento.PROCESSING);
+        verify(pagamentoRepository).removerSeStatus(2L, StatusPagamento.PROCESSING);
+    }
+}
@@ -1,22 +1,43 @@
 package com.siseg.pagamento.service;
 
 import com.siseg.pagamento.dto.*;
+import com.siseg.pagamento.event.PagamentoPixCriadoEvent;
 import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.exception.PrazoEsgotadoException;
+import com.siseg.pagamento.exception.RequisicaoEmAndamentoException;
 import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.mapper.PagamentoMapper;
 import com.siseg.pagamento.model.Pagamento;
 import com.siseg.pagamento.model.enumerations.MetodoPagamento;
 import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.model.OutboxNotificacao;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
 import com.siseg.pagamento.repository.PagamentoRepository;
 import com.siseg.pagamento.validator.PagamentoValidator;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,8 +50,8 @@ class PagamentoServiceUnitTest {
     @Mock
     private PagamentoRepository pagamentoRepository;
 
-    @Mock
-    private ModelMapper modelMapper;
+    @Spy
+    private PagamentoMapper pagamentoMapper = new PagamentoMapper();
 
     @Mock
     private PagamentoValidator pagamentoValidator;
@@ -38,13 +59,27 @@ class PagamentoServiceUnitTest {
     @Mock
     private AsaasService asaasService;
 
+    @Mock
+    private PixQrCodeService pixQrCodeService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OutboxNotificacaoRepository outboxNotificacaoRepository;
+
+    @Mock
+    private Tracer tracer;
+
+    @Spy
+    private PagamentoCache pagamentoCache = new PagamentoCache(100, 5, 10);
+
     @InjectMocks
     private PagamentoService pagamentoService;
 
     private CriarPagamentoRequestDTO criarPagamentoRequest;
     private ClienteInfoDTO clienteInfo;
     private Pagamento pagamento;
-    private PagamentoResponseDTO pagamentoResponseDTO;
     private AsaasPaymentResponseDTO asaasPaymentResponse;
     private AsaasQrCodeResponseDTO asaasQrCodeResponse;
 
@@ -70,11 +105,6 @@ class PagamentoServiceUnitTest {
         pagamento.setValor(new BigDecimal("100.00"));
         pagamento.setStatus(StatusPagamento.PENDING);
 
-        pagamentoResponseDTO = new PagamentoResponseDTO();
-        pagamentoResponseDTO.setId(1L);
-        pagamentoResponseDTO.setPedidoId(1L);
-        pagamentoResponseDTO.setStatus(StatusPagamento.PENDING);
-        pagamentoResponseDTO.setValor(new BigDecimal("100.00"));
 
         asaasPaymentResponse = new AsaasPaymentResponseDTO();
         asaasPaymentResponse.setId("pay_123456");
@@ -93,17 +123,45 @@ class PagamentoServiceUnitTest {
             p.setId(1L);
             return p;
         });
-        when(modelMapper.map(any(Pagamento.class), eq(PagamentoResponseDTO.class))).thenReturn(pagamentoResponseDTO);
-        when(asaasService.buscarOuCriarCliente(any(ClienteInfoDTO.class))).thenReturn("cus_123456");
-        when(asaasService.criarPagamentoPix(anyLong(), any(BigDecimal.class), anyString())).thenReturn(asaasPaymentResponse);
-        when(asaasService.buscarQrCodePix(anyString())).thenReturn(asaasQrCodeResponse);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString())).thenReturn(Mono.just(asaasPaymentResponse));
+        when(pagamentoRepository.concluirCriacao(eq(1L), eq(StatusPagamento.PROCESSING), eq(StatusPagamento.AUTHORIZED),
+                eq("pay_123456"), eq("cus_123456"), any())).thenReturn(1);
 
-        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null);
+        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo());
 
         assertNotNull(result);
         verify(pagamentoRepository, times(1)).save(any(Pagamento.class));
-        verify(asaasService, times(1)).criarPagamentoPix(eq(1L), eq(new BigDecimal("100.00")), eq("cus_123456"));
-        verify(asaasService, times(1)).buscarQrCodePix("pay_123456");
+        verify(pagamentoRepository, times(1)).concluirCriacao(eq(1L), eq(StatusPagamento.PROCESSING), eq(StatusPagamento.AUTHORIZED),
+                eq("pay_123456"), eq("cus_123456"), any());
+        verify(asaasService, times(1)).criarPagamentoPixReativo(eq(1L), eq(new BigDecimal("100.00")), eq("cus_123456"));
+        verify(asaasService, never()).buscarQrCodePix(anyString());
+        verify(eventPublisher, times(1)).publishEvent(new PagamentoPixCriadoEvent(1L, "pay_123456"));
+    }
+
+    @Test
+    void deveAgendarBuscaQuandoQrCodePixNaoEstaPronto() {
+        pagamento.setAsaasPaymentId("pay_123456");
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+
+        PixQrCodeResponseDTO result = pagamentoService.buscarQrCodePix(1L);
+
+        assertFalse(result.isPronto());
+        verify(pixQrCodeService, times(1)).agendarBusca(1L, "pay_123456");
+    }
+
+    @Test
+    void deveRetornarQrCodePixQuandoPronto() {
+        pagamento.setAsaasPaymentId("pay_123456");
+        pagamento.setQrCode(asaasQrCodeResponse.getPayload());
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+
+        PixQrCodeResponseDTO result = pagamentoService.buscarQrCodePix(1L);
+
+        assertTrue(result.isPronto());
+        assertEquals(asaasQrCodeResponse.getPayload(), result.getQrCode());
+        assertEquals("/api/pagamentos/pedidos/1/qrcode", result.getQrCodeImageUrl());
+        verify(pixQrCodeService, never()).agendarBusca(anyLong(), anyString());
     }
 
     @Test
@@ -127,16 +185,17 @@ class PagamentoServiceUnitTest {
             p.setId(1L);
             return p;
         });
-        when(modelMapper.map(any(Pagamento.class), eq(PagamentoResponseDTO.class))).thenReturn(pagamentoResponseDTO);
-        when(asaasService.buscarOuCriarCliente(any(ClienteInfoDTO.class))).thenReturn("cus_123456");
-        when(asaasService.criarPagamentoCartao(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString()))
-                .thenReturn(asaasPaymentResponse);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoCartaoReativo(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString()))
+                .thenReturn(Mono.just(asaasPaymentResponse));
+        when(pagamentoRepository.concluirCriacao(eq(1L), eq(StatusPagamento.PROCESSING), eq(StatusPagamento.AUTHORIZED),
+                eq("pay_123456"), eq("cus_123456"), any())).thenReturn(1);
 
-        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, "127.0.0.1");
+        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, "127.0.0.1", prazo());
 
         assertNotNull(result);
         verify(pagamentoRepository, times(1)).save(any(Pagamento.class));
-        verify(asaasService, times(1)).criarPagamentoCartao(eq(1L), eq(new BigDecimal("100.00")), eq("cus_123456"), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), eq("127.0.0.1"));
+        verify(asaasService, times(1)).criarPagamentoCartaoReativo(eq(1L), eq(new BigDecimal("100.00")), eq("cus_123456"), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), eq("127.0.0.1"));
     }
 
     @Test
@@ -145,7 +204,7 @@ class PagamentoServiceUnitTest {
         criarPagamentoRequest.setCartaoCredito(null);
 
         assertThrows(IllegalArgumentException.class,
-                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null));
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
     }
 
     @Test
@@ -157,34 +216,180 @@ class PagamentoServiceUnitTest {
             p.setId(1L);
             return p;
         });
-        when(modelMapper.map(any(Pagamento.class), eq(PagamentoResponseDTO.class))).thenReturn(pagamentoResponseDTO);
 
-        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null);
+        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo());
 
         assertNotNull(result);
         verify(pagamentoRepository, times(1)).save(any(Pagamento.class));
-        verify(asaasService, never()).criarPagamentoPix(anyLong(), any(BigDecimal.class), anyString());
-        verify(asaasService, never()).criarPagamentoCartao(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString());
+        verify(asaasService, never()).criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString());
+        verify(asaasService, never()).criarPagamentoCartaoReativo(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString());
     }
 
     @Test
     void deveLancarExcecaoQuandoErroNaApiAsaas() {
-        when(asaasService.buscarOuCriarCliente(any(ClienteInfoDTO.class)))
-                .thenThrow(new PaymentGatewayException("Erro de conexão com o gateway de pagamento"));
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class)))
+                .thenReturn(Mono.error(new PaymentGatewayException("Erro de conexão com o gateway de pagamento")));
+
+        assertThrows(PaymentGatewayException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+        verify(pagamentoRepository, times(1)).removerSeStatus(1L, StatusPagamento.PROCESSING);
+    }
+
+    @Test
+    void deveManterPagamentoEmProcessamentoQuandoCriacaoFalhaSemResposta() {
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString()))
+                .thenReturn(Mono.error(new WebClientRequestException(new IOException("Connection reset"),
+                        HttpMethod.POST, URI.create("https://api-sandbox.asaas.com/v3/payments"), new HttpHeaders())));
 
         assertThrows(PaymentGatewayException.class,
-                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null));
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+        verify(pagamentoRepository, never()).removerSeStatus(anyLong(), any());
+        verify(pagamentoRepository, never()).concluirCriacao(anyLong(), any(), any(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void deveManterPagamentoEmProcessamentoQuandoAsaasRespondeErroDoServidor() {
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(502, "Bad Gateway", new HttpHeaders(), new byte[0], null)));
+
+        assertThrows(PaymentGatewayException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+        verify(pagamentoRepository, never()).removerSeStatus(anyLong(), any());
+        verify(pagamentoRepository, never()).concluirCriacao(anyLong(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deveManterPagamentoCartaoEmProcessamentoQuandoAsaasRespondeErroDoServidor() {
+        prepararPagamentoCartao();
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoCartaoReativo(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(503, "Service Unavailable", new HttpHeaders(), new byte[0], null)));
+
+        assertThrows(PaymentGatewayException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, "127.0.0.1", prazo()));
+        verify(pagamentoRepository, never()).removerSeStatus(anyLong(), any());
+    }
+
+    @Test
+    void deveLiberarPedidoQuandoAsaasRecusaCobranca() {
+        prepararPagamentoCartao();
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoCartaoReativo(anyLong(), any(BigDecimal.class), anyString(), any(CartaoCreditoRequestDTO.class), any(ClienteInfoDTO.class), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(400, "Bad Request", new HttpHeaders(),
+                        "{\"errors\":[{\"code\":\"invalid_creditCard\"}]}".getBytes(), null)));
+
+        assertThrows(PaymentGatewayException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, "127.0.0.1", prazo()));
+        verify(pagamentoRepository, times(1)).removerSeStatus(1L, StatusPagamento.PROCESSING);
+    }
+
+    @Test
+    void naoDeveIniciarCriacaoComPrazoJaEsgotado() {
+        assertThrows(PrazoEsgotadoException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, Prazo.em(Duration.ZERO)));
+        verify(pagamentoRepository, never()).save(any(Pagamento.class));
+        verify(asaasService, never()).buscarOuCriarClienteReativo(any());
+    }
+
+    @Test
+    void deveLiberarPedidoQuandoPrazoEsgotaAntesDaCobranca() {
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class)))
+                .thenReturn(Mono.delay(Duration.ofSeconds(5)).thenReturn("cus_123456"));
+
+        assertThrows(PrazoEsgotadoException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, Prazo.em(Duration.ofMillis(100))));
+        verify(asaasService, never()).criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString());
+        verify(pagamentoRepository, times(1)).removerSeStatus(1L, StatusPagamento.PROCESSING);
+    }
+
+    @Test
+    void deveDarACobrancaSoORestanteDoPrazoEManterPagamentoParaRecuperacao() {
+        when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class)))
+                .thenReturn(Mono.delay(Duration.ofMillis(100)).thenReturn("cus_123456"));
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString()))
+                .thenReturn(Mono.delay(Duration.ofMillis(200)).thenReturn(asaasPaymentResponse));
+
+        // 200 ms de cobrança caberiam no prazo inteiro, mas não no que sobra depois do cliente
+        long inicio = System.nanoTime();
+        assertThrows(PrazoEsgotadoException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, Prazo.em(Duration.ofMillis(250))));
+        assertTrue(Duration.ofNanos(System.nanoTime() - inicio).toMillis() < 290);
+        // A cobrança pode ter sido criada: o registro fica em PROCESSING para a recuperação
+        verify(pagamentoRepository, never()).removerSeStatus(anyLong(), any());
+        verify(pagamentoRepository, never()).concluirCriacao(anyLong(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deveDevolverPagamentoExistenteNaRepeticaoAposPrazoEsgotado() {
+        when(pagamentoRepository.save(any(Pagamento.class))).thenAnswer(invocation -> {
+            Pagamento p = invocation.getArgument(0);
+            p.setId(1L);
+            return p;
+        });
+        when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class))).thenReturn(Mono.just("cus_123456"));
+        when(asaasService.criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString()))
+                .thenReturn(Mono.delay(Duration.ofMillis(500)).thenReturn(asaasPaymentResponse));
+
+        assertThrows(PrazoEsgotadoException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, Prazo.em(Duration.ofMillis(100))));
+
+        // Repetição enquanto a recuperação ainda não resolveu o registro
+        pagamento.setStatus(StatusPagamento.PROCESSING);
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+        assertThrows(RequisicaoEmAndamentoException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+
+        // Repetição depois que a recuperação encontrou a cobrança no Asaas
+        pagamento.setStatus(StatusPagamento.AUTHORIZED);
+        pagamento.setAsaasPaymentId("pay_123456");
+        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo());
+
+        assertEquals(StatusPagamento.AUTHORIZED, result.getStatus());
+        verify(pagamentoRepository, times(1)).save(any(Pagamento.class));
+        verify(asaasService, times(1)).criarPagamentoPixReativo(anyLong(), any(BigDecimal.class), anyString());
+    }
+
+    @Test
+    void deveDevolverPagamentoCriadoPorRequisicaoConcorrente() {
+        pagamento.setStatus(StatusPagamento.AUTHORIZED);
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.empty(), Optional.of(pagamento));
+        when(pagamentoRepository.save(any(Pagamento.class))).thenThrow(new DataIntegrityViolationException("uk_pagamentos_pedido_id"));
+
+        PagamentoResponseDTO result = pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo());
+
+        assertEquals(StatusPagamento.AUTHORIZED, result.getStatus());
+        verifyNoInteractions(asaasService);
+    }
+
+    @Test
+    void deveRecusarCriacaoQuandoPedidoJaTemOutroPagamento() {
+        pagamento.setMetodo(MetodoPagamento.CASH);
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+        verify(pagamentoRepository, never()).save(any(Pagamento.class));
     }
 
     @Test
     void deveBuscarPagamentoPorPedidoComSucesso() {
         when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
-        when(modelMapper.map(any(Pagamento.class), eq(PagamentoResponseDTO.class))).thenReturn(pagamentoResponseDTO);
 
         PagamentoResponseDTO result = pagamentoService.buscarPagamentoPorPedido(1L);
 
         assertNotNull(result);
         verify(pagamentoRepository, times(1)).findByPedidoId(1L);
+        verifyNoInteractions(asaasService);
     }
 
     @Test
@@ -195,6 +400,38 @@ class PagamentoServiceUnitTest {
                 () -> pagamentoService.buscarPagamentoPorPedido(1L));
     }
 
+    @Test
+    void deveBuscarStatusDeVariosPedidosNumaConsulta() {
+        StatusPagamentoPedidoDTO status = new StatusPagamentoPedidoDTO(1L, MetodoPagamento.PIX, StatusPagamento.PAID,
+                new BigDecimal("100.00"), null);
+        when(pagamentoRepository.buscarStatusPorPedidos(any())).thenReturn(List.of(status));
+
+        List<StatusPagamentoPedidoDTO> result = pagamentoService.buscarStatusPorPedidos(List.of(1L, 2L, 1L));
+
+        assertEquals(List.of(status), result);
+        verify(pagamentoRepository, times(1)).buscarStatusPorPedidos(argThat(ids -> ids.size() == 2));
+        verify(pagamentoRepository, never()).findByPedidoId(anyLong());
+    }
+
+    @Test
+    void deveAplicarStatusReconciliadosEGravarNotificacaoQuandoPago() {
+        pagamento.setStatus(StatusPagamento.AUTHORIZED);
+        pagamento.setAsaasPaymentId("pay_123456");
+        Pagamento recusado = new Pagamento();
+        recusado.setId(2L);
+        recusado.setStatus(StatusPagamento.REFUSED);
+
+        when(pagamentoRepository.findAllById(any())).thenReturn(List.of(pagamento, recusado));
+
+        pagamentoService.aplicarStatusReconciliados(Map.of(1L, StatusPagamento.PAID, 2L, StatusPagamento.PAID));
+
+        assertEquals(StatusPagamento.PAID, pagamento.getStatus());
+        assertEquals(StatusPagamento.REFUSED, recusado.getStatus());
+        verify(pagamentoRepository).save(pagamento);
+        verify(pagamentoRepository, never()).save(recusado);
+        verify(outboxNotificacaoRepository).save(any(OutboxNotificacao.class));
+    }
+
     @Test
     void deveProcessarReembolsoComSucesso() {
         pagamento.setStatus(StatusPagamento.PAID);
@@ -209,7 +446,6 @@ class PagamentoServiceUnitTest {
         when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
         when(asaasService.estornarPagamento(anyString(), anyString())).thenReturn(refundResponse);
         when(pagamentoRepository.save(any(Pagamento.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(modelMapper.map(any(Pagamento.class), eq(PagamentoResponseDTO.class))).thenReturn(pagamentoResponseDTO);
 
         PagamentoResponseDTO result = pagamentoService.processarReembolso(1L, "Teste de reembolso");
 
@@ -219,6 +455,36 @@ class PagamentoServiceUnitTest {
                 p.getStatus() == StatusPagamento.REFUNDED));
     }
 
+    @Test
+    void deveConcluirLocalmenteEstornoJaAplicadoNoAsaas() {
+        pagamento.setStatus(StatusPagamento.PAID);
+        pagamento.setAsaasPaymentId("pay_123456");
+        asaasPaymentResponse.setStatus("REFUNDED");
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+        when(asaasService.buscarPagamento("pay_123456")).thenReturn(asaasPaymentResponse);
+
+        assertTrue(pagamentoService.concluirSeJaEstornado(1L));
+
+        assertEquals(StatusPagamento.REFUNDED, pagamento.getStatus());
+        assertEquals(new BigDecimal("100.00"), pagamento.getValorReembolsado());
+        verify(pagamentoRepository).save(pagamento);
+        verify(asaasService, never()).estornarPagamento(anyString(), any());
+    }
+
+    @Test
+    void naoDeveConcluirEstornoQuandoCobrancaSegueRecebidaNoAsaas() {
+        pagamento.setStatus(StatusPagamento.PAID);
+        pagamento.setAsaasPaymentId("pay_123456");
+        asaasPaymentResponse.setStatus("RECEIVED");
+        when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.of(pagamento));
+        when(asaasService.buscarPagamento("pay_123456")).thenReturn(asaasPaymentResponse);
+
+        assertFalse(pagamentoService.concluirSeJaEstornado(1L));
+
+        assertEquals(StatusPagamento.PAID, pagamento.getStatus());
+        verify(pagamentoRepository, never()).save(any(Pagamento.class));
+    }
+
     @Test
     void deveLancarExcecaoQuandoPagamentoNaoEncontradoParaReembolso() {
         when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.empty());
@@ -239,5 +505,45 @@ class PagamentoServiceUnitTest {
         assertThrows(PaymentGatewayException.class,
                 () -> pagamentoService.processarReembolso(1L, "Teste"));
     }
-}
 
+    @Test
+    void deveRegistrarMetricasDeCriacaoEReembolsoPorResultado() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            when(pagamentoRepository.save(any(Pagamento.class))).thenReturn(pagamento);
+            when(asaasService.buscarOuCriarClienteReativo(any(ClienteInfoDTO.class)))
+                    .thenReturn(Mono.error(new PaymentGatewayException("Gateway indisponível")));
+            assertThrows(PaymentGatewayException.class,
+                    () -> pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo()));
+
+            criarPagamentoRequest.setMetodoPagamento(MetodoPagamento.CASH);
+            pagamentoService.criarPagamento(criarPagamentoRequest, clienteInfo, null, prazo());
+
+            when(pagamentoRepository.findByPedidoId(1L)).thenReturn(Optional.empty());
+            assertThrows(ResourceNotFoundException.class, () -> pagamentoService.processarReembolso(1L, "Teste"));
+
+            assertEquals(1.0, registry.get("pagamento.criacoes").tags("metodo", "PIX", "resultado", "erro-gateway").counter().count());
+            assertEquals(1.0, registry.get("pagamento.criacoes").tags("metodo", "CASH", "resultado", "sucesso").counter().count());
+            assertEquals(1, registry.get("pagamento.reembolsos").tag("resultado", "nao-encontrado").timer().count());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    private Prazo prazo() {
+        return Prazo.em(Duration.ofMinutes(1));
+    }
+
+    private void prepararPagamentoCartao() {
+        criarPagamentoRequest.setMetodoPagamento(MetodoPagamento.CREDIT_CARD);
+        CartaoCreditoRequestDTO cartaoDTO = new CartaoCreditoRequestDTO();
+        cartaoDTO.setNumero("4111111111111111");
+        cartaoDTO.setNomeTitular("Cliente Teste");
+        cartaoDTO.setValidade("12/25");
+        cartaoDTO.setCvv("123");
+        criarPagamentoRequest.setCartaoCredito(cartaoDTO);
+        clienteInfo.setCep("01310-100");
+        clienteInfo.setAddressNumber("123");
+    }
+}
@@ -0,0 +1,87 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasQrCodeResponseDTO;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.model.PixQrCodeImagem;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import com.siseg.pagamento.repository.PixQrCodeImagemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PixQrCodeServiceUnitTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n'};
+
+    @Mock
+    private PagamentoRepository pagamentoRepository;
+
+    @Mock
+    private PixQrCodeImagemRepository pixQrCodeImagemRepository;
+
+    @Mock
+    private AsaasService asaasService;
+
+    private PixQrCodeService pixQrCodeService;
+
+    @BeforeEach
+    void setUp() {
+        pixQrCodeService = new PixQrCodeService(pagamentoRepository, pixQrCodeImagemRepository,
+                asaasService, new SyncTaskExecutor(), 2, 1);
+    }
+
+    @Test
+    void deveSalvarImagemDecodificadaEAtualizarPayload() {
+        AsaasQrCodeResponseDTO qrCode = new AsaasQrCodeResponseDTO();
+        qrCode.setPayload("00020126580014BR.GOV.BCB.PIX");
+        qrCode.setEncodedImage("data:image/png;base64," + Base64.getEncoder().encodeToString(PNG));
+        when(asaasService.buscarQrCodePix("pay_123456")).thenReturn(qrCode);
+
+        pixQrCodeService.agendarBusca(1L, "pay_123456");
+
+        ArgumentCaptor<PixQrCodeImagem> captor = ArgumentCaptor.forClass(PixQrCodeImagem.class);
+        verify(pixQrCodeImagemRepository).save(captor.capture());
+        assertArrayEquals(PNG, captor.getValue().getImagem());
+        assertEquals(64, captor.getValue().getEtag().length());
+        verify(pagamentoRepository).atualizarQrCode(1L, "00020126580014BR.GOV.BCB.PIX");
+    }
+
+    @Test
+    void deveTentarNovamenteQuandoAsaasFalha() {
+        when(asaasService.buscarQrCodePix("pay_123456"))
+                .thenThrow(new PaymentGatewayException("Erro de conexão"));
+
+        pixQrCodeService.agendarBusca(1L, "pay_123456");
+
+        verify(asaasService, times(2)).buscarQrCodePix("pay_123456");
+        verify(pagamentoRepository, never()).atualizarQrCode(anyLong(), anyString());
+    }
+
+    @Test
+    void deveTentarNovamenteQuandoQrCodeVemSemImagemOuComImagemInvalida() {
+        AsaasQrCodeResponseDTO semImagem = new AsaasQrCodeResponseDTO();
+        semImagem.setPayload("00020126580014BR.GOV.BCB.PIX");
+        AsaasQrCodeResponseDTO imagemInvalida = new AsaasQrCodeResponseDTO();
+        imagemInvalida.setPayload("00020126580014BR.GOV.BCB.PIX");
+        imagemInvalida.setEncodedImage("data:image/png;base64,%%%");
+        when(asaasService.buscarQrCodePix("pay_123456")).thenReturn(semImagem, imagemInvalida);
+
+        pixQrCodeService.agendarBusca(1L, "pay_123456");
+
+        // O payload só é gravado com a imagem: sem ele o QR Code não é dado como pronto
+        verify(asaasService, times(2)).buscarQrCodePix("pay_123456");
+        verify(pixQrCodeImagemRepository, never()).save(any());
+        verify(pagamentoRepository, never()).atualizarQrCode(anyLong(), anyString());
+    }
+}
@@ -0,0 +1,162 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoliticaLeituraAsaasUnitTest {
+
+    private static final ProtecaoAsaas.Operacao OPERACAO = ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO;
+
+    private final PoliticaLeituraAsaas politica = new PoliticaLeituraAsaas(2, 5, 20, 0.5, true, 95, 30, 5);
+
+    @Test
+    void deveRepetirErroTemporarioAteResponder() {
+        AtomicInteger tentativas = new AtomicInteger();
+        Mono<String> leitura = Mono.defer(() -> tentativas.incrementAndGet() < 3
+                ? Mono.error(new PaymentGatewayException("Erro", erroHttp(503)))
+                : Mono.just("ok"));
+
+        assertEquals("ok", politica.ler(OPERACAO, leitura).block());
+        assertEquals(3, tentativas.get());
+        assertEquals(2, politica.getRetentativas());
+    }
+
+    @Test
+    void deveDevolverUltimoErroQuandoTentativasAcabam() {
+        AtomicInteger tentativas = new AtomicInteger();
+        Mono<String> leitura = Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.error(erroDeConexao());
+        });
+
+        assertThrows(WebClientRequestException.class, () -> politica.ler(OPERACAO, leitura).block());
+        assertEquals(3, tentativas.get());
+    }
+
+    @Test
+    void naoDeveRepetirRecusaDoAsaasNemDoDisjuntor() {
+        AtomicInteger tentativas = new AtomicInteger();
+
+        assertThrows(PaymentGatewayException.class, () -> politica.ler(OPERACAO, Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.error(new PaymentGatewayException("Erro", erroHttp(404)));
+        })).block());
+        assertThrows(PaymentGatewayException.class, () -> politica.ler(OPERACAO, Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.error(new PaymentGatewayException("Gateway de pagamento indisponível no momento"));
+        })).block());
+
+        assertEquals(2, tentativas.get());
+    }
+
+    @Test
+    void deveDispararSegundaRequisicaoQuandoPrimeiraDemora() {
+        aquecer();
+        AtomicInteger tentativas = new AtomicInteger();
+        Mono<String> leitura = Mono.defer(() -> tentativas.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("lenta")
+                : Mono.just("rapida"));
+
+        long inicio = System.nanoTime();
+        assertEquals("rapida", politica.ler(OPERACAO, leitura).block());
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - inicio).toMillis() < 1000);
+        assertEquals(2, tentativas.get());
+        assertEquals(1, politica.getHedges());
+    }
+
+    @Test
+    void naoDeveDispararSegundaRequisicaoQuandoPrimeiraRespondeOuFalhaLogo() throws InterruptedException {
+        aquecer();
+        AtomicInteger tentativas = new AtomicInteger();
+
+        assertEquals("ok", politica.ler(OPERACAO, Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.just("ok");
+        })).block());
+        assertThrows(PaymentGatewayException.class, () -> politica.ler(OPERACAO, Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.error(new PaymentGatewayException("Erro", erroHttp(400)));
+        })).block());
+        Thread.sleep(60);
+
+        assertEquals(2, tentativas.get());
+        assertEquals(0, politica.getHedges());
+    }
+
+    @Test
+    void respostaVaziaDeveEncerrarLeituraSemSegundaRequisicao() throws InterruptedException {
+        aquecer();
+        AtomicInteger tentativas = new AtomicInteger();
+
+        assertNull(politica.ler(OPERACAO, Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.<String>empty();
+        })).block());
+        Thread.sleep(60);
+        assertEquals(1, tentativas.get());
+        assertEquals(0, politica.getHedges());
+
+        // Vazia depois do hedge disparado: não espera a segunda
+        Mono<String> leitura = Mono.defer(() -> tentativas.incrementAndGet() == 2
+                ? Mono.delay(Duration.ofMillis(100)).then(Mono.<String>empty())
+                : Mono.delay(Duration.ofSeconds(5)).thenReturn("lenta"));
+        long inicio = System.nanoTime();
+        assertNull(politica.ler(OPERACAO, leitura).block());
+        assertTrue(Duration.ofNanos(System.nanoTime() - inicio).toMillis() < 1000);
+        assertEquals(1, politica.getHedges());
+    }
+
+    @Test
+    void semAmostrasSuficientesNaoHaHedge() {
+        // Respostas vazias não contam como amostras de latência
+        for (int i = 0; i < 5; i++) {
+            politica.ler(OPERACAO, Mono.empty()).block();
+        }
+        AtomicInteger tentativas = new AtomicInteger();
+        Mono<String> leitura = Mono.defer(() -> {
+            tentativas.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(100)).thenReturn("ok");
+        });
+
+        assertEquals("ok", politica.ler(OPERACAO, leitura).block());
+        assertEquals(1, tentativas.get());
+    }
+
+    @Test
+    void deveClassificarErrosRetentaveis() {
+        assertTrue(PoliticaLeituraAsaas.isRetentavel(erroDeConexao()));
+        assertTrue(PoliticaLeituraAsaas.isRetentavel(new PaymentGatewayException("Erro", erroHttp(502))));
+        assertTrue(PoliticaLeituraAsaas.isRetentavel(erroHttp(429)));
+        assertTrue(PoliticaLeituraAsaas.isRetentavel(erroHttp(408)));
+        assertFalse(PoliticaLeituraAsaas.isRetentavel(erroHttp(401)));
+        assertFalse(PoliticaLeituraAsaas.isRetentavel(new PaymentGatewayException("Circuito aberto")));
+    }
+
+    private void aquecer() {
+        for (int i = 0; i < 5; i++) {
+            politica.ler(OPERACAO, Mono.just("ok")).block();
+        }
+    }
+
+    private WebClientRequestException erroDeConexao() {
+        return new WebClientRequestException(new IOException("Connection reset"), HttpMethod.GET,
+                URI.create("https://asaas/payments/pay_1"), new HttpHeaders());
+    }
+
+    private WebClientResponseException erroHttp(int status) {
+        return WebClientResponseException.create(status, "erro", new HttpHeaders(), new byte[0], null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtecaoAsaasUnitTest {
+
+    private final ProtecaoAsaas protecao = new ProtecaoAsaas(4, 2, 50, 60000, 1, 2, 2, 1, 1);
+
+    @Test
+    void deveFalharNaHoraComCircuitoAberto() {
+        AtomicInteger chamadas = new AtomicInteger();
+        Mono<String> falhando = Mono.defer(() -> {
+            chamadas.incrementAndGet();
+            return Mono.error(erroDeConexao());
+        });
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(WebClientRequestException.class, () -> protecao.proteger(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO, falhando).block());
+        }
+        assertEquals(Disjuntor.Estado.ABERTO, protecao.getEstado(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO));
+
+        PaymentGatewayException e = assertThrows(PaymentGatewayException.class,
+                () -> protecao.proteger(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO, falhando).block());
+        assertTrue(e.getMessage().contains("buscar-pagamento"));
+        assertEquals(2, chamadas.get());
+        assertEquals(1, protecao.getRejeicoesDisjuntor(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO));
+        // As outras operações não são afetadas
+        assertEquals(Disjuntor.Estado.FECHADO, protecao.getEstado(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO_PEDIDO));
+        assertEquals("ok", protecao.proteger(ProtecaoAsaas.Operacao.BUSCAR_PAGAMENTO_PEDIDO, Mono.just("ok")).block());
+    }
+
+    @Test
+    void deveLimitarChamadasSimultaneasPorGrupo() {
+        Sinks.One<String> resposta = Sinks.one();
+
+        // Estorno aceita uma chamada por vez; a segunda é recusada sem esperar
+        protecao.proteger(ProtecaoAsaas.Operacao.ESTORNO, resposta.asMono()).subscribe();
+        assertThrows(PaymentGatewayException.class, () -> protecao.proteger(ProtecaoAsaas.Operacao.ESTORNO, Mono.just("ok")).block());
+        assertEquals(1, protecao.getRejeicoesBulkhead(ProtecaoAsaas.Grupo.ESTORNO));
+
+        // Outros grupos seguem com suas próprias vagas
+        assertEquals("ok", protecao.proteger(ProtecaoAsaas.Operacao.QR_CODE_PIX, Mono.just("ok")).block());
+
+        resposta.tryEmitValue("feito");
+        assertEquals("ok", protecao.proteger(ProtecaoAsaas.Operacao.ESTORNO, Mono.just("ok")).block());
+    }
+
+    @Test
+    void cancelamentoDeveDevolverVagaDoBulkhead() {
+        protecao.proteger(ProtecaoAsaas.Operacao.QR_CODE_PIX, Mono.never()).subscribe().dispose();
+
+        assertEquals("ok", protecao.proteger(ProtecaoAsaas.Operacao.QR_CODE_PIX, Mono.just("ok")).block());
+    }
+
+    @Test
+    void deveClassificarFalhasDoGateway() {
+        assertTrue(ProtecaoAsaas.isFalhaDoGateway(erroDeConexao()));
+        assertTrue(ProtecaoAsaas.isFalhaDoGateway(new PaymentGatewayException("Erro", erroHttp(503))));
+        assertTrue(ProtecaoAsaas.isFalhaDoGateway(erroHttp(429)));
+        assertFalse(ProtecaoAsaas.isFalhaDoGateway(erroHttp(400)));
+        assertFalse(ProtecaoAsaas.isFalhaDoGateway(new PaymentGatewayException("Erro", erroHttp(404))));
+    }
+
+    private WebClientRequestException erroDeConexao() {
+        return new WebClientRequestException(new IOException("Connection refused"), HttpMethod.GET,
+                URI.create("https://asaas/payments/pay_1"), new HttpHeaders());
+    }
+
+    private WebClientResponseException erroHttp(int status) {
+        return WebClientResponseException.create(status, "erro", new HttpHeaders(), new byte[0], null);
+    }
+}
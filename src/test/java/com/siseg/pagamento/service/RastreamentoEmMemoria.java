@@ -0,0 +1,72 @@
+package com.siseg.pagamento.service;
+
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingReceiverTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingSenderTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelBaggageManager;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelPropagator;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Rastreamento para testes: a mesma pilha da aplicação (observações do
+ * Micrometer sobre o OpenTelemetry), amostrando tudo e exportando os spans
+ * finalizados para memória, na hora.
+ */
+final class RastreamentoEmMemoria implements AutoCloseable {
+
+    private final InMemorySpanExporter exportador = InMemorySpanExporter.create();
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+            .setSampler(Sampler.alwaysOn())
+            .addSpanProcessor(SimpleSpanProcessor.create(exportador))
+            .build();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final OtelTracer tracer;
+
+    RastreamentoEmMemoria() {
+        io.opentelemetry.api.trace.Tracer otelTracer = tracerProvider.get("teste");
+        OtelCurrentTraceContext contexto = new OtelCurrentTraceContext();
+        tracer = new OtelTracer(otelTracer, contexto, evento -> { }, new OtelBaggageManager(contexto, List.of(), List.of()));
+        OtelPropagator propagador = new OtelPropagator(
+                ContextPropagators.create(W3CTraceContextPropagator.getInstance()), otelTracer);
+
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler.FirstMatchingCompositeObservationHandler(
+                new PropagatingSenderTracingObservationHandler<>(tracer, propagador),
+                new PropagatingReceiverTracingObservationHandler<>(tracer, propagador),
+                new DefaultTracingObservationHandler(tracer)));
+    }
+
+    ObservationRegistry getObservationRegistry() {
+        return observationRegistry;
+    }
+
+    Tracer getTracer() {
+        return tracer;
+    }
+
+    List<SpanData> getSpans() {
+        return exportador.getFinishedSpanItems();
+    }
+
+    Optional<SpanData> buscarSpan(String nome) {
+        return getSpans().stream().filter(span -> span.getName().equals(nome)).findFirst();
+    }
+
+    @Override
+    public void close() {
+        tracerProvider.close();
+    }
+}
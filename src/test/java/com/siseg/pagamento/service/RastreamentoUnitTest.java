@@ -0,0 +1,161 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.config.RastreamentoConfig;
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.mapper.PagamentoMapper;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.repository.OutboxNotificacaoRepository;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RastreamentoUnitTest {
+
+    private static final String TRACE_ID_CRIACAO = "0af7651916cd43dd8448eb211c80319c";
+
+    @Mock
+    private AsaasClienteCache asaasClienteCache;
+
+    @Mock
+    private PagamentoRepository pagamentoRepository;
+
+    @Mock
+    private OutboxNotificacaoRepository outboxNotificacaoRepository;
+
+    @Mock
+    private WebhookIdempotencia webhookIdempotencia;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final RastreamentoEmMemoria rastreamento = new RastreamentoEmMemoria();
+    private final List<String> traceparents = new CopyOnWriteArrayList<>();
+    private HttpServer asaasStub;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        asaasStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        asaasStub.createContext("/payments", exchange -> {
+            traceparents.add(exchange.getRequestHeaders().getFirst("traceparent"));
+            byte[] corpo = "{\"id\":\"pay_123456\",\"status\":\"PENDING\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, corpo.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(corpo);
+            }
+        });
+        asaasStub.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        asaasStub.stop(0);
+        rastreamento.close();
+    }
+
+    @Test
+    void chamadaAoAsaasDeveFicarNoTraceDaRequisicaoEPropagarContexto() {
+        ObservationRegistry registry = rastreamento.getObservationRegistry();
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + asaasStub.getAddress().getPort())
+                .observationRegistry(registry)
+                .build();
+        AsaasService asaasService = new AsaasService(webClient, new PagamentoMapper(), asaasClienteCache,
+                new ProtecaoAsaas(20, 10, 50, 30000, 3, 40, 40, 10, 20),
+                new PoliticaLeituraAsaas(0, 10, 50, 0.5, false, 95, 50, 20), registry);
+
+        Observation requisicao = Observation.start("requisicao", registry);
+        try (Observation.Scope ignored = requisicao.openScope()) {
+            asaasService.criarPagamentoPix(1L, new BigDecimal("25.00"), "cus_123");
+        } finally {
+            requisicao.stop();
+        }
+
+        SpanData raiz = rastreamento.buscarSpan("requisicao").orElseThrow();
+        SpanData operacao = rastreamento.buscarSpan("asaas cobranca-pix").orElseThrow();
+        SpanData http = rastreamento.getSpans().stream()
+                .filter(span -> span.getParentSpanId().equals(operacao.getSpanId()))
+                .findFirst().orElseThrow();
+
+        assertEquals(raiz.getSpanId(), operacao.getParentSpanId());
+        assertEquals(raiz.getTraceId(), http.getTraceId());
+        // O Asaas recebe o contexto do span da requisição HTTP: 00-<trace>-<span>-01
+        assertEquals(1, traceparents.size());
+        assertEquals("00-" + http.getTraceId() + "-" + http.getSpanId() + "-01", traceparents.get(0));
+    }
+
+    @Test
+    void webhookDeveApontarParaOTraceDeCriacaoDoPagamento() {
+        Pagamento pagamento = new Pagamento();
+        pagamento.setPedidoId(42L);
+        pagamento.setTraceId(TRACE_ID_CRIACAO);
+        when(pagamentoRepository.findByAsaasPaymentId("pay_123456")).thenReturn(Optional.of(pagamento));
+
+        ObservationRegistry registry = rastreamento.getObservationRegistry();
+        AsaasWebhookService asaasWebhookService = new AsaasWebhookService(pagamentoRepository, outboxNotificacaoRepository,
+                webhookIdempotencia, eventPublisher, registry);
+        WebhookInboxService inbox = new WebhookInboxService(null, asaasWebhookService, webhookIdempotencia, null,
+                new SyncTaskExecutor(), registry, false, 3, 1000, 100, 5);
+
+        inbox.receber(webhook());
+
+        SpanData span = rastreamento.buscarSpan("webhook payment_received").orElseThrow();
+        assertEquals("pay_123456", span.getAttributes().get(AttributeKey.stringKey("asaas.payment_id")));
+        assertEquals("42", span.getAttributes().get(AttributeKey.stringKey("pagamento.pedido_id")));
+        assertEquals(TRACE_ID_CRIACAO, span.getAttributes().get(AttributeKey.stringKey("pagamento.trace_id_origem")));
+    }
+
+    @Test
+    void operacoesDoRepositorioDevemGerarSpans() {
+        ProxyFactory fabrica = new ProxyFactory(pagamentoRepository);
+        fabrica.setInterfaces(PagamentoRepository.class);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(
+                Map.of("observationRegistry", rastreamento.getObservationRegistry()));
+        PagamentoRepository repositorio = (PagamentoRepository) RastreamentoConfig
+                .observacaoRepositorios(beanFactory.getBeanProvider(ObservationRegistry.class))
+                .postProcessAfterInitialization(fabrica.getProxy(), "pagamentoRepository");
+
+        repositorio.findByPedidoId(1L);
+
+        SpanData span = rastreamento.buscarSpan("pagamento-repository.find-by-pedido-id").orElseThrow();
+        assertEquals("PagamentoRepository", span.getAttributes().get(AttributeKey.stringKey("repositorio")));
+        verify(pagamentoRepository).findByPedidoId(1L);
+    }
+
+    private AsaasWebhookDTO webhook() {
+        AsaasWebhookDTO webhook = new AsaasWebhookDTO();
+        webhook.setEvent("PAYMENT_RECEIVED");
+        AsaasWebhookDTO.PaymentData payment = new AsaasWebhookDTO.PaymentData();
+        payment.setId("pay_123456");
+        webhook.setPayment(payment);
+        return webhook;
+    }
+}
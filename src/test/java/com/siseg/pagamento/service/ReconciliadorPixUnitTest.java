@@ -0,0 +1,143 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasPaymentResponseDTO;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.model.Pagamento;
+import com.siseg.pagamento.model.enumerations.MetodoPagamento;
+import com.siseg.pagamento.model.enumerations.StatusPagamento;
+import com.siseg.pagamento.repository.PagamentoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliadorPixUnitTest {
+
+    @Mock
+    private PagamentoRepository pagamentoRepository;
+
+    @Mock
+    private AsaasService asaasService;
+
+    @Mock
+    private PagamentoService pagamentoService;
+
+    private ReconciliadorPix reconciliador;
+    private Pagamento pagamento;
+
+    @BeforeEach
+    void setUp() {
+        reconciliador = new ReconciliadorPix(pagamentoRepository, asaasService, pagamentoService,
+                new int[]{5, 15, 60}, 1000, 64, 100, 4, 72, 200);
+
+        pagamento = new Pagamento();
+        pagamento.setId(1L);
+        pagamento.setPedidoId(10L);
+        pagamento.setMetodo(MetodoPagamento.PIX);
+        pagamento.setStatus(StatusPagamento.AUTHORIZED);
+        pagamento.setAsaasPaymentId("pay_123456");
+        reconciliador.acompanhar(1L, "pay_123456", Instant.now());
+    }
+
+    @Test
+    void deveAplicarPagoEEncerrarAcompanhamento() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456")).thenReturn(Mono.just(cobranca("RECEIVED", null)));
+
+        reconciliador.reconciliar(List.of(1L));
+
+        verify(pagamentoService).aplicarStatusReconciliados(Map.of(1L, StatusPagamento.PAID));
+        assertEquals(0, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveSeguirAcompanhandoQuandoGravacaoFalha() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456")).thenReturn(Mono.just(cobranca("RECEIVED", null)));
+        doThrow(new CannotCreateTransactionException("Pool de conexões esgotado"))
+                .when(pagamentoService).aplicarStatusReconciliados(anyMap());
+
+        reconciliador.reconciliar(List.of(1L));
+
+        assertEquals(1, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveReagendarQuandoConsultaNaoResponde() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456")).thenReturn(Mono.never());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> reconciliador.reconciliar(List.of(1L)));
+
+        verify(pagamentoService).aplicarStatusReconciliados(Map.of());
+        assertEquals(1, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveManterAcompanhamentoEnquantoPendente() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456"))
+                .thenReturn(Mono.just(cobranca("PENDING", LocalDate.now().plusDays(1).toString())));
+
+        reconciliador.reconciliar(List.of(1L));
+
+        verify(pagamentoService).aplicarStatusReconciliados(Map.of());
+        assertEquals(1, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveEncerrarAcompanhamentoAposVencimento() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456"))
+                .thenReturn(Mono.just(cobranca("PENDING", LocalDate.now().minusDays(1).toString())));
+
+        reconciliador.reconciliar(List.of(1L));
+
+        assertEquals(0, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveEncerrarSemConsultarQuandoStatusJaEFinal() {
+        pagamento.setStatus(StatusPagamento.PAID);
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+
+        reconciliador.reconciliar(List.of(1L));
+
+        verify(asaasService, never()).buscarPagamentoReativo(anyString());
+        assertEquals(0, reconciliador.getTamanho());
+    }
+
+    @Test
+    void deveReagendarQuandoConsultaFalha() {
+        when(pagamentoRepository.findAllById(List.of(1L))).thenReturn(List.of(pagamento));
+        when(asaasService.buscarPagamentoReativo("pay_123456"))
+                .thenReturn(Mono.error(new PaymentGatewayException("Asaas indisponível")));
+
+        reconciliador.reconciliar(List.of(1L));
+
+        verify(pagamentoService).aplicarStatusReconciliados(Map.of());
+        assertEquals(1, reconciliador.getTamanho());
+    }
+
+    private AsaasPaymentResponseDTO cobranca(String status, String vencimento) {
+        AsaasPaymentResponseDTO cobranca = new AsaasPaymentResponseDTO();
+        cobranca.setId("pay_123456");
+        cobranca.setStatus(status);
+        cobranca.setDueDate(vencimento);
+        return cobranca;
+    }
+}
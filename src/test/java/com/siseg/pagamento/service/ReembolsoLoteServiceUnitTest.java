@@ -0,0 +1,231 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.ReembolsoLoteResponseDTO;
+import com.siseg.pagamento.event.ReembolsoLoteCriadoEvent;
+import com.siseg.pagamento.exception.PagamentoJaReembolsadoException;
+import com.siseg.pagamento.exception.PaymentGatewayException;
+import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.model.ReembolsoLote;
+import com.siseg.pagamento.model.ReembolsoLoteItem;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLote;
+import com.siseg.pagamento.model.enumerations.StatusReembolsoLoteItem;
+import com.siseg.pagamento.repository.ReembolsoLoteItemRepository;
+import com.siseg.pagamento.repository.ReembolsoLoteRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReembolsoLoteServiceUnitTest {
+
+    @Mock
+    private ReembolsoLoteRepository reembolsoLoteRepository;
+
+    @Mock
+    private ReembolsoLoteItemRepository reembolsoLoteItemRepository;
+
+    @Mock
+    private PagamentoService pagamentoService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TaskExecutor executorSemExecucao;
+
+    @Test
+    void deveGravarLoteComUmItemPorPedidoSemProcessarNaRequisicao() {
+        when(reembolsoLoteRepository.save(any(ReembolsoLote.class))).thenAnswer(invocation -> {
+            ReembolsoLote lote = invocation.getArgument(0);
+            lote.setId(7L);
+            return lote;
+        });
+        when(reembolsoLoteItemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ReembolsoLoteResponseDTO response = servico(executorSemExecucao).criar(List.of(1L, 2L, 1L, 3L), "Loja fechada");
+
+        assertEquals(7L, response.getId());
+        assertEquals(StatusReembolsoLote.EM_ANDAMENTO, response.getStatus());
+        assertEquals(3, response.getTotal());
+        assertEquals(3, response.getPendentes());
+        assertEquals(List.of(1L, 2L, 3L), response.getItens().stream().map(ReembolsoLoteResponseDTO.ItemDTO::getPedidoId).toList());
+        verify(eventPublisher).publishEvent(new ReembolsoLoteCriadoEvent(7L));
+        verifyNoInteractions(pagamentoService);
+    }
+
+    @Test
+    void deveDespacharItensDoLoteAposCriacao() {
+        when(reembolsoLoteItemRepository.findByLoteIdOrderById(7L)).thenReturn(List.of(item(1L, 0), item(2L, 0)));
+
+        servico(executorSemExecucao).aoCriarLote(new ReembolsoLoteCriadoEvent(7L));
+
+        verify(executorSemExecucao, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void deveReembolsarEConcluirLoteNoUltimoItem() {
+        prepararItem(item(1L, 0));
+        when(reembolsoLoteItemRepository.contarPorStatus(eq(7L), anyCollection())).thenReturn(0L);
+        when(reembolsoLoteRepository.concluir(eq(7L), eq(StatusReembolsoLote.EM_ANDAMENTO), eq(StatusReembolsoLote.CONCLUIDO), any()))
+                .thenReturn(1);
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(pagamentoService).processarReembolso(101L, "Loja fechada");
+        verify(pagamentoService, never()).concluirSeJaEstornado(anyLong());
+        verify(reembolsoLoteItemRepository).concluir(eq(1L), eq(StatusReembolsoLoteItem.REEMBOLSADO), isNull(), any());
+        verify(reembolsoLoteRepository).concluir(eq(7L), any(), any(), any());
+    }
+
+    @Test
+    void naoDeveProcessarItemReservadoPorOutroWorker() {
+        when(reembolsoLoteItemRepository.reservar(eq(1L), any(), any(), any())).thenReturn(0);
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verifyNoInteractions(pagamentoService);
+    }
+
+    @Test
+    void deveMarcarJaReembolsadoSemContarComoFalha() {
+        prepararItem(item(1L, 0));
+        when(pagamentoService.processarReembolso(anyLong(), any())).thenThrow(new PagamentoJaReembolsadoException("Pagamento já foi reembolsado"));
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(reembolsoLoteItemRepository).concluir(eq(1L), eq(StatusReembolsoLoteItem.JA_REEMBOLSADO), isNull(), any());
+    }
+
+    @Test
+    void deveReagendarFalhaTemporariaComBackoff() {
+        prepararItem(item(1L, 0));
+        when(pagamentoService.processarReembolso(anyLong(), any()))
+                .thenThrow(new PaymentGatewayException("Erro de conexão com o gateway de pagamento."));
+        when(reembolsoLoteItemRepository.contarPorStatus(eq(7L), anyCollection())).thenReturn(1L);
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        ArgumentCaptor<Instant> proximaTentativa = ArgumentCaptor.forClass(Instant.class);
+        verify(reembolsoLoteItemRepository).registrarFalha(eq(1L), eq(StatusReembolsoLoteItem.PENDENTE), eq(1),
+                proximaTentativa.capture(), contains("Erro de conexão"));
+        assertTrue(proximaTentativa.getValue().isAfter(Instant.now().plusMillis(500)));
+        verify(reembolsoLoteRepository, never()).concluir(any(), any(), any(), any());
+    }
+
+    @Test
+    void deveFalharSemNovaTentativaQuandoAsaasRecusa() {
+        prepararItem(item(1L, 0));
+        WebClientResponseException recusa = WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request",
+                null, "{\"errors\":[{\"code\":\"invalid_action\"}]}".getBytes(), null);
+        when(pagamentoService.processarReembolso(anyLong(), any()))
+                .thenThrow(new PaymentGatewayException("Erro ao processar reembolso: recusado", recusa));
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(reembolsoLoteItemRepository).registrarFalha(eq(1L), eq(StatusReembolsoLoteItem.FALHOU), eq(1), any(), anyString());
+    }
+
+    @Test
+    void deveDescartarAposEsgotarTentativas() {
+        prepararItem(item(1L, 2));
+        when(pagamentoService.processarReembolso(anyLong(), any())).thenThrow(new PaymentGatewayException("timeout"));
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(reembolsoLoteItemRepository).registrarFalha(eq(1L), eq(StatusReembolsoLoteItem.FALHOU), eq(3), any(), anyString());
+    }
+
+    @Test
+    void deveConcluirSemReenviarQuandoAsaasJaEstornou() {
+        prepararItem(item(1L, 1));
+        when(pagamentoService.concluirSeJaEstornado(101L)).thenReturn(true);
+        when(reembolsoLoteItemRepository.contarPorStatus(eq(7L), anyCollection())).thenReturn(1L);
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(pagamentoService, never()).processarReembolso(anyLong(), any());
+        verify(reembolsoLoteItemRepository).concluir(eq(1L), eq(StatusReembolsoLoteItem.REEMBOLSADO), isNull(), any());
+    }
+
+    @Test
+    void deveReenviarQuandoAsaasNaoAplicouOEstornoAnterior() {
+        prepararItem(item(1L, 1));
+        when(pagamentoService.concluirSeJaEstornado(101L)).thenReturn(false);
+        when(reembolsoLoteItemRepository.contarPorStatus(eq(7L), anyCollection())).thenReturn(1L);
+
+        servico(new SyncTaskExecutor()).processarItem(1L);
+
+        verify(pagamentoService).processarReembolso(101L, "Loja fechada");
+        verify(reembolsoLoteItemRepository).concluir(eq(1L), eq(StatusReembolsoLoteItem.REEMBOLSADO), isNull(), any());
+    }
+
+    @Test
+    void deveRetomarItensPresosEPendentesNaVarredura() {
+        when(reembolsoLoteItemRepository.buscarIdsProntos(eq(StatusReembolsoLoteItem.PENDENTE), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+
+        servico(executorSemExecucao).despacharPendentes();
+
+        verify(reembolsoLoteItemRepository).liberarTravados(eq(StatusReembolsoLoteItem.PROCESSANDO), eq(StatusReembolsoLoteItem.PENDENTE),
+                any(), anyString());
+        verify(executorSemExecucao, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void naoDeveEnfileirarDeNovoItemQueAindaEstaNaFila() {
+        when(reembolsoLoteItemRepository.buscarIdsProntos(eq(StatusReembolsoLoteItem.PENDENTE), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+        ReembolsoLoteService servico = servico(executorSemExecucao);
+
+        servico.despacharPendentes();
+        servico.despacharPendentes();
+
+        verify(executorSemExecucao, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void deveLancarExcecaoQuandoLoteNaoExiste() {
+        when(reembolsoLoteRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> servico(executorSemExecucao).buscar(99L));
+    }
+
+    private void prepararItem(ReembolsoLoteItem item) {
+        ReembolsoLote lote = new ReembolsoLote();
+        lote.setId(7L);
+        lote.setMotivo("Loja fechada");
+        when(reembolsoLoteItemRepository.reservar(eq(item.getId()), eq(StatusReembolsoLoteItem.PENDENTE), eq(StatusReembolsoLoteItem.PROCESSANDO), any()))
+                .thenReturn(1);
+        when(reembolsoLoteItemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+        when(reembolsoLoteRepository.findById(7L)).thenReturn(Optional.of(lote));
+    }
+
+    private ReembolsoLoteItem item(Long id, int tentativas) {
+        ReembolsoLoteItem item = new ReembolsoLoteItem();
+        item.setId(id);
+        item.setLoteId(7L);
+        item.setPedidoId(100L + id);
+        item.setTentativas(tentativas);
+        return item;
+    }
+
+    private ReembolsoLoteService servico(TaskExecutor executor) {
+        return new ReembolsoLoteService(reembolsoLoteRepository, reembolsoLoteItemRepository, pagamentoService, eventPublisher,
+                executor, 0, 3, 1000, 100, 5);
+    }
+}
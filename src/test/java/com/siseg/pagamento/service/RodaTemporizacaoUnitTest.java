@@ -0,0 +1,46 @@
+package com.siseg.pagamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RodaTemporizacaoUnitTest {
+
+    @Test
+    void deveVencerItensNoTickAgendado() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(8, Duration.ofSeconds(1), 0);
+        roda.agendar("a", Duration.ofSeconds(2));
+        roda.agendar("b", Duration.ofSeconds(5));
+
+        assertTrue(roda.avancarAte(1_000).isEmpty());
+        assertEquals(List.of("a"), roda.avancarAte(2_000));
+        assertEquals(List.of("b"), roda.avancarAte(5_500));
+        assertEquals(0, roda.tamanho());
+    }
+
+    @Test
+    void deveManterItensComMaisDeUmaVoltaAteOTickAlvo() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(4, Duration.ofSeconds(1), 0);
+        roda.agendar("longe", Duration.ofSeconds(6));
+
+        assertTrue(roda.avancarAte(2_000).isEmpty());
+        assertTrue(roda.avancarAte(5_000).isEmpty());
+        assertEquals(List.of("longe"), roda.avancarAte(6_000));
+    }
+
+    @Test
+    void deveRecuperarTicksPerdidosQuandoAgendadorAtrasa() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(4, Duration.ofSeconds(1), 0);
+        roda.agendar("a", Duration.ofSeconds(1));
+        roda.agendar("b", Duration.ofSeconds(3));
+        roda.agendar("c", Duration.ofSeconds(7));
+
+        List<String> vencidos = roda.avancarAte(10_000);
+
+        assertEquals(3, vencidos.size());
+        assertTrue(vencidos.containsAll(List.of("a", "b", "c")));
+    }
+}
@@ -0,0 +1,85 @@
+package com.siseg.pagamento.service;
+
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.exception.WebhookDuplicadoException;
+import com.siseg.pagamento.repository.WebhookEventoProcessadoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookIdempotenciaUnitTest {
+
+    @Mock
+    private WebhookEventoProcessadoRepository webhookEventoProcessadoRepository;
+
+    private WebhookIdempotencia idempotencia;
+
+    @BeforeEach
+    void setUp() {
+        idempotencia = new WebhookIdempotencia(webhookEventoProcessadoRepository, 100, 1000, 0.01, 30);
+    }
+
+    @Test
+    void deveAceitarEventoNovoSemConsultarBanco() {
+        assertFalse(idempotencia.jaProcessado("id:evt_1"));
+
+        assertEquals(1, idempotencia.getNegativosBloom());
+        verifyNoInteractions(webhookEventoProcessadoRepository);
+    }
+
+    @Test
+    void deveRejeitarDuplicataRegistradaSemConsultarBanco() {
+        idempotencia.registrar("id:evt_1");
+
+        assertTrue(idempotencia.jaProcessado("id:evt_1"));
+
+        assertEquals(1, idempotencia.getAcertosMemoria());
+        verify(webhookEventoProcessadoRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void deveConsultarBancoQuandoChaveSaiuDoLru() {
+        idempotencia = new WebhookIdempotencia(webhookEventoProcessadoRepository, 1, 1000, 0.01, 30);
+        idempotencia.registrar("id:evt_1");
+        idempotencia.registrar("id:evt_2");
+        when(webhookEventoProcessadoRepository.existsById("id:evt_1")).thenReturn(true);
+
+        assertTrue(idempotencia.jaProcessado("id:evt_1"));
+
+        assertEquals(1, idempotencia.getAcertosBanco());
+    }
+
+    @Test
+    void deveLancarDuplicadoQuandoChaveJaExisteNaTabela() {
+        when(webhookEventoProcessadoRepository.inserir(eq("id:evt_1"), any(Instant.class)))
+                .thenThrow(new DataIntegrityViolationException("PRIMARY KEY"));
+
+        assertThrows(WebhookDuplicadoException.class, () -> idempotencia.registrar("id:evt_1"));
+        assertTrue(idempotencia.jaProcessado("id:evt_1"));
+    }
+
+    @Test
+    void deveGerarChavePorEventoPagamentoEStatusSemId() {
+        AsaasWebhookDTO webhook = new AsaasWebhookDTO();
+        webhook.setEvent("PAYMENT_RECEIVED");
+        AsaasWebhookDTO.PaymentData payment = new AsaasWebhookDTO.PaymentData();
+        payment.setId("pay_123");
+        payment.setStatus("RECEIVED");
+        webhook.setPayment(payment);
+
+        assertEquals("evento:PAYMENT_RECEIVED:pay_123:RECEIVED", WebhookIdempotencia.gerarChave(webhook));
+
+        webhook.setId("evt_9");
+        assertEquals("id:evt_9", WebhookIdempotencia.gerarChave(webhook));
+    }
+}
@@ -0,0 +1,178 @@
+package com.siseg.pagamento.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siseg.pagamento.dto.AsaasWebhookDTO;
+import com.siseg.pagamento.exception.ResourceNotFoundException;
+import com.siseg.pagamento.exception.WebhookDuplicadoException;
+import com.siseg.pagamento.model.WebhookEvento;
+import com.siseg.pagamento.model.enumerations.StatusWebhookEvento;
+import com.siseg.pagamento.repository.WebhookEventoRepository;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookInboxServiceUnitTest {
+
+    @Mock
+    private WebhookEventoRepository webhookEventoRepository;
+
+    @Mock
+    private AsaasWebhookService asaasWebhookService;
+
+    @Mock
+    private WebhookIdempotencia webhookIdempotencia;
+
+    @Mock
+    private TaskExecutor executorSemExecucao;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AsaasWebhookDTO webhook;
+
+    @BeforeEach
+    void setUp() {
+        webhook = new AsaasWebhookDTO();
+        webhook.setEvent("PAYMENT_RECEIVED");
+        AsaasWebhookDTO.PaymentData payment = new AsaasWebhookDTO.PaymentData();
+        payment.setId("pay_123456");
+        webhook.setPayment(payment);
+    }
+
+    @Test
+    void deveGravarEventoSemProcessarNaRequisicao() {
+        when(webhookEventoRepository.save(any(WebhookEvento.class))).thenAnswer(invocation -> {
+            WebhookEvento evento = invocation.getArgument(0);
+            evento.setId(1L);
+            return evento;
+        });
+
+        inbox(executorSemExecucao, true).receber(webhook);
+
+        ArgumentCaptor<WebhookEvento> captor = ArgumentCaptor.forClass(WebhookEvento.class);
+        verify(webhookEventoRepository).save(captor.capture());
+        assertEquals("pay_123456", captor.getValue().getAsaasPaymentId());
+        assertTrue(captor.getValue().getPayload().contains("PAYMENT_RECEIVED"));
+        verify(executorSemExecucao).execute(any(Runnable.class));
+        verify(asaasWebhookService, never()).processarWebhook(any());
+    }
+
+    @Test
+    void deveProcessarEMarcarComoProcessado() throws Exception {
+        WebhookEvento evento = evento(0);
+        when(webhookEventoRepository.reservar(eq(1L), eq(StatusWebhookEvento.RECEBIDO), eq(StatusWebhookEvento.PROCESSANDO), any()))
+                .thenReturn(1);
+        when(webhookEventoRepository.findById(1L)).thenReturn(Optional.of(evento));
+
+        inbox(new SyncTaskExecutor(), true).processar(1L);
+
+        verify(asaasWebhookService).processarWebhook(argThat(dto -> "pay_123456".equals(dto.getPayment().getId())));
+        verify(webhookEventoRepository).marcarProcessado(eq(1L), eq(StatusWebhookEvento.PROCESSADO), any());
+    }
+
+    @Test
+    void deveReagendarQuandoProcessamentoFalha() throws Exception {
+        WebhookEvento evento = evento(0);
+        when(webhookEventoRepository.reservar(eq(1L), any(), any(), any())).thenReturn(1);
+        when(webhookEventoRepository.findById(1L)).thenReturn(Optional.of(evento));
+        doThrow(new ResourceNotFoundException("Pagamento não encontrado")).when(asaasWebhookService).processarWebhook(any());
+
+        inbox(new SyncTaskExecutor(), true).processar(1L);
+
+        verify(webhookEventoRepository).registrarFalha(eq(1L), eq(StatusWebhookEvento.RECEBIDO), eq(1),
+                argThat(proxima -> proxima.isAfter(Instant.now())), contains("Pagamento não encontrado"));
+    }
+
+    @Test
+    void deveDescartarAoEsgotarTentativas() throws Exception {
+        WebhookEvento evento = evento(2);
+        when(webhookEventoRepository.reservar(eq(1L), any(), any(), any())).thenReturn(1);
+        when(webhookEventoRepository.findById(1L)).thenReturn(Optional.of(evento));
+        doThrow(new IllegalStateException("falha")).when(asaasWebhookService).processarWebhook(any());
+
+        inbox(new SyncTaskExecutor(), true).processar(1L);
+
+        verify(webhookEventoRepository).registrarFalha(eq(1L), eq(StatusWebhookEvento.DESCARTADO), eq(3), any(), anyString());
+    }
+
+    @Test
+    void deveIgnorarEventoJaReservadoPorOutroWorker() {
+        when(webhookEventoRepository.reservar(eq(1L), any(), any(), any())).thenReturn(0);
+
+        inbox(new SyncTaskExecutor(), true).processar(1L);
+
+        verify(asaasWebhookService, never()).processarWebhook(any());
+    }
+
+    @Test
+    void deveDescartarDuplicataConhecidaSemGravarNoInbox() {
+        webhook.setId("evt_123");
+        when(webhookIdempotencia.jaProcessado("id:evt_123")).thenReturn(true);
+
+        inbox(executorSemExecucao, true).receber(webhook);
+
+        verify(webhookEventoRepository, never()).save(any());
+        verify(asaasWebhookService, never()).processarWebhook(any());
+    }
+
+    @Test
+    void deveMarcarComoProcessadoQuandoOutraInstanciaJaProcessou() throws Exception {
+        WebhookEvento evento = evento(0);
+        when(webhookEventoRepository.reservar(eq(1L), any(), any(), any())).thenReturn(1);
+        when(webhookEventoRepository.findById(1L)).thenReturn(Optional.of(evento));
+        doThrow(new WebhookDuplicadoException("Webhook já processado")).when(asaasWebhookService).processarWebhook(any());
+
+        inbox(new SyncTaskExecutor(), true).processar(1L);
+
+        verify(webhookEventoRepository).marcarProcessado(eq(1L), eq(StatusWebhookEvento.PROCESSADO), any());
+        verify(webhookEventoRepository, never()).registrarFalha(anyLong(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void naoDeveEnfileirarDeNovoEventoQueAindaEstaNaFila() {
+        when(webhookEventoRepository.buscarIdsProntos(eq(StatusWebhookEvento.RECEBIDO), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+        WebhookInboxService inbox = inbox(executorSemExecucao, true);
+
+        inbox.despacharPendentes();
+        inbox.despacharPendentes();
+
+        verify(executorSemExecucao, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void deveProcessarNaRequisicaoQuandoInboxDesabilitado() {
+        inbox(executorSemExecucao, false).receber(webhook);
+
+        verify(asaasWebhookService).processarWebhook(webhook);
+        verify(webhookEventoRepository, never()).save(any());
+    }
+
+    private WebhookInboxService inbox(TaskExecutor executor, boolean habilitado) {
+        return new WebhookInboxService(webhookEventoRepository, asaasWebhookService, webhookIdempotencia, objectMapper, executor,
+                ObservationRegistry.NOOP, habilitado, 3, 1000, 100, 5);
+    }
+
+    private WebhookEvento evento(int tentativas) throws Exception {
+        WebhookEvento evento = new WebhookEvento();
+        evento.setId(1L);
+        evento.setEvento(webhook.getEvent());
+        evento.setAsaasPaymentId("pay_123456");
+        evento.setPayload(objectMapper.writeValueAsString(webhook));
+        evento.setTentativas(tentativas);
+        return evento;
+    }
+}
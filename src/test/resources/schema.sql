@@ -9,12 +9,12 @@ CREATE TABLE IF NOT EXISTS pagamentos (
     valor DECIMAL(10,2) NOT NULL,
     troco DECIMAL(10,2),
     qr_code CLOB,
-    qr_code_image_url CLOB,
     asaas_payment_id VARCHAR(100),
     asaas_customer_id VARCHAR(100),
     valor_reembolsado DECIMAL(10,2),
     data_reembolso TIMESTAMP,
     asaas_refund_id VARCHAR(100),
+    trace_id VARCHAR(32),
     criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     atualizado_em TIMESTAMP
 );
@@ -24,3 +24,100 @@ CREATE INDEX IF NOT EXISTS idx_pagamentos_pedido ON pagamentos(pedido_id);
 CREATE INDEX IF NOT EXISTS idx_pagamentos_status ON pagamentos(status);
 CREATE INDEX IF NOT EXISTS idx_pagamentos_asaas_id ON pagamentos(asaas_payment_id);
 
+
+-- Cache persistente de clientes do Asaas
+CREATE TABLE IF NOT EXISTS asaas_clientes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    chave VARCHAR(255) NOT NULL UNIQUE,
+    asaas_customer_id VARCHAR(100) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Imagens de QR Code PIX
+CREATE TABLE IF NOT EXISTS pix_qrcode_imagens (
+    pagamento_id BIGINT PRIMARY KEY,
+    imagem BLOB NOT NULL,
+    etag VARCHAR(64) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Outbox de notificações ao serviço de pedidos
+CREATE TABLE IF NOT EXISTS outbox_notificacoes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    pedido_id BIGINT NOT NULL,
+    asaas_payment_id VARCHAR(100),
+    tipo VARCHAR(40) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    enviado_em TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_notificacoes_status ON outbox_notificacoes(status, id);
+CREATE INDEX IF NOT EXISTS idx_outbox_notificacoes_pedido ON outbox_notificacoes(pedido_id, status);
+
+-- Inbox de webhooks do Asaas
+CREATE TABLE IF NOT EXISTS webhook_eventos (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    evento VARCHAR(50),
+    asaas_payment_id VARCHAR(100),
+    payload CLOB NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RECEBIDO',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    recebido_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    iniciado_em TIMESTAMP,
+    processado_em TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_eventos_status ON webhook_eventos(status, proxima_tentativa_em);
+CREATE INDEX IF NOT EXISTS idx_webhook_eventos_asaas_id ON webhook_eventos(asaas_payment_id);
+
+-- Chaves de webhooks já processados
+CREATE TABLE IF NOT EXISTS webhook_eventos_processados (
+    chave VARCHAR(255) PRIMARY KEY,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_eventos_processados_criado ON webhook_eventos_processados(criado_em);
+
+-- Idempotency-Key de POST /api/pagamentos
+CREATE TABLE IF NOT EXISTS chaves_idempotencia (
+    chave VARCHAR(255) PRIMARY KEY,
+    impressao_digital VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resposta CLOB,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    concluido_em TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_chaves_idempotencia_status ON chaves_idempotencia(status, criado_em);
+
+-- Reembolsos em lote com progresso por pedido
+CREATE TABLE IF NOT EXISTS reembolsos_lote (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    motivo VARCHAR(500),
+    status VARCHAR(20) NOT NULL DEFAULT 'EM_ANDAMENTO',
+    total INT NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    concluido_em TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS reembolsos_lote_itens (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    lote_id BIGINT NOT NULL,
+    pedido_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE',
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_erro VARCHAR(500),
+    iniciado_em TIMESTAMP,
+    concluido_em TIMESTAMP,
+    CONSTRAINT fk_reembolsos_lote_itens_lote FOREIGN KEY (lote_id) REFERENCES reembolsos_lote(id),
+    CONSTRAINT uk_reembolsos_lote_itens_pedido UNIQUE (lote_id, pedido_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_reembolsos_lote_itens_status ON reembolsos_lote_itens(status, proxima_tentativa_em);